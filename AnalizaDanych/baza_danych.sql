@@ -377,6 +377,34 @@ ALTER TABLE ONLY public.produkty
     ADD CONSTRAINT produkty_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: cennik_cena_produkt_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX cennik_cena_produkt_id_idx ON public.cennik USING btree (cena, produkt_id);
+
+
+--
+-- Name: magazyn_dostepnosc_produkt_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX magazyn_dostepnosc_produkt_id_idx ON public.magazyn USING btree (dostepnosc, produkt_id);
+
+
+--
+-- Name: magazyn_ilosc_produkt_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX magazyn_ilosc_produkt_id_idx ON public.magazyn USING btree (ilosc, produkt_id);
+
+
+--
+-- Name: produkty_nazwa_id_idx; Type: INDEX; Schema: public; Owner: postgres
+--
+
+CREATE INDEX produkty_nazwa_id_idx ON public.produkty USING btree (nazwa, id);
+
+
 --
 -- TOC entry 4894 (class 2606 OID 17111)
 -- Name: cennik cennik_produkt_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: postgres
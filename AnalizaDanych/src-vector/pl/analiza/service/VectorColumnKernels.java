@@ -0,0 +1,237 @@
+package pl.analiza.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pętle obliczeniowe {@link ColumnKernels} na rejestrach wektorowych (Vector API, {@code jdk.incubator.vector}).
+ * <p>
+ * Wymaga rejestrów 512-bitowych (AVX-512): wartości double przetwarzane są po 8, a {@value #LANES} torów
+ * sum to cztery niezależne akumulatory {@link DoubleVector}, dodawane tak jak tory implementacji skalarnej.
+ * Wartości int ładowane są po 8 ({@link IntVector}) i zamieniane na double bez straty. Na procesorze bez
+ * rejestrów tej szerokości konstruktor zgłasza wyjątek, a {@link ColumnKernels#get()} wybiera wariant skalarny.
+ * </p>
+ * <p>
+ * Kompilacja wymaga JDK 17+ i {@code --add-modules jdk.incubator.vector} (katalog {@code src-vector},
+ * profil {@code vector} modułu benchmarków); uruchomienie - tej samej opcji maszyny wirtualnej.
+ * </p>
+ */
+class VectorColumnKernels extends ColumnKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_512;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+    private static final VectorSpecies<Integer> INTS_WIDE = IntVector.SPECIES_512;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_512;
+
+    /** Liczba wartości double w rejestrze (8). */
+    private static final int WIDTH = 8;
+
+    /**
+     * Liczba wartości sumowanych jednym wywołaniem pętli akumulatorów (blok {@code MathService}).
+     * Długie kolumny są dzielone na porcje, bo pętla kompilowana przy kilku wywołaniach na milionach
+     * wartości (zimny profil) opakowuje akumulatory w obiekty w każdym obrocie.
+     */
+    private static final int CHUNK = 1024;
+
+    /** Mnożnik zbierający najmłodsze bity ośmiu bajtów liczby long w najstarszym bajcie (bajt i - bit i). */
+    private static final long GATHER_BITS = 0x0102040810204080L;
+
+    /** Przesunięcia bajtów maski dla kolejnych liczb long rejestru (0, 8, ..., 56). */
+    private static final LongVector OCTET_SHIFTS = LongVector.fromArray(LongVector.SPECIES_512,
+            new long[] { 0, 8, 16, 24, 32, 40, 48, 56 }, 0);
+
+    VectorColumnKernels() {
+        if (DoubleVector.SPECIES_PREFERRED.vectorBitSize() < DOUBLES.vectorBitSize()) {
+            throw new UnsupportedOperationException("Procesor nie ma rejestrów wektorowych 512-bit.");
+        }
+    }
+
+    @Override
+    public String getName() { return "SIMD " + DOUBLES.vectorBitSize() + "-bit"; }
+
+    @Override
+    public double sum(double[] values, int from, int len) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int i = from; i < end; i += CHUNK) addTo(lanes, values, i, Math.min(end, i + CHUNK));
+        return combine(lanes, values, end, from + len);
+    }
+
+    @Override
+    public double sum(int[] values, int from, int len) {
+        // Suma liczb całkowitych jest dokładna, więc kolejność dodawania nie wpływa na wynik
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int end = from + (len & -WIDTH);
+        for (int i = from; i < end; i += WIDTH) acc = acc.add(toDoubles(values, i));
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (int i = end; i < from + len; i++) sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public double min(double[] values, int from, int len) {
+        if (len < WIDTH) return super.min(values, from, len);
+        DoubleVector acc = DoubleVector.fromArray(DOUBLES, values, from);
+        int end = from + (len & -WIDTH);
+        for (int i = from + WIDTH; i < end; i += WIDTH) acc = acc.min(DoubleVector.fromArray(DOUBLES, values, i));
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        // MIN zwraca NaN, gdy w danych jest NaN; Double.compare wybiera wtedy najmniejszą liczbę
+        if (Double.isNaN(min)) return super.min(values, from, len);
+        for (int i = end; i < from + len; i++) {
+            if (Double.compare(values[i], min) < 0) min = values[i];
+        }
+        return min;
+    }
+
+    @Override
+    public double max(double[] values, int from, int len) {
+        if (len < WIDTH) return super.max(values, from, len);
+        DoubleVector acc = DoubleVector.fromArray(DOUBLES, values, from);
+        int end = from + (len & -WIDTH);
+        for (int i = from + WIDTH; i < end; i += WIDTH) acc = acc.max(DoubleVector.fromArray(DOUBLES, values, i));
+        // MAX ma porządek Double.compare: NaN największe, 0.0 większe od -0.0
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (int i = end; i < from + len; i++) {
+            if (Double.compare(values[i], max) > 0) max = values[i];
+        }
+        return max;
+    }
+
+    @Override
+    public int min(int[] values, int from, int len) {
+        int width = INTS_WIDE.length();
+        if (len < width) return super.min(values, from, len);
+        IntVector acc = IntVector.fromArray(INTS_WIDE, values, from);
+        int end = from + (len & -width);
+        for (int i = from + width; i < end; i += width) acc = acc.min(IntVector.fromArray(INTS_WIDE, values, i));
+        int min = acc.reduceLanes(VectorOperators.MIN);
+        for (int i = end; i < from + len; i++) min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public int max(int[] values, int from, int len) {
+        int width = INTS_WIDE.length();
+        if (len < width) return super.max(values, from, len);
+        IntVector acc = IntVector.fromArray(INTS_WIDE, values, from);
+        int end = from + (len & -width);
+        for (int i = from + width; i < end; i += width) acc = acc.max(IntVector.fromArray(INTS_WIDE, values, i));
+        int max = acc.reduceLanes(VectorOperators.MAX);
+        for (int i = end; i < from + len; i++) max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public double sumSquaredDeviations(double[] values, int from, int len, double mean) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int i = from; i < end; i += CHUNK) addSquaresTo(lanes, values, i, Math.min(end, i + CHUNK), mean);
+        return combineSquares(lanes, values, end, from + len, mean);
+    }
+
+    @Override
+    public double sumSquaredDeviations(int[] values, int from, int len, double mean) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int i = from; i < end; i += CHUNK) addSquaresTo(lanes, values, i, Math.min(end, i + CHUNK), mean);
+        return combineSquares(lanes, values, end, from + len, mean);
+    }
+
+    @Override
+    public void multiply(int[] quantities, double[] prices, double[] dst, int from, int len) {
+        int end = from + (len & -WIDTH);
+        for (int i = from; i < end; i += WIDTH) {
+            toDoubles(quantities, i).mul(DoubleVector.fromArray(DOUBLES, prices, i)).intoArray(dst, i);
+        }
+        for (int i = end; i < from + len; i++) dst[i] = quantities[i] * prices[i];
+    }
+
+    @Override
+    public void nonZeroMask(byte[] flags, int len, long[] words) {
+        // 64 znaczniki (rejestr 512-bit) na słowo: bajty 0/1 jako osiem liczb long, z każdej mnożenie
+        // zbiera 8 bitów w najstarszym bajcie, a przesunięcia układają je kolejno w słowie
+        ByteVector zero = ByteVector.zero(BYTES);
+        int full = len / Long.SIZE;
+        for (int w = 0; w < full; w++) {
+            ByteVector bytes = ByteVector.fromArray(BYTES, flags, w * Long.SIZE);
+            LongVector octets = zero.blend((byte) 1, bytes.compare(VectorOperators.NE, (byte) 0)).reinterpretAsLongs();
+            words[w] = octets.mul(GATHER_BITS).lanewise(VectorOperators.LSHR, 56).lanewise(VectorOperators.LSHL, OCTET_SHIFTS)
+                    .reduceLanes(VectorOperators.OR);
+        }
+        if (full * Long.SIZE < len) {
+            long word = 0;
+            for (int b = 0; b < len - full * Long.SIZE; b++) {
+                if (flags[full * Long.SIZE + b] != 0) word |= 1L << b;
+            }
+            words[full] = word;
+        }
+    }
+
+    /**
+     * Dodaje wartości [from, to) (wielokrotność {@value #LANES}) do torów. Jeden rejestr na obrót,
+     * a akumulatory zamieniają się miejscami - po czterech obrotach wracają na swoje tory, więc wartość i
+     * trafia do toru i mod {@value #LANES}. Zwarta pętla mieści się w limicie rozwijania wywołań także
+     * wewnątrz większych metod (np. statystyk bloku), co pozwala trzymać akumulatory w rejestrach.
+     */
+    private static void addTo(double[] lanes, double[] values, int from, int to) {
+        DoubleVector a0 = DoubleVector.fromArray(DOUBLES, lanes, 0), a1 = DoubleVector.fromArray(DOUBLES, lanes, WIDTH);
+        DoubleVector a2 = DoubleVector.fromArray(DOUBLES, lanes, 2 * WIDTH), a3 = DoubleVector.fromArray(DOUBLES, lanes, 3 * WIDTH);
+        for (int i = from; i < to; i += WIDTH) {
+            DoubleVector next = a0.add(DoubleVector.fromArray(DOUBLES, values, i));
+            a0 = a1;
+            a1 = a2;
+            a2 = a3;
+            a3 = next;
+        }
+        store(lanes, a0, a1, a2, a3);
+    }
+
+    /** Dodaje kwadraty odchyleń wartości [from, to) do torów (mnożenie i dodawanie osobno, bez FMA - jak w pętli skalarnej). */
+    private static void addSquaresTo(double[] lanes, double[] values, int from, int to, double mean) {
+        DoubleVector m = DoubleVector.broadcast(DOUBLES, mean);
+        DoubleVector a0 = DoubleVector.fromArray(DOUBLES, lanes, 0), a1 = DoubleVector.fromArray(DOUBLES, lanes, WIDTH);
+        DoubleVector a2 = DoubleVector.fromArray(DOUBLES, lanes, 2 * WIDTH), a3 = DoubleVector.fromArray(DOUBLES, lanes, 3 * WIDTH);
+        for (int i = from; i < to; i += WIDTH) {
+            DoubleVector d = DoubleVector.fromArray(DOUBLES, values, i).sub(m);
+            DoubleVector next = a0.add(d.mul(d));
+            a0 = a1;
+            a1 = a2;
+            a2 = a3;
+            a3 = next;
+        }
+        store(lanes, a0, a1, a2, a3);
+    }
+
+    /** Wariant {@link #addSquaresTo(double[], double[], int, int, double)} dla kolumny ilości. */
+    private static void addSquaresTo(double[] lanes, int[] values, int from, int to, double mean) {
+        DoubleVector m = DoubleVector.broadcast(DOUBLES, mean);
+        DoubleVector a0 = DoubleVector.fromArray(DOUBLES, lanes, 0), a1 = DoubleVector.fromArray(DOUBLES, lanes, WIDTH);
+        DoubleVector a2 = DoubleVector.fromArray(DOUBLES, lanes, 2 * WIDTH), a3 = DoubleVector.fromArray(DOUBLES, lanes, 3 * WIDTH);
+        for (int i = from; i < to; i += WIDTH) {
+            DoubleVector d = toDoubles(values, i).sub(m);
+            DoubleVector next = a0.add(d.mul(d));
+            a0 = a1;
+            a1 = a2;
+            a2 = a3;
+            a3 = next;
+        }
+        store(lanes, a0, a1, a2, a3);
+    }
+
+    /** Osiem wartości int od pozycji i jako wektor double. */
+    private static DoubleVector toDoubles(int[] values, int i) {
+        return (DoubleVector) IntVector.fromArray(INTS, values, i).convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+
+    /** Zapisuje akumulatory do tablicy {@value #LANES} torów (akumulator k to tory 8k..8k+7). */
+    private static void store(double[] lanes, DoubleVector a0, DoubleVector a1, DoubleVector a2, DoubleVector a3) {
+        a0.intoArray(lanes, 0);
+        a1.intoArray(lanes, WIDTH);
+        a2.intoArray(lanes, 2 * WIDTH);
+        a3.intoArray(lanes, 3 * WIDTH);
+    }
+}
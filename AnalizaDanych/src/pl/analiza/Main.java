@@ -5,6 +5,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import pl.analiza.service.Metrics;
 
 /**
  * Główna klasa startowa aplikacji "System Analizy Danych".
@@ -27,6 +28,9 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
+        // Liczniki czasu operacji dostępne w JConsole / VisualVM (pl.analiza:type=Metrics)
+        Metrics.registerMBeans();
+
         // Ładowanie pliku widoku z zasobów (ścieżka musi zaczynać się od /)
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/dashboard.fxml"));
         Parent root = loader.load();
@@ -1,7 +1,16 @@
 package pl.analiza.controller;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
@@ -9,19 +18,66 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.stage.FileChooser;
+import javafx.util.Callback;
+import javafx.util.Duration;
 import pl.analiza.model.DataPoint;
 import pl.analiza.model.CategoryStats;
+import pl.analiza.model.ChartBar;
+import pl.analiza.model.GroupByResult;
+import pl.analiza.model.GroupRow;
+import pl.analiza.model.MetricSnapshot;
+import pl.analiza.service.AggregateFunction;
+import pl.analiza.service.AggregateStore;
+import pl.analiza.service.ChangeTracker;
+import pl.analiza.service.ChartAggregator;
+import pl.analiza.service.ChartMode;
+import pl.analiza.service.ColumnIndex;
+import pl.analiza.service.ColumnStore;
 import pl.analiza.service.CsvService;
 import pl.analiza.service.DatabaseService;
 import pl.analiza.service.ExcelService;
+import pl.analiza.service.FilterQuery;
+import pl.analiza.service.GroupByEngine;
+import pl.analiza.service.GroupKey;
+import pl.analiza.service.ImportPipeline;
+import pl.analiza.service.ImportSource;
 import pl.analiza.service.MathService;
+import pl.analiza.service.Measure;
+import pl.analiza.service.Metrics;
+import pl.analiza.service.OperationTimer;
+import pl.analiza.service.ProductSort;
+import pl.analiza.service.SearchIndex;
+import pl.analiza.service.SnapshotService;
+import pl.analiza.service.StatField;
+import pl.analiza.service.StatOperation;
 
 import java.io.File;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 
 /**
  * Kontroler widoku głównego (Dashboard).
@@ -35,10 +91,12 @@ public class DashboardController {
     // --- ELEMENTY GUI (Wstrzykiwane przez FXML) ---
     @FXML private TabPane mainTabPane;
     @FXML private Label lblStatus;
+    @FXML private ProgressBar progressTask;
+    @FXML private Button btnCancelTask;
 
     // Sekcja Produktów
-    @FXML private TextField txtProduct, txtCategory, txtQuantity, txtPrice, txtSearch;
-    @FXML private CheckBox chkAvailable;
+    @FXML private TextField txtProduct, txtCategory, txtQuantity, txtPrice, txtSearch, txtQuery;
+    @FXML private CheckBox chkAvailable, chkPagedMode;
     @FXML private TableView<DataPoint> tableView;
     @FXML private TableColumn<DataPoint, String> colProduct, colCategory;
     @FXML private TableColumn<DataPoint, Integer> colQuantity;
@@ -61,10 +119,23 @@ public class DashboardController {
     @FXML private ComboBox<String> comboStatsField, comboStatsOp;
     @FXML private TextArea txtStatsLog;
 
+    // Sekcja Tabeli przestawnej
+    @FXML private ComboBox<String> comboPivotRows, comboPivotColumns;
+    @FXML private ComboBox<Measure> comboPivotMeasure;
+    @FXML private TableView<GroupRow> tablePivot;
+
     // Sekcja Wykresów
     @FXML private BarChart<String, Number> barChart;
+    @FXML private CategoryAxis axisX;
     @FXML private NumberAxis axisY;
-    @FXML private ComboBox<String> comboChartType;
+    @FXML private ComboBox<String> comboChartType, comboChartMode;
+    @FXML private Spinner<Integer> spinChartBars;
+
+    // Zakładka: Diagnostyka
+    @FXML private Tab tabDiagnostics;
+    @FXML private CheckBox chkMetricsEnabled, chkJfrEvents;
+    @FXML private TableView<MetricSnapshot> tableMetrics;
+    @FXML private Label lblPoolStats;
 
     // --- DANE I SERWISY ---
     /** Główna lista danych wyświetlana w tabeli produktów. */
@@ -73,14 +144,112 @@ public class DashboardController {
     /** Lista filtrowana używana do wyszukiwania. */
     private FilteredList<DataPoint> filteredData;
 
+    /** Kolumny liczbowe masterData w tablicach typów prostych (obliczenia KPI i kalkulatora). */
+    private final ColumnStore columnStore = new ColumnStore();
+
+    /** Przyrostowe agregaty masterData (KPI i statystyki kategorii). */
+    private final AggregateStore aggregates = new AggregateStore();
+
+    /** Wiersze tabeli statystyk kategorii i ich pozycje (aktualizowane tylko dla zmienionych kategorii). */
+    private final ObservableList<CategoryStats> categoryRows = FXCollections.observableArrayList();
+    private final Map<String, Integer> categoryRowIndex = new HashMap<>();
+
+    /** Klucze grupowania dostępne w tabeli przestawnej. */
+    private static final List<GroupKey> PIVOT_KEYS = List.of(
+            GroupKey.category(),
+            GroupKey.availability(),
+            GroupKey.quantityBuckets(10),
+            GroupKey.priceBands(10, 50, 100, 500, 1000));
+
+    /** Pozycja listy kolumn tabeli przestawnej oznaczająca grupowanie tylko po wierszach. */
+    private static final String PIVOT_NO_COLUMNS = "(brak)";
+
+    /** Rejestr zmian listy względem bazy (zapis różnicowy). */
+    private final ChangeTracker changeTracker = new ChangeTracker();
+
     /** Lista kategorii pobierana z bazy. */
     private final ObservableList<String> categoriesData = FXCollections.observableArrayList();
 
+    /** Zadania w tle: operacje na bazie i plikach oraz obliczenia (wątek JavaFX tylko wyświetla wyniki). */
+    private final TaskRunner taskRunner = new TaskRunner(this::setStatus,
+            (title, e) -> showAlert("Błąd: " + title, e.getMessage()));
+
+    /** Czy trwa zapis do bazy - lista i rejestr zmian nie mogą się wtedy zmieniać. */
+    private boolean saveInProgress;
+
     // Instancje serwisów logiki biznesowej
     private final DatabaseService dbService = new DatabaseService();
-    private final MathService mathService = new MathService();
+    private final MathService mathService = new MathService(taskRunner.cpuPool());
+    private final GroupByEngine groupByEngine = new GroupByEngine();
+    private final ChartAggregator chartAggregator = new ChartAggregator();
     private final CsvService csvService = new CsvService();
     private final ExcelService excelService = new ExcelService();
+    private final SnapshotService snapshotService = new SnapshotService();
+
+    /** Aktualnie trwający import (null, gdy brak). */
+    private ImportPipeline activeImport;
+
+    /** Lista posortowana (tryb danych w pamięci) powiązana z tabelą produktów. */
+    private SortedList<DataPoint> sortedData;
+
+    /** Wątek zapytań o strony produktów (jeden - kolejne strony korzystają z granic poprzednich). */
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "db-pager");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Indeks wyszukiwania masterData (używany wyłącznie w wątku wyszukiwania). */
+    private final SearchIndex searchIndex = new SearchIndex();
+
+    /** Wątek budowy indeksu i wykonywania zapytań wyszukiwania (zadania wykonywane po kolei). */
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "search-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Opóźnienie wyszukiwania - zapytanie startuje po przerwie w pisaniu. */
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(150));
+
+    /** Numer ostatniego zapytania - wyniki wcześniejszych zapytań są pomijane. */
+    private int searchGeneration;
+
+    /** Indeksy kolumn dla filtra strukturalnego (budowane i używane w wątku wyszukiwania). */
+    private ColumnIndex columnIndex;
+
+    /** Czy masterData zmieniła się od zbudowania indeksu kolumn (wątek JavaFX). */
+    private boolean columnIndexStale = true;
+
+    /** Aktywny filtr strukturalny (null, gdy brak) i numer jego ostatniego wykonania. */
+    private FilterQuery activeQuery;
+    private int queryGeneration;
+
+    /** Ponowne wykonanie filtra strukturalnego po zmianie danych (np. po imporcie). */
+    private final PauseTransition queryRefresh = new PauseTransition(Duration.millis(500));
+
+    /** Predykaty wyszukiwania tekstowego i filtra strukturalnego (null = bez ograniczeń). */
+    private Predicate<DataPoint> searchPredicate, queryPredicate;
+
+    /** Czy odświeżenie widoków zostało już zaplanowane (kolejne żądania są łączone). */
+    private boolean refreshScheduled;
+
+    // Czasy faz odświeżania widoków i budowy wykresu
+    private static final OperationTimer REFRESH_TABLE_TIMER = Metrics.timer("ui.refresh.table");
+    private static final OperationTimer REFRESH_CHART_TIMER = Metrics.timer("ui.refresh.chart");
+    private static final OperationTimer REFRESH_STATS_TIMER = Metrics.timer("ui.refresh.stats");
+    private static final OperationTimer CHART_AGGREGATE_TIMER = Metrics.timer("ui.chart.aggregate");
+    private static final OperationTimer CHART_RENDER_TIMER = Metrics.timer("ui.chart.render");
+
+    /** Odczyty liczników w zakładce diagnostyki. */
+    private final ObservableList<MetricSnapshot> metricRows = FXCollections.observableArrayList();
+
+    /** Odświeżanie zakładki diagnostyki co sekundę (tylko gdy zakładka jest widoczna). */
+    private final Timeline diagnosticsRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> refreshDiagnostics()));
+
+    /** Stronicowana lista produktów z bazy (tryb przeglądania dużych katalogów). */
+    private final PagedProductList pagedData = new PagedProductList(dbService, pageExecutor,
+            e -> setStatus("Błąd pobierania strony z bazy: " + e.getMessage()));
 
     /**
      * Metoda inicjalizująca kontroler.
@@ -89,9 +258,16 @@ public class DashboardController {
     @FXML
     public void initialize() {
         setupTable();      // Konfiguracja kolumn tabeli produktów
+        setupTaskStatus(); // Pasek postępu zadań w tle
         setupChart();      // Konfiguracja wykresu
         setupStats();      // Konfiguracja zakładki statystyk
+        setupPivot();      // Konfiguracja tabeli przestawnej
         setupSearch();     // Konfiguracja filtra wyszukiwania
+        setupChangeTracking(); // Rejestrowanie usunięć do zapisu różnicowego
+        setupColumnStore();    // Synchronizacja kolumn liczbowych z masterData
+        setupAggregates();     // Przyrostowe KPI i statystyki kategorii
+        setupSearchIndex();    // Indeks wyszukiwania aktualizowany w tle
+        setupDiagnostics();    // Podgląd czasów operacji
 
         refreshCategoriesList(); // Pobranie kategorii z bazy
         loadDataFromDB();        // Pobranie produktów z bazy na starcie
@@ -103,12 +279,46 @@ public class DashboardController {
 
     /**
      * Centralna metoda odświeżająca wszystkie widoki.
-     * Powinna być wywoływana po każdej zmianie w danych (masterData).
+     * Powinna być wywoływana po każdej zmianie w danych (masterData). Odświeżenie wykonywane jest
+     * raz w kolejnym cyklu wątku JavaFX, niezależnie od liczby wywołań w bieżącym.
      */
     private void refreshAllViews() {
-        tableView.refresh();     // Odświeżenie tabeli głównej
-        updateChart();           // Prerysowanie wykresu
-        updateDashboardStats();  // Przeliczenie statystyk i KPI
+        if (refreshScheduled) return;
+        refreshScheduled = true;
+        Platform.runLater(() -> {
+            refreshScheduled = false;
+            // Każda faza mierzona osobno (zakładka "Diagnostyka")
+            int rows = masterData.size();
+            try (OperationTimer.Sample sample = REFRESH_TABLE_TIMER.start()) {
+                sample.rows(tableView.getItems().size());
+                tableView.refresh();     // Odświeżenie tabeli głównej
+            }
+            try (OperationTimer.Sample sample = REFRESH_CHART_TIMER.start()) {
+                sample.rows(rows);
+                updateChart();           // Prerysowanie wykresu (agregacja w tle)
+            }
+            try (OperationTimer.Sample sample = REFRESH_STATS_TIMER.start()) {
+                sample.rows(rows);
+                updateDashboardStats();  // Przeliczenie statystyk i KPI
+            }
+        });
+    }
+
+    /** Wiąże pasek postępu i przycisk anulowania z bieżącym zadaniem w tle. */
+    private void setupTaskStatus() {
+        progressTask.managedProperty().bind(progressTask.visibleProperty());
+        btnCancelTask.managedProperty().bind(btnCancelTask.visibleProperty());
+        taskRunner.currentProperty().addListener((obs, oldJob, job) -> {
+            progressTask.progressProperty().unbind();
+            if (job != null) progressTask.progressProperty().bind(job.progressProperty());
+            progressTask.setVisible(job != null);
+            btnCancelTask.setVisible(job != null);
+        });
+    }
+
+    /** Anuluje bieżące zadanie w tle. */
+    @FXML private void handleCancelTask() {
+        if (taskRunner.cancelCurrent()) setStatus("Anulowano zadanie.");
     }
 
     // --- LOGIKA STATYSTYK ---
@@ -119,7 +329,7 @@ public class DashboardController {
     private void setupStats() {
         // Ustawienie opcji wyboru dla kalkulatora
         comboStatsField.setItems(FXCollections.observableArrayList("Ilość", "Cena", "Wartość Całkowita"));
-        comboStatsOp.setItems(FXCollections.observableArrayList("Suma", "Średnia", "Minimum", "Maksimum", "Mediana", "Odchylenie Std.", "Wariancja"));
+        comboStatsOp.setItems(FXCollections.observableArrayList("Suma", "Średnia", "Minimum", "Maksimum", "Mediana", "Odchylenie Std.", "Wariancja", "Percentyl 90", "Percentyl 99"));
         comboStatsField.setValue("Cena");
         comboStatsOp.setValue("Średnia");
 
@@ -129,6 +339,11 @@ public class DashboardController {
         colStatAvg.setCellValueFactory(new PropertyValueFactory<>("avgPrice"));
         colStatTotal.setCellValueFactory(new PropertyValueFactory<>("totalValue"));
 
+        // Sortowanie tabeli na widoku listy - kolejność categoryRows (indeksy wierszy) pozostaje stała
+        SortedList<CategoryStats> sortedStats = new SortedList<>(categoryRows);
+        sortedStats.comparatorProperty().bind(tableStats.comparatorProperty());
+        tableStats.setItems(sortedStats);
+
         // Formatowanie wyświetlania waluty w tabeli (dodanie "zł")
         colStatAvg.setCellFactory(tc -> new TableCell<>() {
             @Override protected void updateItem(Double item, boolean empty) {
@@ -145,30 +360,42 @@ public class DashboardController {
     }
 
     /**
-     * Oblicza i aktualizuje wskaźniki KPI oraz tabelę statystyk per kategoria.
+     * Aktualizuje wskaźniki KPI oraz tabelę statystyk per kategoria.
+     * <p>
+     * Wartości pochodzą z przyrostowego {@link AggregateStore}, a w tabeli podmieniane są
+     * tylko wiersze kategorii zmienionych od poprzedniego odświeżenia.
+     * </p>
      */
     private void updateDashboardStats() {
-        if (masterData.isEmpty()) {
-            // Reset widoku, gdy brak danych
-            lblKpiTotalValue.setText("0.00 PLN");
-            lblKpiCount.setText("0");
-            lblKpiAvgPrice.setText("0.00 PLN");
-            tableStats.setItems(FXCollections.emptyObservableList());
-            return;
-        }
+        // 1. Globalne wskaźniki KPI
+        lblKpiTotalValue.setText(String.format("%.2f PLN", aggregates.getTotalValue()));
+        lblKpiCount.setText(String.valueOf(aggregates.getCount()));
+        lblKpiAvgPrice.setText(String.format("%.2f PLN", aggregates.getAveragePrice()));
 
-        // 1. Obliczenie globalnych wskaźników KPI
-        double totalVal = mathService.calculate(masterData, "Wartość Całkowita", "Suma");
-        double avgPrice = mathService.calculate(masterData, "Cena", "Średnia");
-        int count = masterData.size();
-
-        // Wyświetlenie KPI
-        lblKpiTotalValue.setText(String.format("%.2f PLN", totalVal));
-        lblKpiCount.setText(String.valueOf(count));
-        lblKpiAvgPrice.setText(String.format("%.2f PLN", avgPrice));
+        // 2. Statystyki grupowane po kategorii - tylko zmienione wiersze
+        aggregates.drainChangedCategories(this::updateCategoryRow);
+    }
 
-        // 2. Obliczenie i wyświetlenie statystyk grupowanych po kategorii
-        tableStats.setItems(FXCollections.observableArrayList(mathService.getCategoryStatistics(masterData)));
+    /** Podmienia, dodaje lub usuwa wiersz kategorii w tabeli statystyk. */
+    private void updateCategoryRow(String category) {
+        CategoryStats stats = aggregates.getCategoryStats(category);
+        Integer index = categoryRowIndex.get(category);
+        if (stats != null) {
+            if (index != null) {
+                categoryRows.set(index, stats);
+            } else {
+                categoryRowIndex.put(category, categoryRows.size());
+                categoryRows.add(stats);
+            }
+        } else if (index != null) {
+            // Usunięcie przez przeniesienie ostatniego wiersza na zwolnione miejsce
+            categoryRowIndex.remove(category);
+            CategoryStats last = categoryRows.remove(categoryRows.size() - 1);
+            if (index < categoryRows.size()) {
+                categoryRows.set(index, last);
+                categoryRowIndex.put(last.getCategory(), index);
+            }
+        }
     }
 
     /**
@@ -179,9 +406,15 @@ public class DashboardController {
         String o = comboStatsOp.getValue();
         if (f == null || o == null) return;
 
-        // Wykonanie obliczeń przez serwis
-        double r = mathService.calculate(masterData, f, o);
-        logToStats(String.format("Wynik: %s (%s) = %.2f", o, f, r));
+        // Wykonanie obliczeń przez serwis na kopii kolumn (lista może się zmieniać w trakcie)
+        ColumnStore columns = columnStore.copy();
+        StatField field = StatField.fromLabel(f);
+        StatOperation operation = StatOperation.fromLabel(o);
+        taskRunner.cpu("Obliczenia", progress -> mathService.calculate(columns, field, operation))
+                .onSuccess(r -> {
+                    logToStats(String.format("Wynik: %s (%s) = %.2f", o, f, r));
+                    setStatus("Gotowy.");
+                });
     }
 
     /**
@@ -189,15 +422,110 @@ public class DashboardController {
      */
     @FXML private void handleCalculateReport() {
         String f = comboStatsField.getValue(); if (f == null) return;
-        StringBuilder sb = new StringBuilder("\n--- RAPORT: " + f + " ---\n");
-        // Iteracja przez podstawowe operacje statystyczne
-        for(String op : new String[]{"Suma", "Średnia", "Minimum", "Maksimum"})
-            sb.append(String.format("%-10s : %.2f\n", op, mathService.calculate(masterData, f, op)));
-        logToStats(sb.toString());
+        ColumnStore columns = columnStore.copy();
+        StatField field = StatField.fromLabel(f);
+        // Podstawowe statystyki z jednego przebiegu po danych
+        taskRunner.cpu("Raport", progress -> mathService.summarize(columns, field)).onSuccess(s -> {
+            StringBuilder sb = new StringBuilder("\n--- RAPORT: " + f + " ---\n");
+            sb.append(String.format("%-10s : %.2f\n", StatOperation.SUM.getLabel(), s.getSum()));
+            sb.append(String.format("%-10s : %.2f\n", StatOperation.AVERAGE.getLabel(), s.getMean()));
+            sb.append(String.format("%-10s : %.2f\n", StatOperation.MIN.getLabel(), s.getMin()));
+            sb.append(String.format("%-10s : %.2f\n", StatOperation.MAX.getLabel(), s.getMax()));
+            logToStats(sb.toString());
+            setStatus("Gotowy.");
+        });
     }
 
     @FXML private void handleClearStats() { txtStatsLog.clear(); }
 
+    // --- TABELA PRZESTAWNA ---
+
+    /**
+     * Konfiguruje listy wyboru kluczy i miar tabeli przestawnej.
+     */
+    private void setupPivot() {
+        List<String> keyNames = new ArrayList<>();
+        for (GroupKey key : PIVOT_KEYS) keyNames.add(key.getName());
+        comboPivotRows.setItems(FXCollections.observableArrayList(keyNames));
+        comboPivotColumns.setItems(FXCollections.observableArrayList(keyNames));
+        comboPivotColumns.getItems().add(0, PIVOT_NO_COLUMNS);
+
+        ObservableList<Measure> measures = FXCollections.observableArrayList(Measure.count());
+        for (AggregateFunction fn : AggregateFunction.values()) {
+            if (fn == AggregateFunction.COUNT) continue;
+            for (StatField field : StatField.values()) measures.add(Measure.of(fn, field));
+        }
+        comboPivotMeasure.setItems(measures);
+
+        comboPivotRows.setValue(keyNames.get(0));
+        comboPivotColumns.setValue(PIVOT_NO_COLUMNS);
+        comboPivotMeasure.setValue(measures.get(0));
+    }
+
+    /**
+     * Przelicza tabelę przestawną: grupowanie po kluczu wierszy lub, gdy wybrano klucz kolumn,
+     * tabela krzyżowa z wartością miary w komórkach. Grupowanie wykonywane jest w tle na kopii listy;
+     * ponowne przeliczenie przed zakończeniem poprzedniego anuluje je (po najbliższym bloku wierszy).
+     */
+    @FXML private void handleCalculatePivot() {
+        GroupKey rows = pivotKey(comboPivotRows.getValue());
+        GroupKey columns = pivotKey(comboPivotColumns.getValue());
+        Measure measure = comboPivotMeasure.getValue();
+        if (rows == null || measure == null) return;
+
+        long start = System.nanoTime();
+        taskRunner.latest("pivot", () -> {
+            List<DataPoint> snapshot = new ArrayList<>(masterData);
+            return progress -> {
+                DoubleConsumer done = p -> progress.update(p, 1);
+                if (columns != null) return groupByEngine.pivot(snapshot, rows, columns, measure, progress::isCancelled, done);
+                List<Measure> measures = measure.getFunction() == AggregateFunction.COUNT
+                        ? List.of(measure) : List.of(Measure.count(), measure);
+                return groupByEngine.groupBy(snapshot, List.of(rows), measures, progress::isCancelled, done);
+            };
+        }).onSuccess(result -> {
+            showPivot(result);
+            setStatus(String.format("Tabela przestawna: %d wierszy (%d ms).",
+                    result.getRows().size(), (System.nanoTime() - start) / 1_000_000));
+        });
+    }
+
+    private GroupKey pivotKey(String name) {
+        for (GroupKey key : PIVOT_KEYS) {
+            if (key.getName().equals(name)) return key;
+        }
+        return null;
+    }
+
+    /** Buduje kolumny tabeli przestawnej według wyniku (kolumny kluczy i miar). */
+    private void showPivot(GroupByResult result) {
+        tablePivot.getColumns().clear();
+        for (int i = 0; i < result.getKeyNames().size(); i++) {
+            int k = i;
+            TableColumn<GroupRow, String> col = new TableColumn<>(result.getKeyNames().get(i));
+            col.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getKey(k)));
+            col.setPrefWidth(150);
+            tablePivot.getColumns().add(col);
+        }
+        for (int i = 0; i < result.getValueNames().size(); i++) {
+            int v = i;
+            TableColumn<GroupRow, Number> col = new TableColumn<>(result.getValueNames().get(i));
+            col.setCellValueFactory(c -> new ReadOnlyDoubleWrapper(c.getValue().getValue(v)));
+            col.setCellFactory(tc -> new TableCell<>() {
+                @Override protected void updateItem(Number item, boolean empty) {
+                    super.updateItem(item, empty);
+                    // Pusta komórka (NaN) - brak produktów w grupie
+                    if (empty || item == null || Double.isNaN(item.doubleValue())) setText(null);
+                    else setText(item.doubleValue() == Math.rint(item.doubleValue())
+                            ? String.format("%.0f", item.doubleValue()) : String.format("%.2f", item.doubleValue()));
+                }
+            });
+            col.setPrefWidth(110);
+            tablePivot.getColumns().add(col);
+        }
+        tablePivot.setItems(FXCollections.observableArrayList(result.getRows()));
+    }
+
     /** Loguje wiadomość do obszaru tekstowego z czasem. */
     private void logToStats(String msg) {
         txtStatsLog.appendText("[" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")) + "] " + msg + "\n");
@@ -205,19 +533,45 @@ public class DashboardController {
 
     // --- OPERACJE NA DANYCH (CRUD) ---
 
-    /** Pobiera dane z bazy i aktualizuje widoki. */
+    /**
+     * Pobiera dane z bazy w tle i aktualizuje widoki.
+     * <p>
+     * Wiersze trafiają do tabeli porcjami kursora, więc okno jest używalne po pierwszej porcji.
+     * Poprzednia zawartość tabeli i rejestru zmian jest zachowywana do końca odczytu: nieudany
+     * lub przerwany odczyt ją przywraca - niepełna lista z punktem odniesienia albo pusta lista
+     * bez niego oznaczałyby, że kolejny zapis usunie z bazy brakujące wiersze.
+     * </p>
+     */
     private void loadDataFromDB() {
-        try {
-            masterData.setAll(dbService.loadFromDatabase());
-            refreshAllViews();
-            setStatus("Pobrano dane z bazy.");
-        } catch (Exception e) { setStatus("Brak połączenia z bazą lub pusta baza."); }
+        if (saveInProgress) { showSaveInProgress(); return; }
+        if (activeImport != null) {
+            showAlert("Import w toku", "Poczekaj na zakończenie bieżącego importu lub go anuluj.");
+            return;
+        }
+        List<DataPoint> previousRows = new ArrayList<>(masterData);
+        ChangeTracker previousChanges = changeTracker.copy();
+        masterData.clear();
+        startImport(dbService.source(), "z bazy", error -> {
+            if (error == null) {
+                changeTracker.markSynchronized();
+                setStatus("Pobrano dane z bazy (" + masterData.size() + " wierszy).");
+                return;
+            }
+            // Przywrócenie tabeli i rejestru zmian sprzed odczytu
+            masterData.setAll(previousRows);
+            changeTracker.restore(previousChanges);
+            setStatus(error instanceof CancellationException
+                    ? "Przerwano pobieranie danych z bazy - przywrócono poprzednią zawartość tabeli."
+                    : "Brak połączenia z bazą - przywrócono poprzednią zawartość tabeli.");
+        });
     }
 
     /**
      * Dodaje nowy produkt lub aktualizuje istniejący (jeśli zaznaczony w tabeli).
      */
     @FXML private void handleAddOrUpdate() {
+        if (isPagedMode()) { showPagedModeReadOnly(); return; }
+        if (saveInProgress) { showSaveInProgress(); return; }
         try {
             // Walidacja i odczyt z formularza
             DataPoint form = readFormWithValidation();
@@ -234,6 +588,8 @@ public class DashboardController {
                 selected.setQuantity(form.getQuantity());
                 selected.setPrice(form.getPrice());
                 selected.setAvailable(form.isAvailable());
+                // Zastąpienie elementu tym samym obiektem - powiadomienie słuchaczy listy o edycji
+                masterData.set(sortedData.getSourceIndexFor(masterData, tableView.getSelectionModel().getSelectedIndex()), selected);
                 setStatus("Zaktualizowano lokalnie.");
             }
             handleClear(); // Wyczyszczenie formularza
@@ -245,6 +601,8 @@ public class DashboardController {
 
     /** Usuwa zaznaczony element z listy. */
     @FXML private void handleDelete() {
+        if (isPagedMode()) { showPagedModeReadOnly(); return; }
+        if (saveInProgress) { showSaveInProgress(); return; }
         DataPoint selected = tableView.getSelectionModel().getSelectedItem();
         if (selected != null) {
             masterData.remove(selected);
@@ -258,20 +616,148 @@ public class DashboardController {
 
     @FXML private void handleImportCSV() {
         File f = new FileChooser().showOpenDialog(null);
-        if (f != null) try {
-            masterData.addAll(csvService.load(f));
-            refreshAllViews();
-            setStatus("Zaimportowano CSV.");
-        } catch (Exception e) { showAlert("Błąd importu CSV", e.getMessage()); }
+        if (f != null) startImport(csvService.source(f, CsvService.DEFAULT_PARALLELISM), "CSV");
     }
 
     @FXML private void handleImportExcel() {
         File f = new FileChooser().showOpenDialog(null);
-        if (f != null) try {
-            masterData.addAll(excelService.load(f));
+        if (f != null) startImport(excelService.source(f), "Excel");
+    }
+
+    @FXML private void handleImportSnapshot() {
+        File f = new FileChooser().showOpenDialog(null);
+        if (f != null) startImport(snapshotService.source(f), "Snapshot");
+    }
+
+    /** Zapisuje bieżący zbiór danych do binarnej migawki (szybkie odtworzenie bez bazy). */
+    @FXML private void handleSaveSnapshot() {
+        File f = new FileChooser().showSaveDialog(null);
+        if (f == null) return;
+        List<DataPoint> snapshot = new ArrayList<>(masterData);
+        taskRunner.io("Zapis snapshotu", progress -> {
+            snapshotService.save(snapshot, f);
+            return null;
+        }).onSuccess(r -> setStatus("Zapisano snapshot (" + snapshot.size() + " wierszy)."))
+          .onFailure(e -> showAlert("Błąd zapisu snapshotu", e.getMessage()));
+    }
+
+    /** Przerywa trwający import (wiersze już wczytane pozostają w tabeli). */
+    @FXML private void handleCancelImport() {
+        if (activeImport != null) {
+            activeImport.cancel();
+            setStatus("Anulowanie importu...");
+        }
+    }
+
+    /**
+     * Uruchamia import w tle. Wiersze trafiają do tabeli paczkami w trakcie odczytu,
+     * a widoki zależne od całego zbioru (wykres, statystyki) są odświeżane po zakończeniu.
+     */
+    private void startImport(ImportSource source, String label) {
+        startImport(source, label, null);
+    }
+
+    /**
+     * Uruchamia import w tle z własną obsługą zakończenia.
+     *
+     * @param onFinish Wywoływany w wątku JavaFX po zakończeniu, przed odświeżeniem widoków (null = sukces,
+     *                 inaczej przyczyna błędu lub {@link CancellationException}); zastępuje domyślne komunikaty importu.
+     */
+    private void startImport(ImportSource source, String label, Consumer<Throwable> onFinish) {
+        if (saveInProgress) { showSaveInProgress(); return; }
+        if (activeImport != null) {
+            showAlert("Import w toku", "Poczekaj na zakończenie bieżącego importu lub go anuluj.");
+            return;
+        }
+        // Parser zajmuje wątek puli wejścia-wyjścia na czas odczytu
+        ImportPipeline pipeline = new ImportPipeline(source, taskRunner.ioExecutor());
+        pipeline.subscribe(new ImportSubscriber(pipeline, label, onFinish));
+        try {
+            pipeline.start();
+        } catch (RejectedExecutionException e) {
+            showAlert("Import " + label, "Zbyt wiele operacji w toku - spróbuj ponownie za chwilę.");
+            return;
+        }
+        activeImport = pipeline;
+        setStatus("Import " + label + "...");
+    }
+
+    /**
+     * Subskrybent potoku importu działający poza wątkiem JavaFX.
+     * <p>
+     * Odebrane paczki są buforowane i łączone, a do {@code masterData} trafiają jednym
+     * wywołaniem {@code Platform.runLater} na kilka paczek. Kolejne paczki są zamawiane
+     * dopiero po ich zastosowaniu w GUI, więc parser nie wyprzedza widoku (backpressure).
+     * </p>
+     */
+    private final class ImportSubscriber implements Flow.Subscriber<List<DataPoint>> {
+        private final ImportPipeline pipeline;
+        private final String label;
+        private final Consumer<Throwable> onFinish;
+        private final ConcurrentLinkedQueue<List<DataPoint>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private Flow.Subscription subscription;
+
+        ImportSubscriber(ImportPipeline pipeline, String label, Consumer<Throwable> onFinish) {
+            this.pipeline = pipeline;
+            this.label = label;
+            this.onFinish = onFinish;
+        }
+
+        @Override public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            s.request(ImportPipeline.MAX_BUFFERED_BATCHES);
+        }
+
+        @Override public void onNext(List<DataPoint> batch) {
+            pending.add(batch);
+            if (drainScheduled.compareAndSet(false, true)) Platform.runLater(this::drain);
+        }
+
+        @Override public void onError(Throwable t) {
+            Platform.runLater(() -> {
+                drain();
+                finish(t);
+                if (onFinish != null) return;
+                if (t instanceof CancellationException) setStatus("Import " + label + " anulowany.");
+                else showAlert("Błąd importu " + label, t.getMessage());
+            });
+        }
+
+        @Override public void onComplete() {
+            Platform.runLater(() -> {
+                drain();
+                finish(null);
+                if (onFinish == null) setStatus("Zaimportowano " + label + " (" + pipeline.getRowCount() + " wierszy).");
+            });
+        }
+
+        /** Zastosowanie zaległych paczek w wątku JavaFX (jedno zdarzenie zmiany listy). */
+        private void drain() {
+            drainScheduled.set(false);
+            List<DataPoint> chunk = new ArrayList<>();
+            int batches = 0;
+            List<DataPoint> batch;
+            while ((batch = pending.poll()) != null) {
+                chunk.addAll(batch);
+                batches++;
+            }
+            if (batches == 0) return;
+
+            masterData.addAll(chunk);
+            double p = pipeline.getProgress();
+            setStatus(p >= 0
+                    ? String.format("Import %s: %.0f%% (%d wierszy)", label, p * 100, pipeline.getRowCount())
+                    : String.format("Import %s: %d wierszy", label, pipeline.getRowCount()));
+            if (!pipeline.isCancelled()) subscription.request(batches);
+        }
+
+        private void finish(Throwable error) {
+            activeImport = null;
+            // Własna obsługa (np. przywrócenie tabeli po przerwanym odczycie z bazy) przed odświeżeniem widoków
+            if (onFinish != null) onFinish.accept(error);
             refreshAllViews();
-            setStatus("Zaimportowano Excel.");
-        } catch (Exception e) { showAlert("Błąd importu Excel", e.getMessage()); }
+        }
     }
 
     // --- ZARZĄDZANIE KATEGORIAMI ---
@@ -280,14 +766,16 @@ public class DashboardController {
         String selected = listCategories.getSelectionModel().getSelectedItem();
         String newName = txtNewCategory.getText().trim();
         if (selected == null || newName.isEmpty()) return;
-        try {
-            // Aktualizacja w bazie i odświeżenie widoków
+        // Aktualizacja w bazie w tle, odświeżenie widoków po jej zakończeniu
+        taskRunner.io("Zmiana nazwy kategorii", progress -> {
             dbService.updateCategory(selected, newName);
+            return null;
+        }).onSuccess(r -> {
             refreshCategoriesList();
             loadDataFromDB();
             txtNewCategory.clear();
             setStatus("Zmieniono nazwę kategorii.");
-        } catch (Exception e) { showAlert("Błąd Bazy", e.getMessage()); }
+        }).onFailure(e -> showAlert("Błąd Bazy", e.getMessage()));
     }
 
     @FXML private void handleDeleteCategory() {
@@ -299,24 +787,37 @@ public class DashboardController {
         confirm.showAndWait();
 
         if (confirm.getResult() == ButtonType.YES) {
-            try {
+            taskRunner.io("Usuwanie kategorii", progress -> {
                 dbService.deleteCategory(selected);
+                return null;
+            }).onSuccess(r -> {
                 refreshCategoriesList();
                 loadDataFromDB();
                 setStatus("Usunięto kategorię.");
-            } catch (Exception e) { showAlert("Błąd", "Nie udało się usunąć kategorii."); }
+            }).onFailure(e -> showAlert("Błąd", "Nie udało się usunąć kategorii."));
         }
     }
 
     // --- METODY KONFIGURACYJNE (STANDARDOWE) ---
 
+    /**
+     * Fabryka wartości komórki wywołująca getter wiersza. Wiersz może być null - w trybie stronicowania
+     * dla strony, która jeszcze się wczytuje - wtedy komórka jest pusta (jak w {@link PropertyValueFactory}).
+     */
+    private static <T> Callback<TableColumn.CellDataFeatures<DataPoint, T>, ObservableValue<T>> rowValue(
+            Function<DataPoint, T> getter) {
+        return c -> c.getValue() == null ? null : new ReadOnlyObjectWrapper<>(getter.apply(c.getValue()));
+    }
+
     /** Konfiguruje kolumny tabeli głównej. */
     private void setupTable() {
-        colProduct.setCellValueFactory(new PropertyValueFactory<>("product"));
-        colCategory.setCellValueFactory(new PropertyValueFactory<>("category"));
-        colQuantity.setCellValueFactory(new PropertyValueFactory<>("quantity"));
-        colPrice.setCellValueFactory(new PropertyValueFactory<>("price"));
-        colAvailable.setCellValueFactory(new PropertyValueFactory<>("available"));
+        // Bezpośrednie wywołania getterów zamiast refleksji PropertyValueFactory - tabela odczytuje
+        // tylko widoczne wiersze, a wartości powstają w chwili wyświetlenia (bez kopii w wierszach)
+        colProduct.setCellValueFactory(rowValue(DataPoint::getProduct));
+        colCategory.setCellValueFactory(rowValue(DataPoint::getCategory));
+        colQuantity.setCellValueFactory(rowValue(DataPoint::getQuantity));
+        colPrice.setCellValueFactory(rowValue(DataPoint::getPrice));
+        colAvailable.setCellValueFactory(rowValue(DataPoint::isAvailable));
 
         // Niestandardowe renderowanie kolumny dostępności (kolorowanie tekstu)
         colAvailable.setCellFactory(col -> new TableCell<>() {
@@ -335,21 +836,247 @@ public class DashboardController {
 
     /** Konfiguruje filtrowanie (wyszukiwanie) w czasie rzeczywistym. */
     private void setupSearch() {
-        filteredData = new FilteredList<>(masterData, p -> true);
-
-        txtSearch.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredData.setPredicate(dp -> {
-                if (newVal == null || newVal.isEmpty()) return true;
-                String lower = newVal.toLowerCase();
-                // Szukanie po nazwie produktu LUB kategorii
-                return dp.getProduct().toLowerCase().contains(lower) || dp.getCategory().toLowerCase().contains(lower);
-            });
-        });
+        filteredData = new FilteredList<>(masterData);
+
+        // Zapytanie wykonywane po przerwie w pisaniu, w wątku wyszukiwania
+        searchDebounce.setOnFinished(e -> runSearch(txtSearch.getText()));
+        txtSearch.textProperty().addListener((obs, oldVal, newVal) -> searchDebounce.playFromStart());
+        queryRefresh.setOnFinished(e -> runQuery());
 
         // Powiązanie posortowanej listy z tabelą
-        SortedList<DataPoint> sortedData = new SortedList<>(filteredData);
+        sortedData = new SortedList<>(filteredData);
         sortedData.comparatorProperty().bind(tableView.comparatorProperty());
         tableView.setItems(sortedData);
+
+        // W trybie stronicowania sortuje baza (ORDER BY) - tabela nie sortuje elementów sama
+        tableView.setSortPolicy(tv -> isPagedMode() || TableView.DEFAULT_SORT_POLICY.call(tv));
+        tableView.comparatorProperty().addListener((obs, oldVal, newVal) -> {
+            if (isPagedMode()) applyPagedSort();
+        });
+    }
+
+    // --- TRYB STRONICOWANIA Z BAZY ---
+
+    private boolean isPagedMode() { return tableView.getItems() == pagedData; }
+
+    /**
+     * Przełącza tabelę produktów między danymi w pamięci (masterData) a stronicowanym
+     * odczytem z bazy, w którym w pamięci jest tylko okno stron wokół widocznego fragmentu.
+     */
+    @FXML private void handleTogglePagedMode() {
+        if (chkPagedMode.isSelected()) {
+            if (activeImport != null) {
+                chkPagedMode.setSelected(false);
+                showAlert("Import w toku", "Poczekaj na zakończenie bieżącego importu lub go anuluj.");
+                return;
+            }
+            handleClear();
+            tableView.setItems(pagedData);
+            pagedData.setFilter(txtSearch.getText());
+            applyPagedSort();
+            pagedData.reload();
+            setStatus("Tryb stronicowania z bazy (tylko odczyt).");
+        } else {
+            handleClear();
+            tableView.setItems(sortedData);
+            setStatus("Tryb danych lokalnych.");
+        }
+    }
+
+    /** Odwzorowuje kolumnę sortowania tabeli na ORDER BY w bazie. */
+    private void applyPagedSort() {
+        if (tableView.getSortOrder().isEmpty()) {
+            pagedData.setSort(ProductSort.ID, true);
+            return;
+        }
+        TableColumn<DataPoint, ?> col = tableView.getSortOrder().get(0);
+        ProductSort sort = col == colProduct ? ProductSort.PRODUCT
+                : col == colCategory ? ProductSort.CATEGORY
+                : col == colQuantity ? ProductSort.QUANTITY
+                : col == colPrice ? ProductSort.PRICE
+                : col == colAvailable ? ProductSort.AVAILABLE
+                : ProductSort.ID;
+        pagedData.setSort(sort, col.getSortType() == TableColumn.SortType.ASCENDING);
+    }
+
+    private void showPagedModeReadOnly() {
+        showAlert("Tryb stronicowania", "Przeglądanie bazy jest tylko do odczytu. Wyłącz tryb stronicowania, aby edytować dane.");
+    }
+
+    /** Przekazuje usunięcia i dodania w masterData (edycja, usuwanie, import) do rejestru zmian. */
+    private void setupChangeTracking() {
+        masterData.addListener((ListChangeListener<DataPoint>) c -> {
+            while (c.next()) {
+                if (c.wasRemoved()) changeTracker.removed(c.getRemoved());
+                if (c.wasAdded()) changeTracker.added(c.getAddedSubList());
+            }
+        });
+    }
+
+    /**
+     * Utrzymuje indeks wyszukiwania przyrostowo: dodane wiersze są dopisywane, usunięte usuwane,
+     * a edytowane (zastąpione tym samym obiektem) aktualizowane. Tylko wymiana większości listy
+     * (np. odczyt z bazy) przebudowuje indeks z kopii. Zadania indeksu i zapytania wykonuje jeden wątek,
+     * więc zapytanie zawsze widzi indeks po wcześniejszych zmianach.
+     */
+    private void setupSearchIndex() {
+        masterData.addListener((ListChangeListener<DataPoint>) c -> {
+            columnIndexStale = true;
+            if (activeQuery != null) queryRefresh.playFromStart();
+            List<DataPoint> removed = new ArrayList<>();
+            List<DataPoint> added = new ArrayList<>();
+            while (c.next()) {
+                if (c.wasPermutated()) continue; // Kolejność nie ma znaczenia dla wyszukiwania
+                if (c.wasRemoved()) removed.addAll(c.getRemoved());
+                if (c.wasAdded()) added.addAll(c.getAddedSubList());
+            }
+            if (removed.isEmpty() && added.isEmpty()) return;
+
+            if (removed.size() > masterData.size() / 2) {
+                List<DataPoint> snapshot = new ArrayList<>(masterData);
+                searchExecutor.execute(() -> searchIndex.rebuild(snapshot));
+            } else {
+                // Edycja wiersza to zastąpienie go tym samym obiektem - w indeksie tylko aktualizacja nazw
+                Set<DataPoint> removedSet = Collections.newSetFromMap(new IdentityHashMap<>(removed.size()));
+                removedSet.addAll(removed);
+                List<DataPoint> edited = new ArrayList<>();
+                List<DataPoint> appended = new ArrayList<>();
+                for (DataPoint dp : added) {
+                    if (removedSet.remove(dp)) edited.add(dp);
+                    else appended.add(dp);
+                }
+                searchExecutor.execute(() -> {
+                    if (!removedSet.isEmpty()) searchIndex.remove(removedSet);
+                    if (!edited.isEmpty()) searchIndex.update(edited);
+                    if (!appended.isEmpty()) searchIndex.append(appended);
+                });
+            }
+            // Filtr dla zmienionych danych (nowe wiersze nie mają jeszcze wyniku zapytania)
+            if (!txtSearch.getText().isEmpty()) searchDebounce.playFromStart();
+        });
+    }
+
+    /**
+     * Filtruje tabelę według tekstu wyszukiwania (nazwa produktu lub kategoria).
+     * Zapytanie wykonuje indeks w wątku wyszukiwania; w wątku JavaFX ustawiany jest tylko gotowy predykat.
+     */
+    private void runSearch(String text) {
+        if (isPagedMode()) pagedData.setFilter(text); // Filtr po stronie bazy (ILIKE)
+        int gen = ++searchGeneration;
+        if (text == null || text.isEmpty()) {
+            searchPredicate = null;
+            applyFilters();
+            return;
+        }
+        searchExecutor.execute(() -> {
+            BitSet matches = new BitSet(searchIndex.size());
+            for (int doc : searchIndex.search(text)) matches.set(doc);
+            Predicate<DataPoint> predicate = matchPredicate(matches, searchIndex.size(), searchIndex::get);
+            Platform.runLater(() -> {
+                if (gen != searchGeneration) return;
+                searchPredicate = predicate;
+                applyFilters();
+            });
+        });
+    }
+
+    /** Kompiluje i stosuje filtr strukturalny z pola zapytania. */
+    @FXML private void handleApplyQuery() {
+        String text = txtQuery.getText().trim();
+        if (text.isEmpty()) {
+            handleClearQuery();
+            return;
+        }
+        try {
+            activeQuery = FilterQuery.parse(text);
+        } catch (IllegalArgumentException e) {
+            showAlert("Błąd filtra", e.getMessage());
+            return;
+        }
+        if (isPagedMode()) setStatus("Filtr zapytania dotyczy danych w pamięci - wyłącz tryb stronicowania.");
+        runQuery();
+    }
+
+    @FXML private void handleClearQuery() {
+        txtQuery.clear();
+        activeQuery = null;
+        queryGeneration++;
+        queryPredicate = null;
+        applyFilters();
+    }
+
+    /**
+     * Wykonuje aktywny filtr strukturalny w wątku wyszukiwania. Indeks kolumn jest przebudowywany
+     * z kopii masterData tylko wtedy, gdy dane zmieniły się od jego zbudowania.
+     */
+    private void runQuery() {
+        FilterQuery query = activeQuery;
+        if (query == null) return;
+        int gen = ++queryGeneration;
+        List<DataPoint> snapshot = columnIndexStale ? new ArrayList<>(masterData) : null;
+        columnIndexStale = false;
+        searchExecutor.execute(() -> {
+            long start = System.nanoTime();
+            if (snapshot != null) columnIndex = new ColumnIndex(snapshot);
+            ColumnIndex index = columnIndex;
+            BitSet matches = query.evaluate(index);
+            Predicate<DataPoint> predicate = matchPredicate(matches, index.size(), index::get);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            Platform.runLater(() -> {
+                if (gen != queryGeneration) return;
+                queryPredicate = predicate;
+                applyFilters();
+                setStatus(String.format("Filtr \"%s\": %d wierszy (%d ms).", query, matches.cardinality(), ms));
+            });
+        });
+    }
+
+    /** Ustawia predykat listy filtrowanej jako koniunkcję wyszukiwania tekstowego i filtra strukturalnego. */
+    private void applyFilters() {
+        Predicate<DataPoint> s = searchPredicate, q = queryPredicate;
+        filteredData.setPredicate(s == null ? q : q == null ? s : s.and(q));
+    }
+
+    /**
+     * Zamienia mapę bitową pasujących wierszy indeksu na predykat listy. Zbiór tożsamościowy obejmuje
+     * mniejszą z części (pasujące albo niepasujące wiersze), więc ma co najwyżej połowę rozmiaru indeksu.
+     */
+    private static Predicate<DataPoint> matchPredicate(BitSet matches, int size, IntFunction<DataPoint> row) {
+        int count = matches.cardinality();
+        boolean storeMatches = count <= size / 2;
+        Set<DataPoint> set = Collections.newSetFromMap(new IdentityHashMap<>(storeMatches ? count : size - count));
+        if (storeMatches) {
+            for (int i = matches.nextSetBit(0); i >= 0 && i < size; i = matches.nextSetBit(i + 1)) set.add(row.apply(i));
+            return set::contains;
+        }
+        for (int i = matches.nextClearBit(0); i < size; i = matches.nextClearBit(i + 1)) set.add(row.apply(i));
+        return dp -> !set.contains(dp);
+    }
+
+    /** Przekazuje dodane i usunięte wiersze masterData do przyrostowych agregatów (edycje pól zgłasza sam produkt). */
+    private void setupAggregates() {
+        masterData.addListener((ListChangeListener<DataPoint>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) continue; // Zmiana kolejności nie zmienia agregatów
+                if (c.wasRemoved()) aggregates.removed(c.getRemoved());
+                if (c.wasAdded()) aggregates.added(c.getAddedSubList());
+            }
+        });
+    }
+
+    /** Utrzymuje magazyn kolumnowy w tej samej kolejności co masterData. */
+    private void setupColumnStore() {
+        masterData.addListener((ListChangeListener<DataPoint>) c -> {
+            while (c.next()) {
+                if (c.wasPermutated()) {
+                    columnStore.setAll(masterData);
+                    return;
+                }
+                // Zastąpienie = usunięcie + wstawienie w tym samym miejscu
+                if (c.wasRemoved()) columnStore.remove(c.getFrom(), c.getFrom() + c.getRemovedSize());
+                if (c.wasAdded()) columnStore.insert(c.getFrom(), c.getAddedSubList());
+            }
+        });
     }
 
     @FXML private void handleClear() {
@@ -375,23 +1102,45 @@ public class DashboardController {
     }
 
     private void refreshCategoriesList() {
-        try { categoriesData.setAll(dbService.getAllCategories()); listCategories.setItems(categoriesData); } catch (Exception e) {}
+        // Zadanie bez komunikatów - brak bazy zgłasza odczyt produktów, lista kategorii pozostaje pusta
+        taskRunner.io(null, progress -> dbService.getAllCategories())
+                .onSuccess(categories -> { categoriesData.setAll(categories); listCategories.setItems(categoriesData); })
+                .onFailure(e -> {});
     }
 
     @FXML private void handleAddCategory() {
-        try {
-            dbService.addCategory(txtNewCategory.getText().trim());
-            txtNewCategory.clear(); refreshCategoriesList();
-        } catch (Exception e) {}
+        String name = txtNewCategory.getText().trim();
+        taskRunner.io(null, progress -> {
+            dbService.addCategory(name);
+            return null;
+        }).onSuccess(r -> { txtNewCategory.clear(); refreshCategoriesList(); })
+          .onFailure(e -> {});
     }
 
-    /** Zapisuje bieżący stan listy do bazy danych (nadpisując dane). */
+    /**
+     * Zapisuje w bazie zmiany bieżącej listy (pełny zapis, gdy lista nie pochodzi z bazy).
+     * Zapis działa w tle na kopii listy; do jego zakończenia edycja i import są zablokowane,
+     * bo rejestr zmian i znaczniki produktów są wtedy aktualizowane przez wątek zapisu.
+     */
     @FXML private void handleSaveToDB() {
-        try {
-            dbService.saveToDatabase(masterData);
-            refreshCategoriesList();
-            setStatus("Zapisano dane do bazy.");
-        } catch (Exception e) { showAlert("Błąd zapisu", e.getMessage()); }
+        if (saveInProgress) { showSaveInProgress(); return; }
+        if (activeImport != null) {
+            showAlert("Import w toku", "Poczekaj na zakończenie bieżącego importu lub go anuluj.");
+            return;
+        }
+        List<DataPoint> snapshot = new ArrayList<>(masterData);
+        saveInProgress = true;
+        taskRunner.io("Zapis do bazy", progress -> dbService.saveChanges(snapshot, changeTracker))
+                .onSuccess(changes -> {
+                    refreshCategoriesList();
+                    setStatus("Zapisano dane do bazy (zmian: " + changes + ").");
+                })
+                .onFailure(e -> showAlert("Błąd zapisu", e.getMessage()))
+                .onStopped(() -> saveInProgress = false);
+    }
+
+    private void showSaveInProgress() {
+        showAlert("Zapis w toku", "Poczekaj na zakończenie zapisu do bazy.");
     }
 
     @FXML private void handleExit() { Platform.exit(); }
@@ -401,24 +1150,125 @@ public class DashboardController {
         comboChartType.setItems(FXCollections.observableArrayList("Ilość", "Cena", "Wartość Całkowita"));
         comboChartType.setValue("Ilość");
         comboChartType.setOnAction(e -> updateChart());
+
+        List<String> modes = new ArrayList<>();
+        for (ChartMode mode : ChartMode.values()) modes.add(mode.getLabel());
+        comboChartMode.setItems(FXCollections.observableArrayList(modes));
+        comboChartMode.setValue(ChartMode.TOP_N.getLabel());
+        comboChartMode.setOnAction(e -> updateChart());
+
+        spinChartBars.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(2, 200, 20, 5));
+        spinChartBars.valueProperty().addListener((obs, oldVal, newVal) -> updateChart());
     }
 
-    /** Aktualizuje dane na wykresie na podstawie wybranego typu. */
+    /**
+     * Aktualizuje wykres: dane są agregowane w puli obliczeniowej (co najwyżej zadana liczba słupków),
+     * a w wątku JavaFX podmieniana jest tylko gotowa seria. Nowe żądanie anuluje poprzednie
+     * (po najbliższym bloku wierszy), a kopia danych powstaje dopiero przy starcie agregacji.
+     */
     private void updateChart() {
-        barChart.getData().clear();
         String type = comboChartType.getValue();
-        if(type==null) return;
+        ChartMode mode = ChartMode.fromLabel(comboChartMode.getValue());
+        Integer maxBars = spinChartBars.getValue();
+        if (type == null || mode == null || maxBars == null) return;
+
+        taskRunner.latest("chart", () -> {
+            List<DataPoint> snapshot = new ArrayList<>(masterData);
+            return progress -> {
+                try (OperationTimer.Sample sample = CHART_AGGREGATE_TIMER.start()) {
+                    sample.rows(snapshot.size());
+                    List<ChartBar> bars = chartAggregator.aggregate(snapshot, StatField.fromLabel(type), mode, maxBars,
+                            progress::isCancelled, p -> progress.update(p, 1));
+                    XYChart.Series<String, Number> s = new XYChart.Series<>();
+                    s.setName(type);
+                    for (ChartBar bar : bars) s.getData().add(new XYChart.Data<>(bar.getLabel(), bar.getValue()));
+                    return s;
+                }
+            };
+        }).onSuccess(s -> {
+            try (OperationTimer.Sample sample = CHART_RENDER_TIMER.start()) {
+                sample.rows(s.getData().size());
+                axisX.setLabel(mode.getAxisLabel());
+                axisY.setLabel(mode == ChartMode.HISTOGRAM ? "Liczba produktów" : type);
+                barChart.getData().setAll(Collections.singletonList(s));
+            }
+        });
+    }
 
-        axisY.setLabel(type);
-        XYChart.Series<String, Number> s = new XYChart.Series<>();
-        s.setName(type);
+    // --- DIAGNOSTYKA ---
 
-        for(DataPoint dp : masterData) {
-            Number v = type.equals("Ilość") ? dp.getQuantity() :
-                    (type.equals("Cena") ? dp.getPrice() : dp.getTotalValue());
-            s.getData().add(new XYChart.Data<>(dp.getProduct(), v));
-        }
-        barChart.getData().add(s);
+    /**
+     * Konfiguruje zakładkę diagnostyki: przełączniki pomiarów i zdarzeń JFR oraz tabelę liczników.
+     * Tabela odświeżana jest co sekundę tylko wtedy, gdy zakładka jest wybrana.
+     */
+    private void setupDiagnostics() {
+        chkMetricsEnabled.setSelected(Metrics.isEnabled());
+        chkMetricsEnabled.selectedProperty().addListener((obs, oldVal, newVal) -> Metrics.setEnabled(newVal));
+        chkJfrEvents.setSelected(Metrics.isJfrEvents());
+        chkJfrEvents.selectedProperty().addListener((obs, oldVal, newVal) -> Metrics.setJfrEvents(newVal));
+
+        tableMetrics.getColumns().add(metricColumn("Operacja", 170, MetricSnapshot::getName));
+        tableMetrics.getColumns().add(metricColumn("Wywołania", 80, MetricSnapshot::getCount));
+        tableMetrics.getColumns().add(millisColumn("Średnio [ms]", MetricSnapshot::getMeanMs));
+        tableMetrics.getColumns().add(millisColumn("p50 [ms]", MetricSnapshot::getP50Ms));
+        tableMetrics.getColumns().add(millisColumn("p90 [ms]", MetricSnapshot::getP90Ms));
+        tableMetrics.getColumns().add(millisColumn("p99 [ms]", MetricSnapshot::getP99Ms));
+        tableMetrics.getColumns().add(millisColumn("p99,9 [ms]", MetricSnapshot::getP999Ms));
+        tableMetrics.getColumns().add(millisColumn("Maks. [ms]", MetricSnapshot::getMaxMs));
+        tableMetrics.getColumns().add(metricColumn("Wiersze", 100, MetricSnapshot::getRows));
+        TableColumn<MetricSnapshot, Long> bytes = metricColumn("Dane [MB]", 90, MetricSnapshot::getBytes);
+        bytes.setCellFactory(tc -> new TableCell<>() {
+            @Override protected void updateItem(Long item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null || item.longValue() == 0 ? null : String.format("%.1f", item.longValue() / 1048576.0));
+            }
+        });
+        tableMetrics.getColumns().add(bytes);
+
+        SortedList<MetricSnapshot> sortedMetrics = new SortedList<>(metricRows);
+        sortedMetrics.comparatorProperty().bind(tableMetrics.comparatorProperty());
+        tableMetrics.setItems(sortedMetrics);
+        tableMetrics.setPlaceholder(new Label("Brak pomiarów - zaznacz \"Zbieraj pomiary\" i wykonaj operację."));
+
+        diagnosticsRefresh.setCycleCount(Animation.INDEFINITE);
+        tabDiagnostics.selectedProperty().addListener((obs, oldVal, selected) -> {
+            if (selected) {
+                refreshDiagnostics();
+                diagnosticsRefresh.play();
+            } else {
+                diagnosticsRefresh.stop();
+            }
+        });
+    }
+
+    private static <T> TableColumn<MetricSnapshot, T> metricColumn(String title, double width, Function<MetricSnapshot, T> value) {
+        TableColumn<MetricSnapshot, T> col = new TableColumn<>(title);
+        col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(value.apply(c.getValue())));
+        col.setPrefWidth(width);
+        return col;
+    }
+
+    private static TableColumn<MetricSnapshot, Double> millisColumn(String title, Function<MetricSnapshot, Double> value) {
+        TableColumn<MetricSnapshot, Double> col = metricColumn(title, 90, value);
+        col.setCellFactory(tc -> new TableCell<>() {
+            @Override protected void updateItem(Double item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : String.format("%.3f", item));
+            }
+        });
+        return col;
+    }
+
+    /** Odczytuje liczniki czasu i metryki puli połączeń. */
+    private void refreshDiagnostics() {
+        metricRows.setAll(Metrics.snapshot());
+        lblPoolStats.setText(dbService.getPool().toString());
+    }
+
+    /** Zeruje wszystkie liczniki czasu. */
+    @FXML private void handleResetMetrics() {
+        Metrics.resetAll();
+        refreshDiagnostics();
     }
 
     private void setStatus(String msg) { lblStatus.setText(msg); }
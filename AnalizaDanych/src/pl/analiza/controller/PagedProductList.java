@@ -0,0 +1,229 @@
+package pl.analiza.controller;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.DatabaseService;
+import pl.analiza.service.ProductSort;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Lista produktów stronicowana z bazy danych dla trybu przeglądania dużych katalogów.
+ * <p>
+ * W pamięci przechowywane jest jedynie okno stron wokół widocznego fragmentu tabeli
+ * ({@link #MAX_CACHED_PAGES} × {@link #PAGE_SIZE} wierszy). {@code TableView} pyta listę o wiersze
+ * tylko z bieżącego widoku - brakująca strona jest wtedy pobierana w tle, a w jej miejscu
+ * tymczasowo zwracane są puste wiersze (null). Po pobraniu strony pobierane są z wyprzedzeniem
+ * strony sąsiednie, co pozwala płynnie przewijać listę.
+ * </p>
+ * <p>
+ * Kolejne strony wyznaczane są kluczem (wartość sortowania i id ostatniego wiersza poprzedniej
+ * strony), dlatego ich koszt nie zależy od pozycji w tabeli. {@code OFFSET} używany jest tylko
+ * przy skoku w nieodwiedzone miejsce listy (np. przeciągnięcie suwaka).
+ * </p>
+ * <p>
+ * Metody listy wywoływane są wyłącznie w wątku JavaFX; zapytania do bazy wykonuje osobny wątek.
+ * </p>
+ */
+class PagedProductList extends ObservableListBase<DataPoint> {
+
+    /** Liczba wierszy na stronę. */
+    static final int PAGE_SIZE = 200;
+
+    /** Maksymalna liczba stron trzymanych w pamięci. */
+    private static final int MAX_CACHED_PAGES = 24;
+
+    /** Maksymalna liczba zapamiętanych wierszy granicznych stron (do nawigacji kluczem). */
+    private static final int MAX_BOUNDARIES = 4096;
+
+    private final DatabaseService db;
+    private final ExecutorService executor;
+    private final Consumer<Exception> onError;
+
+    /** Strony w kolejności ostatniego użycia (LRU). */
+    private final Map<Integer, List<DataPoint>> pages = new LinkedHashMap<Integer, List<DataPoint>>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<DataPoint>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /** Pierwszy i ostatni wiersz pobranych stron (dostęp także z wątku zapytań). */
+    private final Map<Integer, DataPoint> firstRows = boundaryMap();
+    private final Map<Integer, DataPoint> lastRows = boundaryMap();
+
+    /** Strony, dla których trwa pobieranie. */
+    private final Set<Integer> loading = new HashSet<>();
+
+    private int size;
+    private ProductSort sort = ProductSort.ID;
+    private boolean ascending = true;
+    private String filter = "";
+
+    /** Numer wersji zapytania - odpowiedzi dla poprzedniego sortowania/filtra są odrzucane. */
+    private volatile int generation;
+
+    /** Ostatnio żądana strona - zaległe żądania dalekich stron są pomijane. */
+    private volatile int focusPage;
+
+    /**
+     * @param db       Serwis bazy danych.
+     * @param executor Wykonawca zapytań (jednowątkowy - kolejne strony korzystają z granic poprzednich).
+     * @param onError  Obsługa błędów bazy (wywoływana w wątku JavaFX).
+     */
+    PagedProductList(DatabaseService db, ExecutorService executor, Consumer<Exception> onError) {
+        this.db = db;
+        this.executor = executor;
+        this.onError = onError;
+    }
+
+    private static Map<Integer, DataPoint> boundaryMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<Integer, DataPoint>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DataPoint> eldest) {
+                return size() > MAX_BOUNDARIES;
+            }
+        });
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Zwraca wiersz o podanym indeksie lub null, jeśli jego strona nie została jeszcze pobrana
+     * (pobieranie startuje w tle, a tabela zostanie powiadomiona o nadejściu danych).
+     */
+    @Override
+    public DataPoint get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Indeks: " + index + ", rozmiar: " + size);
+        int page = index / PAGE_SIZE;
+        List<DataPoint> rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return null;
+        }
+        // Pobranie z wyprzedzeniem stron sąsiednich
+        if (page > 0 && !pages.containsKey(page - 1)) request(page - 1);
+        if ((page + 1) * PAGE_SIZE < size && !pages.containsKey(page + 1)) request(page + 1);
+        int offset = index - page * PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    /**
+     * Zmienia porządek sortowania (ORDER BY po stronie bazy) i przeładowuje listę.
+     */
+    void setSort(ProductSort sort, boolean ascending) {
+        if (this.sort == sort && this.ascending == ascending) return;
+        this.sort = sort;
+        this.ascending = ascending;
+        reload();
+    }
+
+    /**
+     * Ustawia filtr nazwy produktu/kategorii i przeładowuje listę.
+     */
+    void setFilter(String filter) {
+        String f = filter == null ? "" : filter;
+        if (f.equals(this.filter)) return;
+        this.filter = f;
+        reload();
+    }
+
+    /**
+     * Odrzuca pobrane strony i pobiera liczbę wierszy dla bieżącego sortowania i filtra.
+     */
+    void reload() {
+        int gen = ++generation;
+        pages.clear();
+        firstRows.clear();
+        lastRows.clear();
+        loading.clear();
+        String f = filter;
+        executor.execute(() -> {
+            try {
+                long count = db.countProducts(f);
+                Platform.runLater(() -> {
+                    if (gen == generation) resize((int) Math.min(Integer.MAX_VALUE, count));
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> onError.accept(e));
+            }
+        });
+    }
+
+    /** Ustawia nowy rozmiar listy - wszystkie wiersze zostają zastąpione (strony pobierane od nowa). */
+    private void resize(int newSize) {
+        int oldSize = size;
+        size = newSize;
+        beginChange();
+        if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, (DataPoint) null));
+        if (newSize > 0) nextAdd(0, newSize);
+        endChange();
+    }
+
+    /** Zleca pobranie strony w tle (jeśli nie trwa już jej pobieranie). */
+    private void request(int page) {
+        if (!loading.add(page)) return;
+        focusPage = page;
+        int gen = generation;
+        ProductSort s = sort;
+        boolean asc = ascending;
+        String f = filter;
+
+        executor.execute(() -> {
+            // Żądanie nieaktualne (zmiana sortowania lub suwak przesunięty daleko) - pominięcie
+            if (gen != generation || Math.abs(page - focusPage) > MAX_CACHED_PAGES / 2) {
+                Platform.runLater(() -> { if (gen == generation) loading.remove(page); });
+                return;
+            }
+            try {
+                List<DataPoint> rows = fetch(page, s, asc, f);
+                if (!rows.isEmpty()) {
+                    firstRows.put(page, rows.get(0));
+                    lastRows.put(page, rows.get(rows.size() - 1));
+                }
+                Platform.runLater(() -> apply(gen, page, rows));
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (gen != generation) return;
+                    loading.remove(page);
+                    onError.accept(e);
+                });
+            }
+        });
+    }
+
+    /** Pobiera stronę kluczem od sąsiedniej strony, a gdy żadna nie jest znana - przez OFFSET. */
+    private List<DataPoint> fetch(int page, ProductSort s, boolean asc, String f) throws Exception {
+        if (page == 0) return db.loadPageAfter(s, asc, f, null, PAGE_SIZE);
+        DataPoint previous = lastRows.get(page - 1);
+        if (previous != null) return db.loadPageAfter(s, asc, f, previous, PAGE_SIZE);
+        DataPoint next = firstRows.get(page + 1);
+        if (next != null) return db.loadPageBefore(s, asc, f, next, PAGE_SIZE);
+        return db.loadPageAt(s, asc, f, (long) page * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    /** Wstawia pobraną stronę i powiadamia tabelę o zastąpieniu pustych wierszy. */
+    private void apply(int gen, int page, List<DataPoint> rows) {
+        if (gen != generation) return;
+        loading.remove(page);
+        pages.put(page, rows);
+
+        int from = page * PAGE_SIZE;
+        int to = Math.min(size, from + rows.size());
+        if (to <= from) return;
+        beginChange();
+        nextReplace(from, to, Collections.nCopies(to - from, (DataPoint) null));
+        endChange();
+    }
+}
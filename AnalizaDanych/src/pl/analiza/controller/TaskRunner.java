@@ -0,0 +1,319 @@
+package pl.analiza.controller;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Warstwa wykonywania zadań w tle dla kontrolera - wątek JavaFX nie czeka na bazę, pliki ani obliczenia.
+ * <p>
+ * Zadania trafiają do jednej z dwóch pul:
+ * <ul>
+ *     <li>wejścia-wyjścia ({@link #io}) - ograniczona liczba wątków i ograniczona kolejka,
+ *         dzięki czemu baza nie dostaje więcej równoczesnych zapytań niż pula połączeń,</li>
+ *     <li>obliczeniowej ({@link #cpu}, {@link #latest}) - {@link ForkJoinPool} o rozmiarze liczby
+ *         procesorów, z której korzystają także równoległe obliczenia {@code MathService}.</li>
+ * </ul>
+ * Każde zadanie jest anulowalnym {@link Task}; zadania z tytułem zgłaszają komunikaty i postęp
+ * przez {@link #currentProperty()} (etykieta statusu i pasek postępu). Zadania {@link #latest}
+ * o tym samym kluczu są łączone: nowe żądanie anuluje trwające i czeka na jego zakończenie, więc dla klucza
+ * działa najwyżej jedno zadanie i jedno oczekuje (kolejne żądania zastępują oczekujące).
+ * </p>
+ * <p>
+ * Metody klasy wywoływane są wyłącznie w wątku JavaFX. Obsługę wyniku można zarejestrować
+ * po uruchomieniu zadania - zdarzenia zakończenia docierają w kolejnym cyklu wątku JavaFX.
+ * </p>
+ */
+class TaskRunner {
+
+    /** Liczba wątków operacji wejścia-wyjścia (nie większa niż rozmiar puli połączeń z bazą). */
+    static final int IO_THREADS = 4;
+
+    /** Maksymalna liczba zadań wejścia-wyjścia oczekujących w kolejce. */
+    static final int IO_QUEUE_CAPACITY = 64;
+
+    /** Czas bezczynności, po którym wątek wejścia-wyjścia jest zwalniany. */
+    private static final long IO_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Praca wykonywana w tle.
+     *
+     * @param <T> Typ wyniku.
+     */
+    interface Work<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /** Widok zadania dostępny dla pracy w tle: postęp, komunikat i sprawdzanie anulowania. */
+    interface Progress {
+        void update(double done, double total);
+
+        void message(String message);
+
+        boolean isCancelled();
+    }
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ForkJoinPool cpuPool;
+    private final Consumer<String> status;
+    private final BiConsumer<String, Throwable> defaultFailure;
+
+    /** Trwające zadania łączonych żądań według klucza. */
+    private final Map<String, Job<?>> latestJobs = new HashMap<>();
+
+    /** Zadania łączonych żądań czekające na zakończenie trwającego zadania o tym samym kluczu. */
+    private final Map<String, Job<?>> pendingJobs = new HashMap<>();
+
+    /** Trwające zadania z tytułem w kolejności uruchomienia. */
+    private final List<Job<?>> running = new ArrayList<>();
+
+    /** Ostatnio uruchomione zadanie z tytułem, które jeszcze trwa (null, gdy brak). */
+    private final ReadOnlyObjectWrapper<Job<?>> current = new ReadOnlyObjectWrapper<>(this, "current");
+
+    /**
+     * @param status         Wyświetlanie komunikatów zadań (wątek JavaFX).
+     * @param defaultFailure Domyślna obsługa błędu zadania: tytuł i przyczyna (wątek JavaFX).
+     */
+    TaskRunner(Consumer<String> status, BiConsumer<String, Throwable> defaultFailure) {
+        this.status = status;
+        this.defaultFailure = defaultFailure;
+        ioExecutor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS, IO_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(IO_QUEUE_CAPACITY), daemonThreads("io-worker"));
+        ioExecutor.allowCoreThreadTimeOut(true);
+        cpuPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("cpu-worker-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** @return Wykonawca operacji wejścia-wyjścia (np. dla potoku importu). */
+    Executor ioExecutor() { return ioExecutor; }
+
+    /** @return Pula obliczeniowa (np. dla równoległych obliczeń {@code MathService}). */
+    ForkJoinPool cpuPool() { return cpuPool; }
+
+    /** @return Bieżące zadanie z tytułem (do powiązania paska postępu i przycisku anulowania). */
+    ReadOnlyObjectProperty<Job<?>> currentProperty() { return current.getReadOnlyProperty(); }
+
+    /**
+     * Uruchamia operację wejścia-wyjścia (baza danych, plik).
+     *
+     * @param title Tytuł zadania w statusie i komunikatach błędów (null - zadanie bez komunikatów).
+     * @param work  Praca wykonywana w tle.
+     */
+    <T> Job<T> io(String title, Work<T> work) {
+        return submit(new Job<>(title, work), ioExecutor);
+    }
+
+    /**
+     * Uruchamia obliczenia na danych przygotowanych w wątku JavaFX (kopii listy lub kolumn).
+     *
+     * @param title Tytuł zadania w statusie i komunikatach błędów.
+     * @param work  Praca wykonywana w tle.
+     */
+    <T> Job<T> cpu(String title, Work<T> work) {
+        return submit(new Job<>(title, work), cpuPool);
+    }
+
+    /**
+     * Uruchamia obliczenia odświeżające widok, anulując poprzednie zadanie o tym samym kluczu.
+     * Zadanie nie zmienia statusu; wynik anulowanego zadania nie jest przekazywany.
+     * <p>
+     * Jeśli zadanie o tym kluczu jeszcze trwa, nowe zadanie startuje dopiero po jego zakończeniu,
+     * a {@code prepare} (np. kopia listy produktów) wywoływane jest w wątku JavaFX tuż przed startem -
+     * seria szybkich żądań kosztuje jedną kopię danych, nie kopię na każde żądanie.
+     * </p>
+     *
+     * @param key     Klucz łączonych żądań (np. "chart").
+     * @param prepare Przygotowanie pracy w wątku JavaFX; praca powinna sprawdzać {@link Progress#isCancelled()}.
+     */
+    <T> Job<T> latest(String key, Supplier<Work<T>> prepare) {
+        Job<T> job = new Job<>(null, null);
+        job.prepare = prepare;
+        Job<?> active = latestJobs.get(key);
+        if (active == null) {
+            startLatest(key, job);
+        } else {
+            active.cancel(false);
+            Job<?> replaced = pendingJobs.put(key, job);
+            if (replaced != null) replaced.cancel(false);
+        }
+        return job;
+    }
+
+    private void startLatest(String key, Job<?> job) {
+        latestJobs.put(key, job);
+        job.release = () -> {
+            latestJobs.remove(key);
+            Job<?> next = pendingJobs.remove(key);
+            if (next != null) startLatest(key, next);
+        };
+        if (!job.isCancelled()) job.prepareWork();
+        submit(job, cpuPool);
+    }
+
+    /** Anuluje bieżące zadanie z tytułem. */
+    boolean cancelCurrent() {
+        Job<?> job = current.get();
+        return job != null && job.cancel();
+    }
+
+    private <T> Job<T> submit(Job<T> job, Executor executor) {
+        if (!Platform.isFxApplicationThread()) throw new IllegalStateException("Zadania uruchamiane są z wątku JavaFX.");
+        if (job.title != null) {
+            running.add(job);
+            current.set(job);
+            status.accept(job.title + "...");
+            job.messageProperty().addListener((obs, oldVal, newVal) -> {
+                if (newVal != null && !newVal.isEmpty()) status.accept(newVal);
+            });
+            job.stateProperty().addListener((obs, oldState, newState) -> {
+                if (!isFinished(newState)) return;
+                running.remove(job);
+                current.set(running.isEmpty() ? null : running.get(running.size() - 1));
+            });
+        }
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            // Kolejka pełna - zadanie kończy się błędem zamiast blokować wątek JavaFX
+            job.reject(new RejectedExecutionException("Zbyt wiele operacji w toku - spróbuj ponownie za chwilę.", e));
+        }
+        return job;
+    }
+
+    private static boolean isFinished(Worker.State state) {
+        return state == Worker.State.SUCCEEDED || state == Worker.State.FAILED || state == Worker.State.CANCELLED;
+    }
+
+    /**
+     * Zadanie w tle z obsługą wyniku i błędu w wątku JavaFX.
+     *
+     * @param <T> Typ wyniku.
+     */
+    final class Job<T> extends Task<T> implements Progress {
+        private final String title;
+        private Work<T> work;
+        /** Przygotowanie pracy tuż przed startem (zadania {@link #latest}). */
+        private Supplier<Work<T>> prepare;
+        private Consumer<? super T> onSuccess;
+        private Consumer<Throwable> onFailure;
+        private Runnable onStopped;
+        /** Wewnętrzna akcja po zakończeniu pracy (start oczekującego zadania {@link #latest}). */
+        private Runnable release;
+
+        private Job(String title, Work<T> work) {
+            this.title = title;
+            this.work = work;
+        }
+
+        /** Rejestruje obsługę wyniku (wątek JavaFX). */
+        Job<T> onSuccess(Consumer<? super T> handler) {
+            onSuccess = handler;
+            return this;
+        }
+
+        /** Rejestruje obsługę błędu zastępującą domyślną (wątek JavaFX; nie dotyczy anulowania). */
+        Job<T> onFailure(Consumer<Throwable> handler) {
+            onFailure = handler;
+            return this;
+        }
+
+        /**
+         * Rejestruje akcję wywoływaną, gdy praca w tle faktycznie się zakończyła (wątek JavaFX).
+         * W przeciwieństwie do zdarzeń stanu zadania uwzględnia anulowanie trwającej pracy -
+         * np. zapis do bazy kończy wtedy transakcję przed zwolnieniem blokady edycji.
+         */
+        Job<T> onStopped(Runnable handler) {
+            onStopped = handler;
+            return this;
+        }
+
+        private void prepareWork() {
+            work = prepare.get();
+        }
+
+        @Override
+        protected T call() throws Exception {
+            return work.run(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                Platform.runLater(this::stopped);
+            }
+        }
+
+        private void stopped() {
+            if (onStopped != null) onStopped.run();
+            if (release != null) release.run();
+        }
+
+        @Override
+        public void update(double done, double total) {
+            updateProgress(done, total);
+        }
+
+        @Override
+        public void message(String message) {
+            updateMessage(message);
+        }
+
+        @Override
+        protected void succeeded() {
+            if (onSuccess != null) onSuccess.accept(getValue());
+        }
+
+        @Override
+        protected void failed() {
+            fail(getException());
+        }
+
+        private void fail(Throwable error) {
+            if (onFailure != null) onFailure.accept(error);
+            else defaultFailure.accept(title != null ? title : "Zadanie w tle", error);
+        }
+
+        /** Zadanie odrzucone przez pulę - błąd zgłaszany w kolejnym cyklu (po rejestracji obsługi). */
+        private void reject(Throwable error) {
+            cancel(false);
+            Platform.runLater(() -> {
+                fail(error);
+                stopped();
+            });
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package pl.analiza.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wspólny słownik nazw kategorii - każda nazwa ma jeden egzemplarz String i stały kod liczbowy.
+ * <p>
+ * Produktów są miliony, a kategorii zwykle kilkaset, więc {@link DataPoint} przechowuje jedynie
+ * kod kategorii, a {@link DataPoint#getCategory()} zwraca współdzielony napis ze słownika.
+ * Kod 0 oznacza brak kategorii (null). Słownik tylko rośnie: kody raz nadane nie zmieniają się
+ * i nie są zwalniane (zmiana nazwy kategorii dodaje nowy wpis), dzięki czemu odczyt nazwy
+ * nie wymaga blokady. Rozmiar jest ograniczony liczbą różnych nazw kategorii w sesji.
+ * </p>
+ * <p>
+ * Klasa jest bezpieczna wątkowo - równoległe parsery importu mogą nadawać kody jednocześnie.
+ * </p>
+ */
+public final class CategoryDictionary {
+
+    /** Największy kod (mieści się w 30 bitach pola {@link DataPoint}). */
+    static final int MAX_CODE = (1 << 30) - 1;
+
+    /** Kody według nazwy (odczyt bez blokady). */
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+
+    /** Nazwy według kodu; indeks 0 to brak kategorii. Tablica jest podmieniana przy powiększaniu. */
+    private static volatile String[] names = new String[64];
+
+    private static int size = 1;
+
+    private CategoryDictionary() {
+    }
+
+    /**
+     * Zwraca kod kategorii, nadając nowy przy pierwszym wystąpieniu nazwy.
+     *
+     * @param category Nazwa kategorii (może być null).
+     * @return Kod kategorii (0 dla null).
+     */
+    public static int codeOf(String category) {
+        if (category == null) return 0;
+        Integer code = CODES.get(category);
+        return code != null ? code : add(category);
+    }
+
+    private static synchronized int add(String category) {
+        Integer code = CODES.get(category);
+        if (code != null) return code;
+        if (size > MAX_CODE) throw new IllegalStateException("Przekroczono limit liczby kategorii.");
+
+        String[] current = names;
+        if (size == current.length) current = Arrays.copyOf(current, current.length * 2);
+        current[size] = category;
+        // Publikacja tablicy przed kodem - wątek, który zobaczy kod, zobaczy też nazwę
+        names = current;
+        CODES.put(category, size);
+        return size++;
+    }
+
+    /**
+     * Zwraca współdzieloną nazwę kategorii.
+     *
+     * @param code Kod nadany przez {@link #codeOf(String)}.
+     * @return Nazwa kategorii (null dla kodu 0).
+     */
+    public static String nameOf(int code) {
+        return names[code];
+    }
+
+    /**
+     * Zwraca współdzielony egzemplarz nazwy kategorii (równy podanej).
+     *
+     * @param category Nazwa kategorii (może być null).
+     * @return Egzemplarz ze słownika.
+     */
+    public static String intern(String category) {
+        return nameOf(codeOf(category));
+    }
+
+    /** @return Liczba nadanych kodów (łącznie z kodem 0 dla braku kategorii). */
+    public static synchronized int size() {
+        return size;
+    }
+}
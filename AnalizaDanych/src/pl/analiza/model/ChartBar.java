@@ -0,0 +1,25 @@
+package pl.analiza.model;
+
+/**
+ * Pojedynczy słupek wykresu: etykieta osi i wartość.
+ * Obiekty tej klasy są niemutowalne.
+ */
+public class ChartBar {
+    private final String label;
+    private final double value;
+
+    /**
+     * @param label Etykieta słupka (unikalna w obrębie serii).
+     * @param value Wysokość słupka.
+     */
+    public ChartBar(String label, double value) {
+        this.label = label;
+        this.value = value;
+    }
+
+    /** Pobiera etykietę słupka. */
+    public String getLabel() { return label; }
+
+    /** Pobiera wysokość słupka. */
+    public double getValue() { return value; }
+}
@@ -6,13 +6,28 @@ package pl.analiza.model;
  * Jest to klasa typu POJO (Plain Old Java Object), która przechowuje informacje
  * o produkcie i jest wykorzystywana przez TableView oraz serwisy danych.
  * </p>
+ * <p>
+ * Układ pól jest zwarty, bo obiektów są miliony: kategoria jest kodem ze wspólnego słownika
+ * ({@link CategoryDictionary}), a oba znaczniki logiczne zajmują dwa najwyższe bity tego samego
+ * pola. Obiekt ma 40 bajtów (przy skompresowanych wskaźnikach) zamiast 48, a nazwa kategorii
+ * istnieje w pamięci raz, a nie w każdym wierszu. Gettery zwracają te same wartości co dawniej.
+ * </p>
  */
 public class DataPoint {
-    private String product;
-    private String category;
+    /** Bit znacznika dostępności w polu {@link #categoryAndFlags}. */
+    private static final int AVAILABLE = 1 << 30;
+    /** Bit znacznika zmiany w polu {@link #categoryAndFlags}. */
+    private static final int MODIFIED = 1 << 31;
+    /** Maska kodu kategorii (bity 0-29). */
+    private static final int CATEGORY_MASK = CategoryDictionary.MAX_CODE;
+
+    private int id;
     private int quantity;
     private double price;
-    private boolean available;
+    private String product;
+    private DataPointObserver observer;
+    /** Kod kategorii w słowniku oraz znaczniki {@link #AVAILABLE} i {@link #MODIFIED}. */
+    private int categoryAndFlags;
 
     /**
      * Konstruktor tworzący nowy obiekt produktu.
@@ -25,41 +40,76 @@ public class DataPoint {
      */
     public DataPoint(String product, String category, int quantity, double price, boolean available) {
         this.product = product;
-        this.category = category;
+        this.categoryAndFlags = CategoryDictionary.codeOf(category) | (available ? AVAILABLE : 0);
         this.quantity = quantity;
         this.price = price;
-        this.available = available;
     }
 
+    /** Pobiera identyfikator produktu w bazie danych. @return Id (0 = produkt jeszcze niezapisany). */
+    public int getId() { return id; }
+
+    /** Ustawia identyfikator produktu w bazie danych. @param id Id rekordu tabeli produkty. */
+    public void setId(int id) { this.id = id; }
+
+    /** Sprawdza, czy produkt zmieniono od ostatniego zapisu/odczytu z bazy. @return true jeśli zmieniony. */
+    public boolean isModified() { return (categoryAndFlags & MODIFIED) != 0; }
+
+    /** Ustawia znacznik zmiany (serwis bazy czyści go po zapisie). @param modified Nowy stan znacznika. */
+    public void setModified(boolean modified) { categoryAndFlags = modified ? categoryAndFlags | MODIFIED : categoryAndFlags & ~MODIFIED; }
+
+    /** Pobiera obserwatora zmian pól. @return Obserwator lub null. */
+    public DataPointObserver getObserver() { return observer; }
+
+    /** Ustawia obserwatora zmian pól (np. magazyn agregatów). @param observer Obserwator lub null. */
+    public void setObserver(DataPointObserver observer) { this.observer = observer; }
+
+    private void beforeChange() { if (observer != null) observer.beforeChange(this); }
+
+    private void afterChange() { if (observer != null) observer.afterChange(this); }
+
+    private void markModified() { categoryAndFlags |= MODIFIED; }
+
     /** Pobiera nazwę produktu. @return Nazwa produktu. */
     public String getProduct() { return product; }
 
     /** Ustawia nazwę produktu. @param product Nowa nazwa. */
-    public void setProduct(String product) { this.product = product; }
+    public void setProduct(String product) { beforeChange(); this.product = product; markModified(); afterChange(); }
+
+    /** Pobiera kategorię produktu. @return Nazwa kategorii (współdzielona ze słownika). */
+    public String getCategory() { return CategoryDictionary.nameOf(categoryAndFlags & CATEGORY_MASK); }
 
-    /** Pobiera kategorię produktu. @return Nazwa kategorii. */
-    public String getCategory() { return category; }
+    /** Pobiera kod kategorii w {@link CategoryDictionary}. @return Kod (0 = brak kategorii). */
+    public int getCategoryCode() { return categoryAndFlags & CATEGORY_MASK; }
 
     /** Ustawia kategorię produktu. @param category Nowa kategoria. */
-    public void setCategory(String category) { this.category = category; }
+    public void setCategory(String category) {
+        int code = CategoryDictionary.codeOf(category);
+        beforeChange();
+        categoryAndFlags = (categoryAndFlags & ~CATEGORY_MASK) | code | MODIFIED;
+        afterChange();
+    }
 
     /** Pobiera ilość produktu. @return Ilość sztuk. */
     public int getQuantity() { return quantity; }
 
     /** Ustawia ilość produktu. @param quantity Nowa ilość. */
-    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public void setQuantity(int quantity) { beforeChange(); this.quantity = quantity; markModified(); afterChange(); }
 
     /** Pobiera cenę jednostkową. @return Cena. */
     public double getPrice() { return price; }
 
     /** Ustawia cenę jednostkową. @param price Nowa cena. */
-    public void setPrice(double price) { this.price = price; }
+    public void setPrice(double price) { beforeChange(); this.price = price; markModified(); afterChange(); }
 
     /** Sprawdza status dostępności. @return true jeśli dostępny. */
-    public boolean isAvailable() { return available; }
+    public boolean isAvailable() { return (categoryAndFlags & AVAILABLE) != 0; }
 
     /** Ustawia status dostępności. @param available Nowy status. */
-    public void setAvailable(boolean available) { this.available = available; }
+    public void setAvailable(boolean available) {
+        beforeChange();
+        categoryAndFlags = (available ? categoryAndFlags | AVAILABLE : categoryAndFlags & ~AVAILABLE) | MODIFIED;
+        afterChange();
+    }
 
     /**
      * Oblicza wartość całkowitą magazynu dla tego produktu.
@@ -0,0 +1,18 @@
+package pl.analiza.model;
+
+/**
+ * Obserwator zmian pól produktu.
+ * <p>
+ * Setter pola {@link DataPoint} wywołuje {@link #beforeChange(DataPoint)} przed przypisaniem
+ * nowej wartości i {@link #afterChange(DataPoint)} po nim, dzięki czemu obserwator
+ * (np. magazyn agregatów) może odjąć stary wkład produktu i dodać nowy.
+ * </p>
+ */
+public interface DataPointObserver {
+
+    /** Wywoływane przed zmianą pola (produkt ma jeszcze stare wartości). */
+    void beforeChange(DataPoint dp);
+
+    /** Wywoływane po zmianie pola (produkt ma już nowe wartości). */
+    void afterChange(DataPoint dp);
+}
@@ -0,0 +1,57 @@
+package pl.analiza.model;
+
+/**
+ * Klasa modelu przechowująca statystyki opisowe jednego pola liczbowego zbioru danych.
+ * <p>
+ * Wszystkie wartości są wyznaczane w jednym przebiegu po danych (zob. {@code MathService.summarize}).
+ * Obiekty tej klasy są niemutowalne. Dla pustego zbioru wszystkie wartości są równe 0.
+ * </p>
+ */
+public class FieldSummary {
+    private final long count;
+    private final double sum;
+    private final double min;
+    private final double max;
+    private final double mean;
+    private final double variance;
+
+    /**
+     * Tworzy nowy obiekt statystyk pola.
+     *
+     * @param count    Liczba wartości.
+     * @param sum      Suma wartości.
+     * @param min      Wartość najmniejsza.
+     * @param max      Wartość największa.
+     * @param mean     Średnia arytmetyczna.
+     * @param variance Wariancja populacji (średnia kwadratów odchyleń od średniej).
+     */
+    public FieldSummary(long count, double sum, double min, double max, double mean, double variance) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.variance = variance;
+    }
+
+    /** Pobiera liczbę wartości. */
+    public long getCount() { return count; }
+
+    /** Pobiera sumę wartości. */
+    public double getSum() { return sum; }
+
+    /** Pobiera wartość najmniejszą. */
+    public double getMin() { return min; }
+
+    /** Pobiera wartość największą. */
+    public double getMax() { return max; }
+
+    /** Pobiera średnią arytmetyczną. */
+    public double getMean() { return mean; }
+
+    /** Pobiera wariancję populacji. */
+    public double getVariance() { return variance; }
+
+    /** Pobiera odchylenie standardowe (pierwiastek z wariancji). */
+    public double getStdDev() { return Math.sqrt(variance); }
+}
@@ -0,0 +1,34 @@
+package pl.analiza.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wynik grupowania lub tabeli przestawnej: nazwy kolumn kluczy, nazwy kolumn miar i wiersze.
+ * Obiekty tej klasy są niemutowalne.
+ */
+public class GroupByResult {
+    private final List<String> keyNames;
+    private final List<String> valueNames;
+    private final List<GroupRow> rows;
+
+    /**
+     * @param keyNames   Nagłówki kolumn kluczy.
+     * @param valueNames Nagłówki kolumn miar.
+     * @param rows       Wiersze wyniku (posortowane według kluczy).
+     */
+    public GroupByResult(List<String> keyNames, List<String> valueNames, List<GroupRow> rows) {
+        this.keyNames = Collections.unmodifiableList(keyNames);
+        this.valueNames = Collections.unmodifiableList(valueNames);
+        this.rows = Collections.unmodifiableList(rows);
+    }
+
+    /** Pobiera nagłówki kolumn kluczy. */
+    public List<String> getKeyNames() { return keyNames; }
+
+    /** Pobiera nagłówki kolumn miar. */
+    public List<String> getValueNames() { return valueNames; }
+
+    /** Pobiera wiersze wyniku. */
+    public List<GroupRow> getRows() { return rows; }
+}
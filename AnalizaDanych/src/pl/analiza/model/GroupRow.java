@@ -0,0 +1,41 @@
+package pl.analiza.model;
+
+import java.util.Arrays;
+
+/**
+ * Wiersz wyniku grupowania: wartości kluczy grupy i wartości miar.
+ * <p>
+ * Obiekty tej klasy są niemutowalne. Brak wartości miary (np. pusta komórka tabeli
+ * przestawnej) oznaczany jest jako {@code Double.NaN}.
+ * </p>
+ */
+public class GroupRow {
+    private final String[] keys;
+    private final double[] values;
+
+    /**
+     * @param keys   Etykiety wartości kluczy grupy (w kolejności kluczy grupowania).
+     * @param values Wartości miar (w kolejności miar).
+     */
+    public GroupRow(String[] keys, double[] values) {
+        this.keys = keys.clone();
+        this.values = values.clone();
+    }
+
+    /** Pobiera etykietę i-tego klucza grupy. */
+    public String getKey(int i) { return keys[i]; }
+
+    /** Pobiera wartość j-tej miary (NaN = brak wartości). */
+    public double getValue(int j) { return values[j]; }
+
+    /** Pobiera liczbę kluczy. */
+    public int getKeyCount() { return keys.length; }
+
+    /** Pobiera liczbę miar. */
+    public int getValueCount() { return values.length; }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(keys) + " " + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,79 @@
+package pl.analiza.model;
+
+/**
+ * Klasa modelu przechowująca odczyt jednego licznika czasu operacji (zakładka "Diagnostyka").
+ * <p>
+ * Czasy podane są w milisekundach, percentyle pochodzą z histogramu o błędzie względnym poniżej 1%.
+ * Obiekty tej klasy są niemutowalne.
+ * </p>
+ */
+public class MetricSnapshot {
+    private final String name;
+    private final long count;
+    private final double meanMs;
+    private final double p50Ms;
+    private final double p90Ms;
+    private final double p99Ms;
+    private final double p999Ms;
+    private final double maxMs;
+    private final long rows;
+    private final long bytes;
+
+    /**
+     * Tworzy nowy odczyt licznika.
+     *
+     * @param name   Nazwa operacji (np. "csv.import").
+     * @param count  Liczba wywołań.
+     * @param meanMs Średni czas.
+     * @param p50Ms  Mediana czasu.
+     * @param p90Ms  90. percentyl czasu.
+     * @param p99Ms  99. percentyl czasu.
+     * @param p999Ms 99,9. percentyl czasu.
+     * @param maxMs  Najdłuższy czas.
+     * @param rows   Łączna liczba przetworzonych wierszy.
+     * @param bytes  Łączna liczba przeczytanych lub zapisanych bajtów.
+     */
+    public MetricSnapshot(String name, long count, double meanMs, double p50Ms, double p90Ms,
+                          double p99Ms, double p999Ms, double maxMs, long rows, long bytes) {
+        this.name = name;
+        this.count = count;
+        this.meanMs = meanMs;
+        this.p50Ms = p50Ms;
+        this.p90Ms = p90Ms;
+        this.p99Ms = p99Ms;
+        this.p999Ms = p999Ms;
+        this.maxMs = maxMs;
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    /** Pobiera nazwę operacji. */
+    public String getName() { return name; }
+
+    /** Pobiera liczbę wywołań. */
+    public long getCount() { return count; }
+
+    /** Pobiera średni czas (ms). */
+    public double getMeanMs() { return meanMs; }
+
+    /** Pobiera medianę czasu (ms). */
+    public double getP50Ms() { return p50Ms; }
+
+    /** Pobiera 90. percentyl czasu (ms). */
+    public double getP90Ms() { return p90Ms; }
+
+    /** Pobiera 99. percentyl czasu (ms). */
+    public double getP99Ms() { return p99Ms; }
+
+    /** Pobiera 99,9. percentyl czasu (ms). */
+    public double getP999Ms() { return p999Ms; }
+
+    /** Pobiera najdłuższy czas (ms). */
+    public double getMaxMs() { return maxMs; }
+
+    /** Pobiera łączną liczbę wierszy. */
+    public long getRows() { return rows; }
+
+    /** Pobiera łączną liczbę bajtów. */
+    public long getBytes() { return bytes; }
+}
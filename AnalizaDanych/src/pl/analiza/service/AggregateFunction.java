@@ -0,0 +1,21 @@
+package pl.analiza.service;
+
+/**
+ * Funkcja agregująca silnika grupowania ({@link GroupByEngine}).
+ */
+public enum AggregateFunction {
+    COUNT("Liczba"),
+    SUM("Suma"),
+    AVERAGE("Średnia"),
+    MIN("Minimum"),
+    MAX("Maksimum");
+
+    private final String label;
+
+    AggregateFunction(String label) {
+        this.label = label;
+    }
+
+    /** @return Nazwa funkcji wyświetlana w interfejsie. */
+    public String getLabel() { return label; }
+}
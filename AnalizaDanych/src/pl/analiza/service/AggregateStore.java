@@ -0,0 +1,149 @@
+package pl.analiza.service;
+
+import pl.analiza.model.CategoryStats;
+import pl.analiza.model.DataPoint;
+import pl.analiza.model.DataPointObserver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Przyrostowo utrzymywane agregaty zbioru produktów: liczba, suma cen i suma wartości
+ * - globalnie oraz dla każdej kategorii.
+ * <p>
+ * Magazyn otrzymuje dodane i usunięte wiersze listy produktów, a dla wierszy w zbiorze
+ * rejestruje się jako {@link DataPointObserver}, więc edycja pola koryguje sumy o różnicę
+ * starej i nowej wartości. Koszt zmiany jest proporcjonalny do liczby zmienionych wierszy,
+ * a nie do rozmiaru zbioru. Sumy są liczone z kompensacją błędu, aby wielokrotne
+ * dodawanie i odejmowanie nie kumulowało błędów zaokrągleń.
+ * </p>
+ * <p>
+ * Kategorie zmienione od ostatniego odczytu są zapamiętywane, aby widok mógł odświeżyć
+ * tylko ich wiersze ({@link #drainChangedCategories(Consumer)}). Klasa nie jest bezpieczna wątkowo.
+ * </p>
+ */
+public class AggregateStore implements DataPointObserver {
+
+    private final Totals total = new Totals();
+    private final Map<String, Totals> categories = new HashMap<>();
+    private final Set<String> changedCategories = new LinkedHashSet<>();
+
+    /**
+     * Dodaje wiersze do agregatów i rejestruje się jako obserwator ich pól.
+     *
+     * @param rows Dodane produkty.
+     */
+    public void added(Collection<? extends DataPoint> rows) {
+        for (DataPoint dp : rows) {
+            dp.setObserver(this);
+            apply(dp, 1);
+        }
+    }
+
+    /**
+     * Odejmuje wiersze od agregatów i wyrejestrowuje obserwatora.
+     *
+     * @param rows Usunięte produkty.
+     */
+    public void removed(Collection<? extends DataPoint> rows) {
+        for (DataPoint dp : rows) {
+            if (dp.getObserver() == this) dp.setObserver(null);
+            apply(dp, -1);
+        }
+    }
+
+    @Override
+    public void beforeChange(DataPoint dp) {
+        apply(dp, -1);
+    }
+
+    @Override
+    public void afterChange(DataPoint dp) {
+        apply(dp, 1);
+    }
+
+    private void apply(DataPoint dp, int sign) {
+        String category = dp.getCategory();
+        total.add(dp, sign);
+        Totals t = categories.computeIfAbsent(category, k -> new Totals());
+        t.add(dp, sign);
+        if (t.count == 0) categories.remove(category);
+        changedCategories.add(category);
+    }
+
+    /** @return Liczba produktów. */
+    public int getCount() { return (int) total.count; }
+
+    /** @return Łączna wartość produktów (suma ilość * cena). */
+    public double getTotalValue() { return total.valueSum.value(); }
+
+    /** @return Średnia cena produktów (0.0 dla pustego zbioru). */
+    public double getAveragePrice() { return total.averagePrice(); }
+
+    /**
+     * Zwraca bieżące statystyki kategorii.
+     *
+     * @param category Nazwa kategorii.
+     * @return Statystyki lub null, jeśli w zbiorze nie ma produktów tej kategorii.
+     */
+    public CategoryStats getCategoryStats(String category) {
+        Totals t = categories.get(category);
+        return t == null ? null : t.toStats(category);
+    }
+
+    /** @return Statystyki wszystkich kategorii (jak {@link MathService#getCategoryStatistics(List)}). */
+    public List<CategoryStats> getCategoryStatistics() {
+        List<CategoryStats> result = new ArrayList<>(categories.size());
+        for (Map.Entry<String, Totals> entry : categories.entrySet()) {
+            result.add(entry.getValue().toStats(entry.getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Przekazuje kategorie zmienione od poprzedniego wywołania i czyści ich listę.
+     * Kategoria, dla której {@link #getCategoryStats(String)} zwraca null, została opróżniona.
+     *
+     * @param action Obsługa zmienionej kategorii.
+     */
+    public void drainChangedCategories(Consumer<String> action) {
+        List<String> changed = new ArrayList<>(changedCategories);
+        changedCategories.clear();
+        changed.forEach(action);
+    }
+
+    /**
+     * Liczba produktów oraz sumy cen i wartości.
+     */
+    private static final class Totals {
+        long count;
+        final CompensatedSum priceSum = new CompensatedSum();
+        final CompensatedSum valueSum = new CompensatedSum();
+
+        void add(DataPoint dp, int sign) {
+            count += sign;
+            if (count == 0) {
+                // Pusty zbiór - zerowanie zamiast odejmowania (bez resztek zaokrągleń)
+                priceSum.reset();
+                valueSum.reset();
+            } else {
+                priceSum.add(sign * dp.getPrice());
+                valueSum.add(sign * dp.getTotalValue());
+            }
+        }
+
+        double averagePrice() {
+            return count == 0 ? 0.0 : priceSum.value() / count;
+        }
+
+        CategoryStats toStats(String category) {
+            return new CategoryStats(category, (int) count, averagePrice(), valueSum.value());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package pl.analiza.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Postęp i anulowanie długich pętli obliczeniowych sprawdzane co blok wierszy.
+ * <p>
+ * Pętla wywołuje {@link #row()} dla każdego przetworzonego wiersza; co {@link #BLOCK_SIZE} wierszy
+ * zgłaszany jest postęp, a po anulowaniu obliczenia przerywa {@link CancellationException}
+ * (ten sam sygnał co przy anulowaniu importu).
+ * </p>
+ */
+final class BlockProgress {
+
+    /** Liczba wierszy między kolejnymi sprawdzeniami (potęga dwójki). */
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final BooleanSupplier cancelled;
+    private final DoubleConsumer progress;
+    private final double total;
+    private long done;
+
+    /**
+     * @param cancelled Czy obliczenia zostały anulowane (null - bez sprawdzania).
+     * @param progress  Odbiorca postępu w zakresie 0-1 (null - bez zgłaszania).
+     * @param total     Łączna liczba wierszy przetwarzanych przez wszystkie przebiegi pętli.
+     */
+    BlockProgress(BooleanSupplier cancelled, DoubleConsumer progress, long total) {
+        this.cancelled = cancelled;
+        this.progress = progress;
+        this.total = Math.max(1, total);
+    }
+
+    /** Odnotowuje przetworzony wiersz; na granicy bloku zgłasza postęp i sprawdza anulowanie. */
+    void row() {
+        if ((++done & (BLOCK_SIZE - 1)) == 0) block();
+    }
+
+    /** Sprawdza anulowanie poza granicą bloku (np. przed kolejnym etapem obliczeń). */
+    void check() {
+        if (cancelled != null && cancelled.getAsBoolean()) throw new CancellationException("Obliczenia anulowane.");
+    }
+
+    private void block() {
+        check();
+        if (progress != null) progress.accept(Math.min(1, done / total));
+    }
+}
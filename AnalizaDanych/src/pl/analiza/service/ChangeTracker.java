@@ -0,0 +1,89 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Rejestr zmian zbioru danych względem stanu zapisanego w bazie.
+ * <p>
+ * Dodania i edycje są rozpoznawane po samych obiektach {@link DataPoint}
+ * (id równe 0 lub ustawiony znacznik {@code modified}), natomiast usunięte produkty
+ * nie są już na liście — ich identyfikatory zapamiętuje ten rejestr.
+ * Na tej podstawie {@link DatabaseService#saveChanges} wysyła do bazy wyłącznie różnicę.
+ * </p>
+ */
+public class ChangeTracker {
+
+    /** Identyfikatory produktów usuniętych z listy od ostatniej synchronizacji z bazą. */
+    private final Set<Integer> deletedIds = new HashSet<>();
+
+    /** Czy lista odpowiada zawartości bazy (odczyt lub pełny zapis). */
+    private boolean baseline;
+
+    /**
+     * Rejestruje produkty usunięte z listy (produkty niezapisane w bazie są pomijane).
+     *
+     * @param removed Usunięte produkty.
+     */
+    public void removed(Collection<? extends DataPoint> removed) {
+        for (DataPoint dp : removed) {
+            if (dp.getId() > 0) deletedIds.add(dp.getId());
+        }
+    }
+
+    /**
+     * Rejestruje produkty dodane do listy. Produkt zapisany w bazie, który wrócił na listę
+     * (np. przy podmianie elementów), nie jest już traktowany jako usunięty.
+     *
+     * @param added Dodane produkty.
+     */
+    public void added(Collection<? extends DataPoint> added) {
+        if (deletedIds.isEmpty()) return;
+        for (DataPoint dp : added) {
+            if (dp.getId() > 0) deletedIds.remove(dp.getId());
+        }
+    }
+
+    /**
+     * Oznacza bieżącą listę jako zgodną z bazą (po odczycie lub zapisie) i czyści rejestr usunięć.
+     */
+    public void markSynchronized() {
+        deletedIds.clear();
+        baseline = true;
+    }
+
+    /**
+     * Oznacza, że zawartość bazy nie jest znana (np. nieudany odczyt) - kolejny zapis będzie pełny.
+     */
+    public void invalidate() {
+        deletedIds.clear();
+        baseline = false;
+    }
+
+    /** @return Niezależna kopia rejestru (np. do przywrócenia po przerwanym odczycie z bazy). */
+    public ChangeTracker copy() {
+        ChangeTracker copy = new ChangeTracker();
+        copy.restore(this);
+        return copy;
+    }
+
+    /**
+     * Przywraca stan rejestru z kopii ({@link #copy()}).
+     *
+     * @param saved Zapamiętany stan rejestru.
+     */
+    public void restore(ChangeTracker saved) {
+        deletedIds.clear();
+        deletedIds.addAll(saved.deletedIds);
+        baseline = saved.baseline;
+    }
+
+    /** @return true, jeśli lista była synchronizowana z bazą i można zapisać samą różnicę. */
+    public boolean hasBaseline() { return baseline; }
+
+    /** @return Identyfikatory produktów do usunięcia z bazy. */
+    public Set<Integer> getDeletedIds() { return deletedIds; }
+}
@@ -0,0 +1,221 @@
+package pl.analiza.service;
+
+import pl.analiza.model.ChartBar;
+import pl.analiza.model.DataPoint;
+import pl.analiza.model.GroupByResult;
+import pl.analiza.model.GroupRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Przygotowanie danych wykresu słupkowego z agregacją przed renderowaniem.
+ * <p>
+ * Zamiast słupka na każdy produkt wynik ma co najwyżej zadaną liczbę słupków:
+ * <ul>
+ *     <li>{@link ChartMode#TOP_N} - produkty o największej wartości pola i słupek "Pozostałe",</li>
+ *     <li>{@link ChartMode#CATEGORY} - wartość pola zagregowana dla kategorii,</li>
+ *     <li>{@link ChartMode#HISTOGRAM} - liczba produktów w równych przedziałach wartości pola.</li>
+ * </ul>
+ * Ilość i wartość całkowita są sumowane, a cena uśredniana (suma cen nie ma sensu biznesowego).
+ * Metody nie korzystają z JavaFX i mogą działać w wątku tła na kopii listy produktów; wariant
+ * z parametrami {@code cancelled} i {@code progress} sprawdza anulowanie i zgłasza postęp co blok wierszy.
+ * </p>
+ */
+public class ChartAggregator {
+
+    /** Etykieta słupka zbierającego produkty/kategorie spoza pierwszych N. */
+    public static final String OTHER_LABEL = "Pozostałe";
+
+    private final GroupByEngine groupByEngine = new GroupByEngine();
+
+    /**
+     * Agreguje dane do słupków wykresu.
+     *
+     * @param data    Lista produktów.
+     * @param field   Pole wykresu.
+     * @param mode    Sposób agregacji.
+     * @param maxBars Maksymalna liczba słupków (co najmniej 2).
+     * @return Słupki w kolejności wyświetlania (etykiety są unikalne).
+     */
+    public List<ChartBar> aggregate(List<? extends DataPoint> data, StatField field, ChartMode mode, int maxBars) {
+        return aggregate(data, field, mode, maxBars, null, null);
+    }
+
+    /**
+     * Agreguje dane do słupków wykresu z możliwością anulowania i zgłaszaniem postępu.
+     *
+     * @param cancelled Czy agregacja została anulowana (null - bez sprawdzania).
+     * @param progress  Odbiorca postępu w zakresie 0-1 (null - bez zgłaszania).
+     * @throws java.util.concurrent.CancellationException Gdy agregację anulowano w trakcie.
+     * @see #aggregate(List, StatField, ChartMode, int)
+     */
+    public List<ChartBar> aggregate(List<? extends DataPoint> data, StatField field, ChartMode mode, int maxBars,
+                                    BooleanSupplier cancelled, DoubleConsumer progress) {
+        if (maxBars < 2) throw new IllegalArgumentException("Wykres wymaga co najmniej 2 słupków.");
+        if (data.isEmpty() || field == null || mode == null) return Collections.emptyList();
+        // Histogram przechodzi po danych dwukrotnie (zakres wartości, potem przedziały)
+        long visits = mode == ChartMode.HISTOGRAM ? 2L * data.size() : data.size();
+        BlockProgress monitor = new BlockProgress(cancelled, progress, visits);
+        switch (mode) {
+            case TOP_N: return topN(data, field, maxBars, monitor);
+            case CATEGORY: return byCategory(data, field, maxBars, monitor);
+            case HISTOGRAM: return histogram(data, field, maxBars, monitor);
+            default: return Collections.emptyList();
+        }
+    }
+
+    /** Czy pole jest agregowane średnią (cena), a nie sumą. */
+    private static boolean averaged(StatField field) {
+        return field == StatField.PRICE;
+    }
+
+    private static double valueOf(DataPoint dp, StatField field) {
+        switch (field) {
+            case QUANTITY: return dp.getQuantity();
+            case PRICE: return dp.getPrice();
+            default: return dp.getTotalValue();
+        }
+    }
+
+    /**
+     * Pierwsze N produktów wyznaczane kopcem minimalnym rozmiaru N (O(n log N), bez sortowania
+     * całej listy); pozostałe produkty trafiają do jednego słupka.
+     */
+    private List<ChartBar> topN(List<? extends DataPoint> data, StatField field, int maxBars, BlockProgress monitor) {
+        int n = data.size();
+        int k = n <= maxBars ? n : maxBars - 1;
+        double[] heapValues = new double[k];
+        int[] heapRows = new int[k];
+        int size = 0;
+        CompensatedSum total = new CompensatedSum();
+
+        for (int i = 0; i < n; i++) {
+            double v = valueOf(data.get(i), field);
+            total.add(v);
+            if (size < k) {
+                // Wstawienie do kopca i przesunięcie w górę
+                int j = size++;
+                while (j > 0 && heapValues[(j - 1) / 2] > v) {
+                    heapValues[j] = heapValues[(j - 1) / 2];
+                    heapRows[j] = heapRows[(j - 1) / 2];
+                    j = (j - 1) / 2;
+                }
+                heapValues[j] = v;
+                heapRows[j] = i;
+            } else if (k > 0 && v > heapValues[0]) {
+                // Zastąpienie najmniejszego elementu i przesunięcie w dół
+                int j = 0;
+                while (true) {
+                    int c = 2 * j + 1;
+                    if (c >= k) break;
+                    if (c + 1 < k && heapValues[c + 1] < heapValues[c]) c++;
+                    if (heapValues[c] >= v) break;
+                    heapValues[j] = heapValues[c];
+                    heapRows[j] = heapRows[c];
+                    j = c;
+                }
+                heapValues[j] = v;
+                heapRows[j] = i;
+            }
+            monitor.row();
+        }
+        monitor.check();
+
+        // Kolejność malejąca wartości
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(heapValues[b], heapValues[a]));
+
+        List<ChartBar> bars = new ArrayList<>(maxBars);
+        Set<String> used = new HashSet<>();
+        double topSum = 0;
+        for (int i : order) {
+            bars.add(new ChartBar(unique(used, data.get(heapRows[i]).getProduct()), heapValues[i]));
+            topSum += heapValues[i];
+        }
+        int rest = n - size;
+        if (rest > 0) {
+            double restSum = total.value() - topSum;
+            bars.add(new ChartBar(unique(used, OTHER_LABEL), averaged(field) ? restSum / rest : restSum));
+        }
+        return bars;
+    }
+
+    /** Wartość pola dla kategorii (silnik grupowania); nadmiarowe kategorie łączone w "Pozostałe". */
+    private List<ChartBar> byCategory(List<? extends DataPoint> data, StatField field, int maxBars, BlockProgress monitor) {
+        Measure measure = Measure.of(averaged(field) ? AggregateFunction.AVERAGE : AggregateFunction.SUM, field);
+        GroupByResult result = groupByEngine.groupBy(data, Collections.singletonList(GroupKey.category()),
+                Arrays.asList(Measure.count(), measure), monitor);
+
+        List<GroupRow> rows = new ArrayList<>(result.getRows());
+        rows.sort((a, b) -> Double.compare(b.getValue(1), a.getValue(1)));
+
+        int shown = rows.size() <= maxBars ? rows.size() : maxBars - 1;
+        List<ChartBar> bars = new ArrayList<>(shown + 1);
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < shown; i++) bars.add(new ChartBar(unique(used, rows.get(i).getKey(0)), rows.get(i).getValue(1)));
+
+        if (shown < rows.size()) {
+            double sum = 0, count = 0;
+            for (int i = shown; i < rows.size(); i++) {
+                GroupRow row = rows.get(i);
+                // Średnia ważona liczbą produktów dla ceny, suma dla pozostałych pól
+                sum += averaged(field) ? row.getValue(1) * row.getValue(0) : row.getValue(1);
+                count += row.getValue(0);
+            }
+            bars.add(new ChartBar(unique(used, OTHER_LABEL), averaged(field) ? sum / count : sum));
+        }
+        return bars;
+    }
+
+    /** Liczba produktów w {@code maxBars} równych przedziałach od minimum do maksimum pola. */
+    private List<ChartBar> histogram(List<? extends DataPoint> data, StatField field, int maxBars, BlockProgress monitor) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (DataPoint dp : data) {
+            double v = valueOf(dp, field);
+            if (v < min) min = v;
+            if (v > max) max = v;
+            monitor.row();
+        }
+        if (!(max >= min)) return Collections.emptyList(); // Same wartości NaN
+
+        int bins = max == min ? 1 : maxBars;
+        double width = (max - min) / bins;
+        long[] counts = new long[bins];
+        for (DataPoint dp : data) {
+            monitor.row();
+            double v = valueOf(dp, field);
+            if (Double.isNaN(v)) continue;
+            int b = width == 0 ? 0 : (int) ((v - min) / width);
+            counts[Math.min(bins - 1, b)]++; // maksimum należy do ostatniego przedziału
+        }
+        monitor.check();
+
+        List<ChartBar> bars = new ArrayList<>(bins);
+        Set<String> used = new HashSet<>();
+        for (int b = 0; b < bins; b++) {
+            String label = formatBound(min + b * width) + "–" + formatBound(b == bins - 1 ? max : min + (b + 1) * width);
+            bars.add(new ChartBar(unique(used, label), counts[b]));
+        }
+        return bars;
+    }
+
+    private static String formatBound(double v) {
+        return Math.abs(v) >= 100 ? String.format("%.0f", v) : String.format("%.2f", v);
+    }
+
+    /** Etykieta unikalna w serii (oś kategorii łączy słupki o tej samej etykiecie). */
+    private static String unique(Set<String> used, String label) {
+        String base = label == null ? "" : label;
+        String candidate = base;
+        for (int i = 2; !used.add(candidate); i++) candidate = base + " #" + i;
+        return candidate;
+    }
+}
@@ -0,0 +1,37 @@
+package pl.analiza.service;
+
+/**
+ * Sposób agregacji danych wykresu ({@link ChartAggregator}).
+ */
+public enum ChartMode {
+    TOP_N("Najwięksi (Top N)", "Produkt"),
+    CATEGORY("Kategorie", "Kategoria"),
+    HISTOGRAM("Histogram", "Przedział");
+
+    private final String label;
+    private final String axisLabel;
+
+    ChartMode(String label, String axisLabel) {
+        this.label = label;
+        this.axisLabel = axisLabel;
+    }
+
+    /** @return Nazwa trybu wyświetlana w interfejsie. */
+    public String getLabel() { return label; }
+
+    /** @return Opis osi kategorii wykresu w tym trybie. */
+    public String getAxisLabel() { return axisLabel; }
+
+    /**
+     * Wyszukuje tryb po etykiecie z interfejsu.
+     *
+     * @param label Etykieta.
+     * @return Tryb lub null, jeśli etykieta jest nieznana.
+     */
+    public static ChartMode fromLabel(String label) {
+        for (ChartMode mode : values()) {
+            if (mode.label.equals(label)) return mode;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,34 @@
+package pl.analiza.service;
+
+import pl.analiza.service.ColumnIndex.Comparison;
+
+import java.util.BitSet;
+
+/**
+ * Warunki na kolumnach zbioru produktów, z których składane są filtry strukturalne ({@link FilterQuery}).
+ * <p>
+ * Wiersz identyfikowany jest numerem w zbiorze, a każdy warunek zwraca nową mapę bitową
+ * pasujących wierszy (wywołujący może ją dowolnie modyfikować). Implementacje: indeksy
+ * na stercie ({@link ColumnIndex}) i przebieg po kolumnach poza stertą ({@link OffHeapDataset}).
+ * </p>
+ */
+public interface ColumnFilter {
+
+    /** @return Liczba wierszy zbioru. */
+    int size();
+
+    /** @return Wiersze z kategorią równą podanej (bez względu na wielkość liter). */
+    BitSet categoryEquals(String category);
+
+    /** @return Wiersze, których kategoria zawiera podany tekst (bez względu na wielkość liter). */
+    BitSet categoryContains(String text);
+
+    /** @return Wiersze dostępnych (true) lub niedostępnych (false) produktów. */
+    BitSet available(boolean value);
+
+    /** @return Wiersze, których cena spełnia porównanie z wartością. */
+    BitSet price(Comparison op, double value);
+
+    /** @return Wiersze, których ilość spełnia porównanie z wartością. */
+    BitSet quantity(Comparison op, double value);
+}
@@ -0,0 +1,176 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Indeksy kolumn zbioru produktów dla filtrów strukturalnych ({@link FilterQuery}).
+ * <p>
+ * Wiersz identyfikowany jest pozycją na liście, z której zbudowano indeks. Kategoria i dostępność
+ * mają indeksy bitmapowe (jedna mapa bitowa wierszy na każdą wartość), a cena i ilość - indeksy
+ * posortowane (wartości rosnąco z numerami wierszy), dzięki czemu warunek zakresowy to dwa
+ * wyszukiwania binarne i ustawienie bitów tylko pasujących wierszy. Wyniki warunków są mapami
+ * bitowymi łączonymi operacjami AND/OR/NOT.
+ * </p>
+ * <p>
+ * Indeks odzwierciedla listę z chwili budowy; po zmianie danych należy zbudować nowy.
+ * Obiekty tej klasy są niemutowalne.
+ * </p>
+ */
+public class ColumnIndex implements ColumnFilter {
+
+    /** Operator porównania w warunku na kolumnie. */
+    public enum Comparison { EQ, NE, LT, LE, GT, GE }
+
+    private final List<DataPoint> rows;
+    private final Map<String, BitSet> categories = new HashMap<>();
+    private final BitSet available;
+    private final SortedColumn prices;
+    private final SortedColumn quantities;
+
+    /**
+     * Buduje indeksy dla listy produktów.
+     *
+     * @param data Lista produktów (kopiowana - indeks nie śledzi późniejszych zmian).
+     */
+    public ColumnIndex(List<? extends DataPoint> data) {
+        rows = new ArrayList<>(data);
+        int n = rows.size();
+        available = new BitSet(n);
+        double[] priceValues = new double[n];
+        double[] quantityValues = new double[n];
+        Map<String, BitSet> rawCategories = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            DataPoint dp = rows.get(i);
+            rawCategories.computeIfAbsent(dp.getCategory(), k -> new BitSet()).set(i);
+            if (dp.isAvailable()) available.set(i);
+            priceValues[i] = dp.getPrice();
+            quantityValues[i] = dp.getQuantity();
+        }
+        // Normalizacja raz na kategorię (nie na wiersz); warianty wielkości liter łączone w jedną mapę
+        for (Map.Entry<String, BitSet> entry : rawCategories.entrySet()) {
+            BitSet bits = categories.putIfAbsent(SearchIndex.normalize(entry.getKey()), entry.getValue());
+            if (bits != null) bits.or(entry.getValue());
+        }
+        prices = new SortedColumn(priceValues);
+        quantities = new SortedColumn(quantityValues);
+    }
+
+    /** @return Liczba zaindeksowanych wierszy. */
+    @Override
+    public int size() { return rows.size(); }
+
+    /** @return Wiersz o podanym numerze. */
+    public DataPoint get(int row) { return rows.get(row); }
+
+    /** @return Wiersze z kategorią równą podanej (bez względu na wielkość liter). */
+    @Override
+    public BitSet categoryEquals(String category) {
+        BitSet bits = categories.get(SearchIndex.normalize(category));
+        return bits == null ? new BitSet() : (BitSet) bits.clone();
+    }
+
+    /** @return Wiersze, których kategoria zawiera podany tekst (OR map bitowych pasujących kategorii). */
+    @Override
+    public BitSet categoryContains(String text) {
+        String t = SearchIndex.normalize(text);
+        BitSet result = new BitSet(rows.size());
+        for (Map.Entry<String, BitSet> entry : categories.entrySet()) {
+            if (entry.getKey().contains(t)) result.or(entry.getValue());
+        }
+        return result;
+    }
+
+    /** @return Wiersze dostępnych (true) lub niedostępnych (false) produktów. */
+    @Override
+    public BitSet available(boolean value) {
+        BitSet bits = (BitSet) available.clone();
+        if (!value) bits.flip(0, rows.size());
+        return bits;
+    }
+
+    /** @return Wiersze, których cena spełnia porównanie z wartością. */
+    @Override
+    public BitSet price(Comparison op, double value) {
+        return prices.select(op, value, rows.size());
+    }
+
+    /** @return Wiersze, których ilość spełnia porównanie z wartością. */
+    @Override
+    public BitSet quantity(Comparison op, double value) {
+        return quantities.select(op, value, rows.size());
+    }
+
+    /**
+     * Kolumna posortowana: wartości rosnąco i numery wierszy w tej samej kolejności.
+     */
+    private static final class SortedColumn {
+        private final double[] values;
+        private final int[] rows;
+
+        SortedColumn(double[] column) {
+            int n = column.length;
+            values = column.clone();
+            Arrays.sort(values);
+            // Różne wartości kolumny - zwykle jest ich znacznie mniej niż wierszy (krótkie wyszukiwanie binarne)
+            double[] distinct = new double[n];
+            int d = 0;
+            for (int j = 0; j < n; j++) {
+                if (d == 0 || Double.compare(values[j], distinct[d - 1]) != 0) distinct[d++] = values[j];
+            }
+            distinct = Arrays.copyOf(distinct, d);
+            // Klucz = (numer wartości, numer wiersza) - sortowanie long[] bez obiektów
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) keys[i] = ((long) lowerBound(distinct, column[i]) << 32) | i;
+            Arrays.sort(keys);
+            rows = new int[n];
+            for (int j = 0; j < n; j++) rows[j] = (int) keys[j];
+        }
+
+        BitSet select(Comparison op, double x, int size) {
+            int lower = lowerBound(values, x);
+            int upper = upperBound(values, x);
+            BitSet bits = new BitSet(size);
+            switch (op) {
+                case EQ: set(bits, lower, upper); break;
+                case NE: set(bits, 0, lower); set(bits, upper, values.length); break;
+                case LT: set(bits, 0, lower); break;
+                case LE: set(bits, 0, upper); break;
+                case GT: set(bits, upper, values.length); break;
+                case GE: set(bits, lower, values.length); break;
+                default: break;
+            }
+            return bits;
+        }
+
+        private void set(BitSet bits, int from, int to) {
+            for (int j = from; j < to; j++) bits.set(rows[j]);
+        }
+
+        /** Pierwsza pozycja z wartością nie mniejszą od x. */
+        private static int lowerBound(double[] a, double x) {
+            int lo = 0, hi = a.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(a[mid], x) < 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Pierwsza pozycja z wartością większą od x. */
+        private static int upperBound(double[] a, double x) {
+            int lo = 0, hi = a.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(a[mid], x) <= 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
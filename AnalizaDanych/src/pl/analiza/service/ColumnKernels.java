@@ -0,0 +1,242 @@
+package pl.analiza.service;
+
+/**
+ * Pętle obliczeniowe na kolumnach typów prostych: suma, minimum, maksimum, suma kwadratów
+ * odchyleń, iloczyn ilość × cena i maska bitowa dostępności.
+ * <p>
+ * Ta klasa to implementacja skalarna. Jeśli maszyna wirtualna udostępnia moduł
+ * {@code jdk.incubator.vector} (JDK 17+, {@code --add-modules jdk.incubator.vector}) i w ścieżce klas
+ * jest {@code VectorColumnKernels} (katalog {@code src-vector}), {@link #get()} zwraca wariant SIMD
+ * ({@code DoubleVector}, {@code IntVector}, {@code ByteVector}). W przeciwnym razie - oraz po ustawieniu
+ * {@code -Danaliza.simd=false} - używana jest ta klasa.
+ * </p>
+ * <p>
+ * Sumy liczone są w {@value #LANES} stałych torach (element i trafia do toru i mod {@value #LANES}),
+ * łączonych zawsze w tej samej kolejności. Wariant SIMD realizuje dokładnie te same działania w czterech
+ * niezależnych rejestrach po 8 torów, więc wynik jest identyczny bit w bit niezależnie od implementacji.
+ * Minimum i maksimum mają porządek {@link Double#compare} (NaN największe, -0.0 przed 0.0).
+ * </p>
+ */
+public class ColumnKernels {
+
+    /** Liczba torów sum częściowych (wspólna dla wszystkich implementacji). */
+    public static final int LANES = 32;
+
+    private static final ColumnKernels SCALAR = new ColumnKernels();
+    private static final ColumnKernels SELECTED = select();
+
+    /** Tworzy implementację skalarną (podklasy - warianty SIMD). */
+    protected ColumnKernels() {
+    }
+
+    /** @return Implementacja używana przez serwisy (SIMD, jeśli dostępna i niewyłączona). */
+    public static ColumnKernels get() { return SELECTED; }
+
+    /** @return Implementacja skalarna. */
+    public static ColumnKernels scalar() { return SCALAR; }
+
+    /**
+     * Tworzy implementację SIMD opartą o Vector API.
+     *
+     * @return Implementacja lub null, gdy moduł {@code jdk.incubator.vector} albo klasa nie są dostępne.
+     */
+    public static ColumnKernels vector() {
+        try {
+            Class<?> type = Class.forName("pl.analiza.service.VectorColumnKernels");
+            return (ColumnKernels) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Brak klasy, starsza maszyna wirtualna lub moduł nie został dodany (--add-modules)
+            return null;
+        }
+    }
+
+    private static ColumnKernels select() {
+        if (!Boolean.parseBoolean(System.getProperty("analiza.simd", "true"))) return SCALAR;
+        ColumnKernels vector = vector();
+        return vector != null ? vector : SCALAR;
+    }
+
+    /** @return Nazwa implementacji (np. "skalarna", "SIMD 512-bit"). */
+    public String getName() { return "skalarna"; }
+
+    /**
+     * Suma values[from, from + len). Tory wypełniane są czterema przebiegami po 8 torów naraz
+     * (zmienne lokalne zamiast tablicy), w każdym torze w kolejności rosnących indeksów.
+     */
+    public double sum(double[] values, int from, int len) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int j = 0; j < LANES; j += 8) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+            for (int i = from + j; i < end; i += LANES) {
+                s0 += values[i];
+                s1 += values[i + 1];
+                s2 += values[i + 2];
+                s3 += values[i + 3];
+                s4 += values[i + 4];
+                s5 += values[i + 5];
+                s6 += values[i + 6];
+                s7 += values[i + 7];
+            }
+            store(lanes, j, s0, s1, s2, s3, s4, s5, s6, s7);
+        }
+        return combine(lanes, values, end, from + len);
+    }
+
+    /** Suma values[from, from + len) (dokładna dla bloków do 2^22 wartości). */
+    public double sum(int[] values, int from, int len) {
+        double sum = 0;
+        for (int i = from; i < from + len; i++) sum += values[i];
+        return sum;
+    }
+
+    /** Minimum values[from, from + len) w porządku {@link Double#compare} (len &gt; 0). */
+    public double min(double[] values, int from, int len) {
+        double min = values[from];
+        for (int i = from + 1; i < from + len; i++) {
+            if (Double.compare(values[i], min) < 0) min = values[i];
+        }
+        return min;
+    }
+
+    /** Maksimum values[from, from + len) w porządku {@link Double#compare} (len &gt; 0). */
+    public double max(double[] values, int from, int len) {
+        double max = values[from];
+        for (int i = from + 1; i < from + len; i++) {
+            if (Double.compare(values[i], max) > 0) max = values[i];
+        }
+        return max;
+    }
+
+    /** Minimum values[from, from + len) (len &gt; 0). */
+    public int min(int[] values, int from, int len) {
+        int min = values[from];
+        for (int i = from + 1; i < from + len; i++) {
+            if (values[i] < min) min = values[i];
+        }
+        return min;
+    }
+
+    /** Maksimum values[from, from + len) (len &gt; 0). */
+    public int max(int[] values, int from, int len) {
+        int max = values[from];
+        for (int i = from + 1; i < from + len; i++) {
+            if (values[i] > max) max = values[i];
+        }
+        return max;
+    }
+
+    /** Suma kwadratów odchyleń od średniej: Σ (values[i] - mean)² (tory jak w {@link #sum(double[], int, int)}). */
+    public double sumSquaredDeviations(double[] values, int from, int len, double mean) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int j = 0; j < LANES; j += 8) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+            for (int i = from + j; i < end; i += LANES) {
+                double d0 = values[i] - mean, d1 = values[i + 1] - mean, d2 = values[i + 2] - mean, d3 = values[i + 3] - mean;
+                double d4 = values[i + 4] - mean, d5 = values[i + 5] - mean, d6 = values[i + 6] - mean, d7 = values[i + 7] - mean;
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+                s4 += d4 * d4;
+                s5 += d5 * d5;
+                s6 += d6 * d6;
+                s7 += d7 * d7;
+            }
+            store(lanes, j, s0, s1, s2, s3, s4, s5, s6, s7);
+        }
+        return combineSquares(lanes, values, end, from + len, mean);
+    }
+
+    /** Suma kwadratów odchyleń od średniej dla kolumny ilości. */
+    public double sumSquaredDeviations(int[] values, int from, int len, double mean) {
+        double[] lanes = new double[LANES];
+        int end = from + (len & -LANES);
+        for (int j = 0; j < LANES; j += 8) {
+            double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0, s6 = 0, s7 = 0;
+            for (int i = from + j; i < end; i += LANES) {
+                double d0 = values[i] - mean, d1 = values[i + 1] - mean, d2 = values[i + 2] - mean, d3 = values[i + 3] - mean;
+                double d4 = values[i + 4] - mean, d5 = values[i + 5] - mean, d6 = values[i + 6] - mean, d7 = values[i + 7] - mean;
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+                s4 += d4 * d4;
+                s5 += d5 * d5;
+                s6 += d6 * d6;
+                s7 += d7 * d7;
+            }
+            store(lanes, j, s0, s1, s2, s3, s4, s5, s6, s7);
+        }
+        return combineSquares(lanes, values, end, from + len, mean);
+    }
+
+    /** Wartości całkowite: dst[i] = quantities[i] * prices[i] dla i z [from, from + len) (jak {@code getTotalValue}). */
+    public void multiply(int[] quantities, double[] prices, double[] dst, int from, int len) {
+        for (int i = from; i < from + len; i++) dst[i] = quantities[i] * prices[i];
+    }
+
+    /**
+     * Maska bitowa niezerowych znaczników (np. dostępności): bit i słowa words[i / 64] = flags[i] != 0.
+     *
+     * @param flags Znaczniki (0 = fałsz).
+     * @param len   Liczba znaczników.
+     * @param words Słowa wyniku (co najmniej ⌈len / 64⌉; nadpisywane).
+     */
+    public void nonZeroMask(byte[] flags, int len, long[] words) {
+        for (int w = 0; w * 64 < len; w++) {
+            long word = 0;
+            int end = Math.min(64, len - w * 64);
+            for (int b = 0; b < end; b++) {
+                if (flags[w * 64 + b] != 0) word |= 1L << b;
+            }
+            words[w] = word;
+        }
+    }
+
+    /** Zapisuje osiem sum częściowych do torów j..j+7. */
+    private static void store(double[] lanes, int j, double s0, double s1, double s2, double s3,
+                              double s4, double s5, double s6, double s7) {
+        lanes[j] = s0;
+        lanes[j + 1] = s1;
+        lanes[j + 2] = s2;
+        lanes[j + 3] = s3;
+        lanes[j + 4] = s4;
+        lanes[j + 5] = s5;
+        lanes[j + 6] = s6;
+        lanes[j + 7] = s7;
+    }
+
+    /** Dodaje ogon [end, to) do torów (element end + j do toru j) i łączy tory. */
+    protected static double combine(double[] lanes, double[] values, int end, int to) {
+        for (int i = end; i < to; i++) lanes[i - end] += values[i];
+        return combine(lanes);
+    }
+
+    /** Dodaje kwadraty odchyleń ogona [end, to) do torów i łączy tory. */
+    protected static double combineSquares(double[] lanes, double[] values, int end, int to, double mean) {
+        for (int i = end; i < to; i++) {
+            double d = values[i] - mean;
+            lanes[i - end] += d * d;
+        }
+        return combine(lanes);
+    }
+
+    /** Dodaje kwadraty odchyleń ogona [end, to) kolumny ilości do torów i łączy tory. */
+    protected static double combineSquares(double[] lanes, int[] values, int end, int to, double mean) {
+        for (int i = end; i < to; i++) {
+            double d = values[i] - mean;
+            lanes[i - end] += d * d;
+        }
+        return combine(lanes);
+    }
+
+    /** Łączy {@value #LANES} torów parami (drzewo: tor j z torem j + szerokość / 2) w stałej kolejności. */
+    protected static double combine(double[] lanes) {
+        for (int width = LANES / 2; width > 0; width /= 2) {
+            for (int j = 0; j < width; j++) lanes[j] += lanes[j + width];
+        }
+        return lanes[0];
+    }
+}
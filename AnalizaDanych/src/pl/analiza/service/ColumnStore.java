@@ -0,0 +1,146 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kolumnowa kopia pól liczbowych zbioru produktów w tablicach typów prostych.
+ * <p>
+ * Przechowuje ilości ({@code int[]}), ceny ({@code double[]}) i wyliczone wartości całkowite
+ * ({@code double[]}) w tej samej kolejności co lista produktów. Obliczenia {@link MathService}
+ * przechodzą po tych tablicach bez tworzenia obiektów opakowujących ({@code Double}).
+ * </p>
+ * <p>
+ * Magazyn musi być aktualizowany przy każdej zmianie listy źródłowej (wstawienie, usunięcie,
+ * zastąpienie elementu). Klasa nie jest bezpieczna wątkowo.
+ * </p>
+ */
+public class ColumnStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private double[] totals = new double[INITIAL_CAPACITY];
+    private int size;
+
+    /** Tworzy pusty magazyn kolumn. */
+    public ColumnStore() {
+    }
+
+    /**
+     * Tworzy magazyn kolumn z podanej listy produktów.
+     *
+     * @param data Lista produktów.
+     */
+    public ColumnStore(List<? extends DataPoint> data) {
+        setAll(data);
+    }
+
+    /** @return Liczba wierszy. */
+    public int size() { return size; }
+
+    /** Usuwa wszystkie wiersze (pojemność tablic pozostaje). */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Zastępuje zawartość magazynu kolumnami podanej listy.
+     *
+     * @param data Lista produktów.
+     */
+    public void setAll(List<? extends DataPoint> data) {
+        size = 0;
+        insert(0, data);
+    }
+
+    /**
+     * Wstawia wiersze od podanej pozycji (jak {@code List.addAll(index, rows)}).
+     *
+     * @param index Pozycja pierwszego wstawianego wiersza.
+     * @param rows  Wstawiane produkty.
+     */
+    public void insert(int index, List<? extends DataPoint> rows) {
+        if (index < 0 || index > size) throw new IndexOutOfBoundsException("Indeks: " + index + ", rozmiar: " + size);
+        int n = rows.size();
+        ensureCapacity(size + n);
+        if (index < size) {
+            // Przesunięcie ogona kolumn, aby zrobić miejsce na nowe wiersze
+            System.arraycopy(quantities, index, quantities, index + n, size - index);
+            System.arraycopy(prices, index, prices, index + n, size - index);
+            System.arraycopy(totals, index, totals, index + n, size - index);
+        }
+        for (int i = 0; i < n; i++) {
+            DataPoint dp = rows.get(i);
+            quantities[index + i] = dp.getQuantity();
+            prices[index + i] = dp.getPrice();
+        }
+        // Wartości całkowite jednym przebiegiem po kolumnach (wynik jak getTotalValue)
+        ColumnKernels.get().multiply(quantities, prices, totals, index, n);
+        size += n;
+    }
+
+    /**
+     * Usuwa wiersze z zakresu [from, to).
+     *
+     * @param from Pierwszy usuwany wiersz.
+     * @param to   Pozycja za ostatnim usuwanym wierszem.
+     */
+    public void remove(int from, int to) {
+        if (from < 0 || to > size || from > to) throw new IndexOutOfBoundsException("Zakres: " + from + ".." + to + ", rozmiar: " + size);
+        System.arraycopy(quantities, to, quantities, from, size - to);
+        System.arraycopy(prices, to, prices, from, size - to);
+        System.arraycopy(totals, to, totals, from, size - to);
+        size -= to - from;
+    }
+
+    /**
+     * Nadpisuje wiersz wartościami produktu (np. po edycji).
+     *
+     * @param index Pozycja wiersza.
+     * @param dp    Produkt.
+     */
+    public void set(int index, DataPoint dp) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Indeks: " + index + ", rozmiar: " + size);
+        write(index, dp);
+    }
+
+    /**
+     * Tworzy niezależną kopię magazynu (np. do obliczeń w wątku tła, gdy oryginał jest dalej zmieniany).
+     *
+     * @return Kopia kolumn o pojemności równej liczbie wierszy.
+     */
+    public ColumnStore copy() {
+        ColumnStore copy = new ColumnStore();
+        copy.quantities = Arrays.copyOf(quantities, size);
+        copy.prices = Arrays.copyOf(prices, size);
+        copy.totals = Arrays.copyOf(totals, size);
+        copy.size = size;
+        return copy;
+    }
+
+    private void write(int i, DataPoint dp) {
+        quantities[i] = dp.getQuantity();
+        prices[i] = dp.getPrice();
+        totals[i] = dp.getTotalValue();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= quantities.length) return;
+        int newCapacity = Math.max(capacity, quantities.length + (quantities.length >> 1));
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+        totals = Arrays.copyOf(totals, newCapacity);
+    }
+
+    // Dostęp do surowych kolumn dla pętli obliczeniowych (ważne są tylko pierwsze size() elementy)
+
+    int[] quantities() { return quantities; }
+
+    double[] prices() { return prices; }
+
+    double[] totals() { return totals; }
+}
@@ -0,0 +1,25 @@
+package pl.analiza.service;
+
+/**
+ * Suma z kompensacją błędu zaokrągleń (Kahan-Neumaier).
+ * <p>
+ * Przy dodawaniu i odejmowaniu wielu wartości (także bardzo różnych rzędów wielkości)
+ * błąd wyniku nie narasta z liczbą składników.
+ * </p>
+ */
+final class CompensatedSum {
+    private double sum, compensation;
+
+    void add(double v) {
+        double t = sum + v;
+        compensation += Math.abs(sum) >= Math.abs(v) ? (sum - t) + v : (v - t) + sum;
+        sum = t;
+    }
+
+    void reset() {
+        sum = 0;
+        compensation = 0;
+    }
+
+    double value() { return sum + compensation; }
+}
@@ -0,0 +1,492 @@
+package pl.analiza.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prosta pula połączeń JDBC.
+ * <p>
+ * Połączenia fizyczne są utrzymywane między wywołaniami serwisu, dzięki czemu kolejne
+ * operacje nie płacą za nawiązanie połączenia TCP, uwierzytelnienie i start procesu serwera.
+ * Wypożyczone połączenie jest obiektem pośredniczącym - {@code close()} zwraca je do puli
+ * (z wycofaniem niezatwierdzonej transakcji i przywróceniem auto-commit).
+ * </p>
+ * <p>
+ * Cechy puli:
+ * - rozmiar ograniczony z dołu ({@code minSize}, utrzymywane w tle) i z góry ({@code maxSize},
+ *   kolejni chętni czekają najwyżej {@code maxWaitMs}),
+ * - walidacja połączenia przy wypożyczeniu, jeśli było bezczynne dłużej niż {@link #VALIDATION_BYPASS_MS},
+ * - usuwanie połączeń bezczynnych dłużej niż {@code idleTimeoutMs} (ponad minimum),
+ * - pamięć podręczna {@link PreparedStatement} dla każdego połączenia (LRU, {@link #STATEMENT_CACHE_SIZE}),
+ * - metryki: połączenia aktywne i bezczynne, liczba wypożyczeń, czas oczekiwania, trafienia cache.
+ * </p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Maksymalna liczba zapamiętanych zapytań przygotowanych na jedno połączenie. */
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    /** Połączenie używane niedawno nie jest ponownie walidowane (oszczędność jednego zapytania). */
+    private static final long VALIDATION_BYPASS_MS = 500;
+
+    /** Limit czasu walidacji połączenia w sekundach. */
+    private static final int VALIDATION_TIMEOUT_S = 2;
+
+    private final String url, user, password;
+    private final int minSize, maxSize;
+    private final long idleTimeoutMs, maxWaitMs;
+
+    /** Połączenia bezczynne (ostatnio zwrócone na początku). */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /** Zezwolenia na wypożyczenie - ogranicza liczbę połączeń do maxSize. */
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+
+    // Metryki
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Tworzy pulę. Połączenia nawiązywane są leniwie, a minimum uzupełniane w tle.
+     *
+     * @param url           Adres JDBC bazy.
+     * @param user          Użytkownik bazy.
+     * @param password      Hasło.
+     * @param minSize       Minimalna liczba utrzymywanych połączeń.
+     * @param maxSize       Maksymalna liczba połączeń (bezczynnych i wypożyczonych).
+     * @param idleTimeoutMs Czas bezczynności, po którym połączenie ponad minimum jest zamykane.
+     * @param maxWaitMs     Maksymalny czas oczekiwania na wolne połączenie.
+     */
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize, long idleTimeoutMs, long maxWaitMs) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Nieprawidłowy rozmiar puli: " + minSize + ".." + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMs / 2);
+        housekeeper.scheduleWithFixedDelay(this::maintain, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wypożycza połączenie z puli (lub nawiązuje nowe, jeśli limit na to pozwala).
+     * Połączenie należy zamknąć ({@code close()}), co zwraca je do puli.
+     *
+     * @return Połączenie gotowe do użycia (auto-commit włączony).
+     * @throws SQLException Brak wolnego połączenia w czasie {@code maxWaitMs} lub błąd połączenia.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Pula połączeń została zamknięta.");
+
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Przekroczono czas oczekiwania na połączenie z bazą (" + maxWaitMs + " ms).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Przerwano oczekiwanie na połączenie z bazą.", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pc = takeValidIdle();
+            if (pc == null) pc = create();
+            pc.lastUsed = System.currentTimeMillis();
+            active.incrementAndGet();
+            borrowCount.incrementAndGet();
+            return pc.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Pobiera najświeższe bezczynne połączenie, odrzucając niesprawne. */
+    private PooledConnection takeValidIdle() {
+        while (true) {
+            PooledConnection pc;
+            synchronized (idle) {
+                pc = idle.pollFirst();
+            }
+            if (pc == null) return null;
+            if (System.currentTimeMillis() - pc.lastUsed < VALIDATION_BYPASS_MS || pc.isValid()) return pc;
+            destroy(pc);
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        PooledConnection pc = new PooledConnection(DriverManager.getConnection(url, user, password));
+        total.incrementAndGet();
+        createdCount.incrementAndGet();
+        return pc;
+    }
+
+    /** Zwrot połączenia po zamknięciu obiektu pośredniczącego. */
+    private void release(PooledConnection pc) {
+        active.decrementAndGet();
+        try {
+            if (!pc.broken && !closed && pc.reset()) {
+                pc.lastUsed = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(pc);
+                }
+            } else {
+                destroy(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void destroy(PooledConnection pc) {
+        total.decrementAndGet();
+        pc.closePhysical();
+    }
+
+    /** Zadanie w tle: usuwa połączenia zbyt długo bezczynne i uzupełnia pulę do minimum. */
+    private void maintain() {
+        if (closed) return;
+        long now = System.currentTimeMillis();
+        synchronized (idle) {
+            // Najdłużej bezczynne są na końcu kolejki
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() > minSize) {
+                PooledConnection pc = it.next();
+                if (now - pc.lastUsed < idleTimeoutMs) break;
+                it.remove();
+                evictedCount.incrementAndGet();
+                destroy(pc);
+            }
+        }
+        while (!closed && total.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pc = create();
+                pc.lastUsed = now;
+                synchronized (idle) {
+                    idle.addLast(pc);
+                }
+            } catch (SQLException e) {
+                break; // Baza niedostępna - ponowna próba przy kolejnym przebiegu
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Zamyka pulę i wszystkie bezczynne połączenia (wypożyczone są zamykane przy zwrocie). */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        synchronized (idle) {
+            for (PooledConnection pc : idle) destroy(pc);
+            idle.clear();
+        }
+    }
+
+    // ==========================================
+    // METRYKI
+    // ==========================================
+
+    /** @return Liczba połączeń aktualnie wypożyczonych. */
+    public int getActiveCount() { return active.get(); }
+
+    /** @return Liczba połączeń bezczynnych w puli. */
+    public int getIdleCount() { synchronized (idle) { return idle.size(); } }
+
+    /** @return Liczba wszystkich otwartych połączeń fizycznych. */
+    public int getTotalCount() { return total.get(); }
+
+    /** @return Liczba wątków czekających na połączenie. */
+    public int getWaitingCount() { return waiting.get(); }
+
+    /** @return Łączna liczba wypożyczeń. */
+    public long getBorrowCount() { return borrowCount.get(); }
+
+    /** @return Średni czas oczekiwania na połączenie w milisekundach. */
+    public double getAverageWaitMs() {
+        long n = borrowCount.get();
+        return n == 0 ? 0 : waitNanos.get() / 1e6 / n;
+    }
+
+    /** @return Najdłuższy zaobserwowany czas oczekiwania na połączenie w milisekundach. */
+    public double getMaxWaitMs() { return maxWaitNanos.get() / 1e6; }
+
+    /** @return Liczba nawiązanych połączeń fizycznych od startu puli. */
+    public long getCreatedCount() { return createdCount.get(); }
+
+    /** @return Liczba połączeń zamkniętych z powodu bezczynności. */
+    public long getEvictedCount() { return evictedCount.get(); }
+
+    /** @return Odsetek zapytań przygotowanych obsłużonych z pamięci podręcznej (0..1). */
+    public double getStatementCacheHitRatio() {
+        long hits = statementHits.get(), all = hits + statementMisses.get();
+        return all == 0 ? 0 : (double) hits / all;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pula: aktywne=%d, bezczynne=%d, razem=%d/%d, czekające=%d, wypożyczenia=%d, " +
+                        "śr. oczekiwanie=%.2f ms, maks. oczekiwanie=%.2f ms, cache zapytań=%.0f%%",
+                getActiveCount(), getIdleCount(), getTotalCount(), maxSize, getWaitingCount(), getBorrowCount(),
+                getAverageWaitMs(), getMaxWaitMs(), getStatementCacheHitRatio() * 100);
+    }
+
+    // ==========================================
+    // POŁĄCZENIE W PULI
+    // ==========================================
+
+    /**
+     * Połączenie fizyczne wraz z pamięcią podręczną zapytań przygotowanych.
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements =
+                new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                        if (size() <= STATEMENT_CACHE_SIZE || eldest.getValue().inUse) return false;
+                        eldest.getValue().closePhysical();
+                        return true;
+                    }
+                };
+        private long lastUsed;
+        private boolean broken;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /** Tworzy obiekt pośredniczący dla jednego wypożyczenia. */
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this));
+        }
+
+        boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_S);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Przywraca stan domyślny połączenia przed zwrotem do puli. */
+        boolean reset() {
+            try {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Zwraca zapytanie przygotowane z pamięci podręcznej lub przygotowuje nowe. */
+        PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.inUse) {
+                statementHits.incrementAndGet();
+            } else {
+                statementMisses.incrementAndGet();
+                PreparedStatement ps = physical.prepareStatement(sql);
+                // To samo zapytanie otwarte dwukrotnie - druga kopia nie trafia do cache
+                if (cached != null) return ps;
+                cached = new CachedStatement(ps);
+                statements.put(sql, cached);
+            }
+            cached.inUse = true;
+            return cached.lease(this, owner);
+        }
+
+        void closePhysical() {
+            for (CachedStatement cs : statements.values()) cs.closePhysical();
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // Połączenie i tak jest porzucane
+            }
+        }
+    }
+
+    /** Zapytanie przygotowane przechowywane w pamięci podręcznej połączenia. */
+    private static final class CachedStatement {
+        private final PreparedStatement physical;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement lease(PooledConnection pc, Connection owner) {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new StatementHandler(this, pc, owner));
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // Zapytanie i tak jest porzucane
+            }
+        }
+    }
+
+    /**
+     * Obsługa wywołań na wypożyczonym połączeniu: close() zwraca połączenie do puli,
+     * prepareStatement(String) korzysta z pamięci podręcznej, pozostałe metody trafiają do połączenia fizycznego.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+        private final PooledConnection pc;
+        private boolean returned;
+
+        ConnectionHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pc.physical;
+                default:
+                    break;
+            }
+            if (returned) throw new SQLException("Połączenie zostało już zwrócone do puli.");
+
+            if ("prepareStatement".equals(name) && args.length == 1) {
+                return pc.prepare((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw markIfBroken(pc, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Obsługa wywołań na zapytaniu z pamięci podręcznej: close() czyści parametry
+     * i oddaje zapytanie do ponownego użycia zamiast je zamykać.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final CachedStatement cs;
+        private final PooledConnection pc;
+        private final Connection owner;
+        private boolean closed;
+
+        StatementHandler(CachedStatement cs, PooledConnection pc, Connection owner) {
+            this.cs = cs;
+            this.pc = pc;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            cs.physical.clearParameters();
+                            cs.physical.clearBatch();
+                        } finally {
+                            cs.inUse = false;
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cs.physical.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException("Zapytanie zostało już zamknięte.");
+            try {
+                return method.invoke(cs.physical, args);
+            } catch (InvocationTargetException e) {
+                throw markIfBroken(pc, e.getCause());
+            }
+        }
+    }
+
+    /** Błąd połączenia (SQLState 08xxx) oznacza połączenie do zamknięcia zamiast zwrotu do puli. */
+    private static Throwable markIfBroken(PooledConnection pc, Throwable cause) {
+        if (cause instanceof SQLException && isConnectionError((SQLException) cause)) pc.broken = true;
+        return cause;
+    }
+
+    private static boolean isConnectionError(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
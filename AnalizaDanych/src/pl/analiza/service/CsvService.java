@@ -2,24 +2,54 @@ package pl.analiza.service;
 
 import pl.analiza.model.DataPoint;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Serwis odpowiedzialny za import danych z plików tekstowych CSV.
  */
 public class CsvService {
 
+    /** Domyślna liczba wątków importu równoległego (liczba rdzeni procesora). */
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /** Rozmiar fragmentu pliku przetwarzanego przez jedno zadanie; mniejszych plików nie opłaca się dzielić (4 MB). */
+    private static final long CHUNK_SIZE = 4L * 1024 * 1024;
+
+    /** Rozmiar pierwszego fragmentu - mały, aby pierwsze wiersze trafiły do odbiorcy bez zwłoki (256 KB). */
+    private static final long FIRST_CHUNK_SIZE = 256L * 1024;
+
+    /** Liczba fragmentów na wątek parsowanych z wyprzedzeniem względem odbiorcy. */
+    private static final int LOOKAHEAD_PER_THREAD = 2;
+
+    /** Czas importu plików CSV (wiersze i bajty pliku). */
+    private static final OperationTimer IMPORT_TIMER = Metrics.timer("csv.import", Metrics.Kind.IMPORT);
+
+    /** Parser plików mapowanych do pamięci (bez pośrednich obiektów String na komórkę). */
+    private final MappedCsvReader reader = new MappedCsvReader();
+
     /**
      * Wczytuje dane z pliku CSV i konwertuje je na listę obiektów DataPoint.
      * <p>
      * Oczekiwany format pliku:
      * Produkt;Kategoria;Ilość;Cena;Dostępność
      * </p>
+     * <p>
+     * Plik jest mapowany do pamięci i parsowany strumieniowo przez {@link MappedCsvReader}.
+     * Wiersze z błędnym formatem liczby (np. nagłówek) są pomijane.
+     * </p>
      *
      * @param file Plik wejściowy wybrany przez użytkownika.
      * @return Lista wczytanych produktów.
@@ -27,35 +57,156 @@ public class CsvService {
      */
     public List<DataPoint> load(File file) throws IOException {
         List<DataPoint> result = new ArrayList<>();
+        try (OperationTimer.Sample sample = IMPORT_TIMER.start()) {
+            reader.read(file, result::add);
+            sample.rows(result.size()).bytes(file.length());
+        }
+        return result;
+    }
+
+    /**
+     * Wczytuje plik CSV równolegle, dzieląc go na fragmenty bajtowe wyrównane do granic linii.
+     * <p>
+     * Każdy fragment jest parsowany w osobnym zadaniu puli fork-join, a wyniki częściowe
+     * są łączone w kolejności występowania w pliku. Obsługa nagłówka i błędnych wierszy
+     * jest identyczna jak w {@link #load(File)}. Małe pliki są wczytywane sekwencyjnie.
+     * </p>
+     *
+     * @param file        Plik wejściowy.
+     * @param parallelism Liczba wątków roboczych (np. {@link #DEFAULT_PARALLELISM}).
+     * @return Lista wczytanych produktów w kolejności z pliku.
+     * @throws IOException Błąd podczas odczytu pliku z dysku.
+     */
+    public List<DataPoint> load(File file, int parallelism) throws IOException {
+        List<DataPoint> result = new ArrayList<>();
+        read(file, parallelism, result::add, null);
+        return result;
+    }
+
+    /**
+     * Tworzy źródło dla potoku importu ({@link ImportPipeline}) czytające plik strumieniowo.
+     *
+     * @param file        Plik wejściowy.
+     * @param parallelism Liczba wątków parsujących.
+     * @return Źródło publikujące produkty w kolejności pliku wraz z postępem odczytu.
+     */
+    public ImportSource source(File file, int parallelism) {
+        return (sink, progress) -> read(file, parallelism, sink, progress);
+    }
+
+    /**
+     * Czyta plik fragmentami równolegle i przekazuje produkty do odbiorcy w kolejności pliku.
+     * <p>
+     * Plik jest dzielony na fragmenty stałej wielkości ({@code CHUNK_SIZE}), a jednocześnie
+     * przetwarzanych jest co najwyżej {@code parallelism * LOOKAHEAD_PER_THREAD} z nich - wolny
+     * odbiorca wstrzymuje parsowanie, a w pamięci czeka najwyżej kilka fragmentów zamiast całego pliku.
+     * </p>
+     */
+    private void read(File file, int parallelism, Consumer<DataPoint> sink, DoubleConsumer progress) throws IOException {
+        if (parallelism < 1) throw new IllegalArgumentException("Liczba wątków musi być dodatnia.");
 
-        // Użycie try-with-resources dla bezpiecznego zamknięcia strumienia
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            // Pętla odczytująca plik linia po linii do końca
-            while ((line = br.readLine()) != null) {
-                // Podział linii według średnika
-                String[] parts = line.split(";");
-
-                // Walidacja: czy wiersz ma wystarczającą liczbę kolumn (5)
-                if (parts.length >= 5) {
-                    try {
-                        // Oczyszczenie danych ze spacji (trim)
-                        String prod = parts[0].trim();
-                        String cat = parts[1].trim();
-                        int qty = Integer.parseInt(parts[2].trim());
-
-                        // Obsługa formatu ceny (zamiana polskiego przecinka na kropkę)
-                        double price = Double.parseDouble(parts[3].trim().replace(",", "."));
-                        boolean avail = Boolean.parseBoolean(parts[4].trim());
-
-                        result.add(new DataPoint(prod, cat, qty, price, avail));
-                    } catch (NumberFormatException e) {
-                        // Logowanie błędu, jeśli dane w kolumnie liczbowej są nieprawidłowe
-                        System.out.println("Błąd formatu liczby w linii: " + line);
+        try (OperationTimer.Sample sample = IMPORT_TIMER.start();
+             FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            sample.bytes(size);
+            sink = sample.counting(sink);
+            StringPool names = new StringPool();
+            if (parallelism == 1 || size < 2 * CHUNK_SIZE) {
+                reader.read(ch, 0, size, names, sink, progress);
+                return;
+            }
+
+            long[] bounds = splitAtLines(ch, size);
+            int lookahead = parallelism * LOOKAHEAD_PER_THREAD;
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            Deque<ChunkTask> inFlight = new ArrayDeque<>();
+            int next = 0;
+            try {
+                while (next + 1 < bounds.length || !inFlight.isEmpty()) {
+                    // Uzupełnienie okna zadań wyprzedzających odbiorcę
+                    while (next + 1 < bounds.length && inFlight.size() < lookahead) {
+                        ChunkTask task = new ChunkTask(ch, bounds[next], bounds[next + 1], names);
+                        pool.execute(task);
+                        inFlight.add(task);
+                        next++;
                     }
+
+                    // Przekazanie wyników najstarszego fragmentu (zachowanie kolejności pliku)
+                    ChunkTask done = inFlight.poll();
+                    for (DataPoint dp : done.join()) sink.accept(dp);
+                    if (progress != null) progress.accept((double) done.end / size);
                 }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdownNow();
             }
         }
+    }
+
+    /**
+     * Wyznacza granice fragmentów pliku (co około {@code CHUNK_SIZE}) tak, aby każda zaczynała się
+     * na początku linii.
+     *
+     * @return Posortowana tablica granic (pierwsza = 0, ostatnia = rozmiar pliku).
+     */
+    private long[] splitAtLines(FileChannel ch, long size) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long pos = FIRST_CHUNK_SIZE;
+        while (pos < size) {
+            // Przesunięcie granicy za najbliższy znak końca linii
+            long boundary = -1;
+            long scan = pos;
+            while (boundary < 0 && scan < size) {
+                probe.clear();
+                int n = ch.read(probe, scan);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = probe.get(i);
+                    if (b == '\n' || b == '\r') { boundary = scan + i + 1; break; }
+                }
+                scan += n;
+            }
+            if (boundary < 0 || boundary >= size) break;
+            bounds.add(boundary);
+            pos = boundary + CHUNK_SIZE;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Zadanie fork-join parsujące pojedynczy fragment pliku.
+     */
+    private final class ChunkTask extends RecursiveTask<List<DataPoint>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final long start, end;
+        private final StringPool names;
+
+        ChunkTask(FileChannel ch, long start, long end, StringPool names) {
+            this.ch = ch;
+            this.start = start;
+            this.end = end;
+            this.names = names;
+        }
+
+        @Override
+        protected List<DataPoint> compute() {
+            List<DataPoint> part = new ArrayList<>();
+            try {
+                reader.read(ch, start, end, names, part::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return part;
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package pl.analiza.service;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 import pl.analiza.model.DataPoint;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Serwis JDBC do komunikacji z bazą danych PostgreSQL.
@@ -19,6 +30,61 @@ public class DatabaseService {
     private static final String DB_USER = "postgres";
     private static final String DB_PASS = "Barbie";
 
+    // Konfiguracja puli połączeń
+    private static final int POOL_MIN_SIZE = 1;
+    private static final int POOL_MAX_SIZE = 4;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final long POOL_MAX_WAIT_MS = 10 * 1000;
+
+    /** Rozmiar paczki dla wsadowych INSERT-ów (ścieżka zapasowa bez COPY). */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Zapytanie złączeniowe (JOIN) pobierające komplet danych o produkcie. */
+    private static final String PRODUCT_QUERY = "SELECT p.id, p.nazwa AS produkt, k.nazwa AS kategoria, " +
+            "m.ilosc, m.dostepnosc, c.cena " +
+            "FROM produkty p " +
+            "JOIN kategorie k ON p.kategoria_id = k.id " +
+            "JOIN magazyn m ON p.id = m.produkt_id " +
+            "JOIN cennik c ON p.id = c.produkt_id";
+
+    /** Warunek filtra odpowiadający wyszukiwaniu w tabeli (nazwa produktu LUB kategorii). */
+    private static final String FILTER_CONDITION = "(p.nazwa ILIKE ? ESCAPE '\\' OR k.nazwa ILIKE ? ESCAPE '\\')";
+
+    /** Liczba wierszy pobieranych z kursora w jednej porcji przy odczycie produktów. */
+    private static final int FETCH_SIZE = 2000;
+
+    // Czasy operacji na bazie (zapisy i odczyt pełnej listy emitują też zdarzenia JFR)
+    private static final OperationTimer SAVE_FULL_TIMER = Metrics.timer("db.saveFull", Metrics.Kind.SAVE);
+    private static final OperationTimer SAVE_CHANGES_TIMER = Metrics.timer("db.saveChanges", Metrics.Kind.SAVE);
+    private static final OperationTimer LOAD_TIMER = Metrics.timer("db.load", Metrics.Kind.IMPORT);
+    private static final OperationTimer CATEGORY_LIST_TIMER = Metrics.timer("db.category.list");
+    private static final OperationTimer CATEGORY_ADD_TIMER = Metrics.timer("db.category.add");
+    private static final OperationTimer CATEGORY_UPDATE_TIMER = Metrics.timer("db.category.update");
+    private static final OperationTimer CATEGORY_DELETE_TIMER = Metrics.timer("db.category.delete");
+    private static final OperationTimer COUNT_TIMER = Metrics.timer("db.count");
+    private static final OperationTimer PAGE_TIMER = Metrics.timer("db.page");
+
+    /** Pula połączeń współdzielona przez wszystkie metody serwisu. */
+    private final ConnectionPool pool;
+
+    /** Tworzy serwis z domyślną konfiguracją puli połączeń. */
+    public DatabaseService() {
+        this(new ConnectionPool(DB_URL, DB_USER, DB_PASS,
+                POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT_MS, POOL_MAX_WAIT_MS));
+    }
+
+    /**
+     * Tworzy serwis korzystający z podanej puli połączeń (np. o innym rozmiarze).
+     *
+     * @param pool Pula połączeń do bazy.
+     */
+    public DatabaseService(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /** @return Pula połączeń serwisu (metryki: aktywne, bezczynne, czas oczekiwania). */
+    public ConnectionPool getPool() { return pool; }
+
     // ==========================================
     // 1. ZAPIS I ODCZYT PRODUKTÓW
     // ==========================================
@@ -26,16 +92,22 @@ public class DatabaseService {
     /**
      * Zapisuje pełną listę produktów do bazy danych.
      * <p>
-     * Działa w trybie transakcyjnym:
+     * Działa w trybie transakcyjnym (jedna transakcja dla całego zapisu):
      * 1. Czyści obecne tabele.
-     * 2. Wstawia nowe dane, dbając o relacje kluczy obcych.
+     * 2. Nadaje identyfikatory kategorii i produktów po stronie klienta (liczniki są zresetowane).
+     * 3. Ładuje tabele masowo poleceniem {@code COPY FROM STDIN} (CopyManager sterownika PostgreSQL),
+     *    a gdy nie jest ono dostępne - wsadowymi INSERT-ami ({@code addBatch/executeBatch}).
+     * 4. Ustawia sekwencje identyfikatorów za ostatnim nadanym numerem.
+     * Po zatwierdzeniu produkty otrzymują nadane identyfikatory, a ich znaczniki zmian są czyszczone.
      * </p>
      *
      * @param data Lista produktów do zapisania.
-     * @throws SQLException Błąd SQL (np. brak połączenia, błąd klucza).
+     * @throws SQLException Błąd SQL (np. brak połączenia, błąd klucza) lub produkt bez kategorii.
      */
     public void saveToDatabase(List<DataPoint> data) throws SQLException {
-        Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+        requireCategories(data);
+        OperationTimer.Sample sample = SAVE_FULL_TIMER.start();
+        Connection conn = pool.getConnection();
         conn.setAutoCommit(false); // Wyłączenie auto-commit w celu obsługi transakcji
 
         try {
@@ -43,73 +115,391 @@ public class DatabaseService {
 
             // 1. Czyszczenie tabel (kolejność usuwania: dzieci -> rodzice)
             // CASCADE pozwala na kaskadowe usuwanie, RESTART IDENTITY resetuje liczniki ID
-            stmt.execute("TRUNCATE TABLE cennik RESTART IDENTITY CASCADE");
-            stmt.execute("TRUNCATE TABLE magazyn RESTART IDENTITY CASCADE");
-            stmt.execute("TRUNCATE TABLE produkty RESTART IDENTITY CASCADE");
-            stmt.execute("TRUNCATE TABLE kategorie RESTART IDENTITY CASCADE");
+            stmt.execute("TRUNCATE TABLE cennik, magazyn, produkty, kategorie RESTART IDENTITY CASCADE");
             stmt.close();
 
-            // 2. Przygotowanie zapytań (PreparedStatements) dla wydajności i bezpieczeństwa
-            String checkCatSQL = "SELECT id FROM kategorie WHERE nazwa = ?";
-            String insertCatSQL = "INSERT INTO kategorie (nazwa) VALUES (?) RETURNING id";
-            String insertProdSQL = "INSERT INTO produkty (nazwa, kategoria_id) VALUES (?, ?) RETURNING id";
-            String insertStockSQL = "INSERT INTO magazyn (produkt_id, ilosc, dostepnosc) VALUES (?, ?, ?)";
-            String insertPriceSQL = "INSERT INTO cennik (produkt_id, cena) VALUES (?, ?)";
+            // 2. Słownik kategorii budowany jednokrotnie w pamięci (id nadawane kolejno od 1)
+            Map<String, Integer> categoryIds = new LinkedHashMap<>();
+            for (DataPoint dp : data) {
+                categoryIds.computeIfAbsent(dp.getCategory(), k -> categoryIds.size() + 1);
+            }
 
-            PreparedStatement checkCatStmt = conn.prepareStatement(checkCatSQL);
-            PreparedStatement insertCatStmt = conn.prepareStatement(insertCatSQL);
-            PreparedStatement insertProdStmt = conn.prepareStatement(insertProdSQL);
-            PreparedStatement insertStockStmt = conn.prepareStatement(insertStockSQL);
-            PreparedStatement insertPriceStmt = conn.prepareStatement(insertPriceSQL);
+            // 3. Masowe ładowanie tabel (produkt i-ty otrzymuje id = i + 1)
+            CopyManager copyManager = copyManager(conn);
+            if (copyManager != null) {
+                sample.bytes(copyAll(copyManager, data, categoryIds));
+            } else {
+                batchInsertAll(conn, data, categoryIds);
+            }
 
-            for (DataPoint dp : data) {
-                // A. Obsługa Kategorii (Sprawdź czy istnieje, jeśli nie - dodaj)
-                int catId = -1;
-                checkCatStmt.setString(1, dp.getCategory());
-                ResultSet rsCat = checkCatStmt.executeQuery();
-
-                if (rsCat.next()) {
-                    catId = rsCat.getInt("id"); // Kategoria już istnieje
-                } else {
-                    insertCatStmt.setString(1, dp.getCategory());
-                    ResultSet rsInsertCat = insertCatStmt.executeQuery();
-                    if (rsInsertCat.next()) {
-                        catId = rsInsertCat.getInt("id"); // Nowo dodana kategoria
-                    }
-                    rsInsertCat.close();
-                }
-                rsCat.close();
+            // 4. Synchronizacja sekwencji z nadanymi identyfikatorami
+            setSequence(conn, "kategorie", categoryIds.size());
+            setSequence(conn, "produkty", data.size());
 
-                // B. Dodanie Produktu (powiązanego z kategorią)
-                insertProdStmt.setString(1, dp.getProduct());
-                insertProdStmt.setInt(2, catId);
-                ResultSet rsProd = insertProdStmt.executeQuery();
+            conn.commit(); // Zatwierdzenie transakcji (wszystko się udało)
 
-                int prodId = -1;
-                if (rsProd.next()) {
-                    prodId = rsProd.getInt("id");
-                }
-                rsProd.close();
+            // Lista odpowiada teraz zawartości bazy
+            for (int i = 0; i < data.size(); i++) {
+                data.get(i).setId(i + 1);
+                data.get(i).setModified(false);
+            }
+            sample.rows(data.size());
 
-                // C. Uzupełnienie Magazynu (dla danego produktu)
-                insertStockStmt.setInt(1, prodId);
-                insertStockStmt.setInt(2, dp.getQuantity());
-                insertStockStmt.setBoolean(3, dp.isAvailable());
-                insertStockStmt.executeUpdate();
+        } catch (SQLException e) {
+            conn.rollback(); // Wycofanie zmian w przypadku błędu
+            throw e;
+        } finally {
+            conn.close(); // Zwrot połączenia do puli
+            sample.close();
+        }
+    }
+
+    /**
+     * Zapisuje w bazie wyłącznie zmiany wprowadzone od ostatniej synchronizacji.
+     * <p>
+     * Koszt zapisu zależy od liczby zmian, a nie od rozmiaru tabel. W jednej transakcji:
+     * 1. Usuwa produkty zarejestrowane w {@link ChangeTracker} ({@code DELETE ... WHERE id = ANY(?)},
+     *    stany i ceny usuwane są kaskadowo).
+     * 2. Rezerwuje identyfikatory dla nowych produktów z sekwencji tabeli produkty.
+     * 3. Dopisuje brakujące kategorie.
+     * 4. Wysyła nowe i zmienione produkty wsadowymi {@code INSERT ... ON CONFLICT DO UPDATE}.
+     * Jeśli lista nie pochodzi z bazy (brak punktu odniesienia), wykonywany jest pełny zapis
+     * {@link #saveToDatabase(List)}.
+     * </p>
+     *
+     * @param data    Bieżąca lista produktów.
+     * @param tracker Rejestr zmian listy (czyszczony po udanym zapisie).
+     * @return Liczba zapisanych zmian (usunięte + dodane + zmienione produkty).
+     * @throws SQLException Błąd SQL lub produkt bez kategorii (zmiany są wtedy wycofywane,
+     *                      a rejestr pozostaje nietknięty).
+     */
+    public int saveChanges(List<DataPoint> data, ChangeTracker tracker) throws SQLException {
+        if (!tracker.hasBaseline()) {
+            saveToDatabase(data);
+            tracker.markSynchronized();
+            return data.size();
+        }
 
-                // D. Uzupełnienie Cennika (dla danego produktu)
-                insertPriceStmt.setInt(1, prodId);
-                insertPriceStmt.setDouble(2, dp.getPrice());
-                insertPriceStmt.executeUpdate();
+        // Produkty nowe (bez id) i zmienione od ostatniej synchronizacji
+        List<DataPoint> changed = new ArrayList<>();
+        int newCount = 0;
+        for (DataPoint dp : data) {
+            if (dp.getId() == 0) { changed.add(dp); newCount++; }
+            else if (dp.isModified()) changed.add(dp);
+        }
+        Integer[] deleted = tracker.getDeletedIds().toArray(new Integer[0]);
+        if (changed.isEmpty() && deleted.length == 0) return 0;
+        requireCategories(changed);
+
+        OperationTimer.Sample sample = SAVE_CHANGES_TIMER.start();
+        Connection conn = pool.getConnection();
+        conn.setAutoCommit(false);
+        try {
+            // 1. Usunięcia (jedno zapytanie z tablicą identyfikatorów)
+            if (deleted.length > 0) {
+                try (PreparedStatement del = conn.prepareStatement("DELETE FROM produkty WHERE id = ANY(?)")) {
+                    del.setArray(1, conn.createArrayOf("integer", deleted));
+                    del.executeUpdate();
+                }
             }
 
-            conn.commit(); // Zatwierdzenie transakcji (wszystko się udało)
+            // 2. Identyfikatory dla nowych produktów (przypisywane po zatwierdzeniu transakcji)
+            int[] newIds = reserveProductIds(conn, newCount);
+            int[] ids = new int[changed.size()];
+            for (int i = 0, n = 0; i < ids.length; i++) {
+                ids[i] = changed.get(i).getId() != 0 ? changed.get(i).getId() : newIds[n++];
+            }
+
+            // 3. Kategorie użyte przez zmienione produkty
+            Map<String, Integer> categoryIds = resolveCategories(conn, changed);
+
+            // 4. Upsert produktów, stanów magazynowych i cen
+            upsertAll(conn, changed, ids, categoryIds);
+
+            conn.commit();
+
+            for (int i = 0; i < ids.length; i++) {
+                changed.get(i).setId(ids[i]);
+                changed.get(i).setModified(false);
+            }
+            tracker.markSynchronized();
+            sample.rows(deleted.length + changed.size());
+            return deleted.length + changed.size();
 
         } catch (SQLException e) {
-            conn.rollback(); // Wycofanie zmian w przypadku błędu
+            conn.rollback();
             throw e;
         } finally {
-            conn.close(); // Zamknięcie połączenia
+            conn.close();
+            sample.close();
+        }
+    }
+
+    /**
+     * Sprawdza przed otwarciem transakcji, że każdy produkt ma kategorię (kolumna {@code kategorie.nazwa}
+     * jest wymagana) - zamiast błędu w połowie wsadu zapis kończy się czytelnym komunikatem.
+     */
+    private static void requireCategories(List<DataPoint> rows) throws SQLException {
+        for (DataPoint dp : rows) {
+            if (dp.getCategory() == null) {
+                throw new SQLException("Produkt \"" + dp.getProduct() + "\" nie ma kategorii - uzupełnij ją przed zapisem.");
+            }
+        }
+    }
+
+    /** Pobiera z sekwencji tabeli produkty podaną liczbę kolejnych identyfikatorów. */
+    private int[] reserveProductIds(Connection conn, int count) throws SQLException {
+        int[] ids = new int[count];
+        if (count == 0) return ids;
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT nextval(pg_get_serial_sequence('produkty', 'id')) FROM generate_series(1, ?)")) {
+            stmt.setInt(1, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                for (int i = 0; i < count && rs.next(); i++) ids[i] = rs.getInt(1);
+            }
+        }
+        return ids;
+    }
+
+    /** Zwraca identyfikatory kategorii zmienionych produktów, dopisując brakujące kategorie. */
+    private Map<String, Integer> resolveCategories(Connection conn, List<DataPoint> changed) throws SQLException {
+        Map<String, Integer> categoryIds = new LinkedHashMap<>();
+        for (DataPoint dp : changed) categoryIds.put(dp.getCategory(), null);
+        if (categoryIds.isEmpty()) return categoryIds;
+
+        try (PreparedStatement insertCat = conn.prepareStatement(
+                "INSERT INTO kategorie (nazwa) VALUES (?) ON CONFLICT (nazwa) DO NOTHING")) {
+            for (String name : categoryIds.keySet()) {
+                insertCat.setString(1, name);
+                insertCat.addBatch();
+            }
+            insertCat.executeBatch();
+        }
+
+        try (PreparedStatement select = conn.prepareStatement("SELECT id, nazwa FROM kategorie WHERE nazwa = ANY(?)")) {
+            select.setArray(1, conn.createArrayOf("varchar", categoryIds.keySet().toArray()));
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) categoryIds.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+        // Każda kategoria musi mieć identyfikator przed wiązaniem parametrów upsertu
+        for (Map.Entry<String, Integer> entry : categoryIds.entrySet()) {
+            if (entry.getValue() == null) {
+                throw new SQLException("Nie znaleziono w bazie kategorii \"" + entry.getKey() + "\" po jej dopisaniu.");
+            }
+        }
+        return categoryIds;
+    }
+
+    /** Wsadowy upsert produktów wraz ze stanami magazynowymi i cenami. */
+    private void upsertAll(Connection conn, List<DataPoint> changed, int[] ids, Map<String, Integer> categoryIds) throws SQLException {
+        try (PreparedStatement upsertProd = conn.prepareStatement(
+                     "INSERT INTO produkty (id, nazwa, kategoria_id) VALUES (?, ?, ?) " +
+                     "ON CONFLICT (id) DO UPDATE SET nazwa = EXCLUDED.nazwa, kategoria_id = EXCLUDED.kategoria_id");
+             PreparedStatement upsertStock = conn.prepareStatement(
+                     "INSERT INTO magazyn (produkt_id, ilosc, dostepnosc) VALUES (?, ?, ?) " +
+                     "ON CONFLICT (produkt_id) DO UPDATE SET ilosc = EXCLUDED.ilosc, dostepnosc = EXCLUDED.dostepnosc");
+             PreparedStatement upsertPrice = conn.prepareStatement(
+                     "INSERT INTO cennik (produkt_id, cena) VALUES (?, ?) " +
+                     "ON CONFLICT (produkt_id) DO UPDATE SET cena = EXCLUDED.cena")) {
+            for (int i = 0; i < changed.size(); i++) {
+                DataPoint dp = changed.get(i);
+                upsertProd.setInt(1, ids[i]);
+                upsertProd.setString(2, dp.getProduct());
+                upsertProd.setInt(3, categoryIds.get(dp.getCategory()));
+                upsertProd.addBatch();
+
+                upsertStock.setInt(1, ids[i]);
+                upsertStock.setInt(2, dp.getQuantity());
+                upsertStock.setBoolean(3, dp.isAvailable());
+                upsertStock.addBatch();
+
+                upsertPrice.setInt(1, ids[i]);
+                upsertPrice.setDouble(2, dp.getPrice());
+                upsertPrice.addBatch();
+
+                if ((i + 1) % BATCH_SIZE == 0 || i == changed.size() - 1) {
+                    upsertProd.executeBatch(); // produkty przed tabelami zależnymi (klucze obce)
+                    upsertStock.executeBatch();
+                    upsertPrice.executeBatch();
+                }
+            }
+        }
+    }
+
+    /** Zwraca API COPY sterownika PostgreSQL lub null, gdy połączenie go nie udostępnia. */
+    private CopyManager copyManager(Connection conn) {
+        try {
+            return conn.isWrapperFor(PGConnection.class) ? conn.unwrap(PGConnection.class).getCopyAPI() : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ładuje kategorie, produkty, stany magazynowe i ceny poleceniem COPY (format tekstowy).
+     *
+     * @return Liczba bajtów wysłanych do serwera.
+     */
+    private long copyAll(CopyManager copyManager, List<DataPoint> data, Map<String, Integer> categoryIds) throws SQLException {
+        CopyWriter categories = new CopyWriter(copyManager.copyIn("COPY kategorie (id, nazwa) FROM STDIN"));
+        try (categories) {
+            for (Map.Entry<String, Integer> e : categoryIds.entrySet()) {
+                categories.value(e.getValue()).text(e.getKey()).endRow();
+            }
+        }
+        CopyWriter products = new CopyWriter(copyManager.copyIn("COPY produkty (id, nazwa, kategoria_id) FROM STDIN"));
+        try (products) {
+            for (int i = 0; i < data.size(); i++) {
+                DataPoint dp = data.get(i);
+                products.value(i + 1).text(dp.getProduct()).value(categoryIds.get(dp.getCategory())).endRow();
+            }
+        }
+        CopyWriter stock = new CopyWriter(copyManager.copyIn("COPY magazyn (produkt_id, ilosc, dostepnosc) FROM STDIN"));
+        try (stock) {
+            for (int i = 0; i < data.size(); i++) {
+                DataPoint dp = data.get(i);
+                stock.value(i + 1).value(dp.getQuantity()).value(dp.isAvailable() ? "t" : "f").endRow();
+            }
+        }
+        CopyWriter prices = new CopyWriter(copyManager.copyIn("COPY cennik (produkt_id, cena) FROM STDIN"));
+        try (prices) {
+            for (int i = 0; i < data.size(); i++) {
+                prices.value(i + 1).value(data.get(i).getPrice()).endRow();
+            }
+        }
+        return categories.sent + products.sent + stock.sent + prices.sent;
+    }
+
+    /** Ścieżka zapasowa: wsadowe INSERT-y z identyfikatorami nadanymi po stronie klienta. */
+    private void batchInsertAll(Connection conn, List<DataPoint> data, Map<String, Integer> categoryIds) throws SQLException {
+        try (PreparedStatement insertCat = conn.prepareStatement("INSERT INTO kategorie (id, nazwa) VALUES (?, ?)")) {
+            for (Map.Entry<String, Integer> e : categoryIds.entrySet()) {
+                insertCat.setInt(1, e.getValue());
+                insertCat.setString(2, e.getKey());
+                insertCat.addBatch();
+            }
+            insertCat.executeBatch();
+        }
+
+        try (PreparedStatement insertProd = conn.prepareStatement("INSERT INTO produkty (id, nazwa, kategoria_id) VALUES (?, ?, ?)");
+             PreparedStatement insertStock = conn.prepareStatement("INSERT INTO magazyn (produkt_id, ilosc, dostepnosc) VALUES (?, ?, ?)");
+             PreparedStatement insertPrice = conn.prepareStatement("INSERT INTO cennik (produkt_id, cena) VALUES (?, ?)")) {
+            for (int i = 0; i < data.size(); i++) {
+                DataPoint dp = data.get(i);
+                insertProd.setInt(1, i + 1);
+                insertProd.setString(2, dp.getProduct());
+                insertProd.setInt(3, categoryIds.get(dp.getCategory()));
+                insertProd.addBatch();
+
+                insertStock.setInt(1, i + 1);
+                insertStock.setInt(2, dp.getQuantity());
+                insertStock.setBoolean(3, dp.isAvailable());
+                insertStock.addBatch();
+
+                insertPrice.setInt(1, i + 1);
+                insertPrice.setDouble(2, dp.getPrice());
+                insertPrice.addBatch();
+
+                // Wysyłanie paczkami, aby nie gromadzić całego zbioru w buforach sterownika
+                if ((i + 1) % BATCH_SIZE == 0 || i == data.size() - 1) {
+                    insertProd.executeBatch(); // produkty przed tabelami zależnymi (klucze obce)
+                    insertStock.executeBatch();
+                    insertPrice.executeBatch();
+                }
+            }
+        }
+    }
+
+    /** Ustawia sekwencję kolumny id tabeli tak, aby kolejny nextval zwrócił lastId + 1. */
+    private void setSequence(Connection conn, String table, int lastId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT setval(pg_get_serial_sequence(?, 'id'), ?, ?)")) {
+            stmt.setString(1, table);
+            stmt.setLong(2, Math.max(lastId, 1));
+            stmt.setBoolean(3, lastId > 0);
+            stmt.execute();
+        }
+    }
+
+    /**
+     * Strumieniowy zapis wierszy w tekstowym formacie COPY (kolumny rozdzielone tabulatorem).
+     * Dane wysyłane są do serwera porcjami, bez budowania całego wsadu w pamięci.
+     */
+    private static final class CopyWriter implements AutoCloseable {
+        private static final int FLUSH_SIZE = 64 * 1024;
+
+        private final CopyIn copyIn;
+        private final StringBuilder row = new StringBuilder(FLUSH_SIZE + 1024);
+        private boolean firstColumn = true;
+
+        /** Liczba bajtów wysłanych dotąd do serwera. */
+        long sent;
+
+        CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        CopyWriter value(int v) {
+            separator();
+            row.append(v);
+            return this;
+        }
+
+        CopyWriter value(double v) {
+            separator();
+            row.append(v);
+            return this;
+        }
+
+        CopyWriter value(String v) {
+            separator();
+            row.append(v);
+            return this;
+        }
+
+        /** Tekst z ucieczką znaków specjalnych formatu COPY (\, tabulator, nowa linia). */
+        CopyWriter text(String v) {
+            separator();
+            if (v == null) { row.append("\\N"); return this; }
+            for (int i = 0; i < v.length(); i++) {
+                char c = v.charAt(i);
+                switch (c) {
+                    case '\\': row.append("\\\\"); break;
+                    case '\t': row.append("\\t"); break;
+                    case '\n': row.append("\\n"); break;
+                    case '\r': row.append("\\r"); break;
+                    default: row.append(c);
+                }
+            }
+            return this;
+        }
+
+        void endRow() throws SQLException {
+            row.append('\n');
+            firstColumn = true;
+            if (row.length() >= FLUSH_SIZE) flush();
+        }
+
+        private void separator() {
+            if (!firstColumn) row.append('\t');
+            firstColumn = false;
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            sent += bytes.length;
+            row.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) copyIn.cancelCopy();
+            }
         }
     }
 
@@ -121,31 +511,82 @@ public class DatabaseService {
      */
     public List<DataPoint> loadFromDatabase() throws SQLException {
         List<DataPoint> list = new ArrayList<>();
+        streamProducts(list::add, null);
+        return list;
+    }
+
+    /**
+     * Tworzy źródło dla potoku importu ({@link ImportPipeline}) czytające produkty z bazy strumieniowo.
+     * Widok otrzymuje pierwsze wiersze po pobraniu pierwszej porcji kursora, a nie całej tabeli.
+     *
+     * @return Źródło publikujące produkty wraz z (szacowanym) postępem odczytu.
+     */
+    public ImportSource source() {
+        return (sink, progress) -> {
+            try {
+                streamProducts(sink, progress);
+            } catch (SQLException e) {
+                throw new IOException("Błąd odczytu z bazy: " + e.getMessage(), e);
+            }
+        };
+    }
 
-        // Zapytanie złączeniowe (JOIN) pobierające komplet danych o produkcie
-        String query = "SELECT p.nazwa AS produkt, k.nazwa AS kategoria, " +
-                "m.ilosc, m.dostepnosc, c.cena " +
-                "FROM produkty p " +
-                "JOIN kategorie k ON p.kategoria_id = k.id " +
-                "JOIN magazyn m ON p.id = m.produkt_id " +
-                "JOIN cennik c ON p.id = c.produkt_id";
+    /**
+     * Czyta złączenie 4 tabel kursorem serwerowym i przekazuje produkty do odbiorcy.
+     * <p>
+     * Sterownik PostgreSQL pobiera wiersze porcjami po {@link #FETCH_SIZE} tylko przy wyłączonym
+     * auto-commit - w przeciwnym razie buforuje cały wynik w pamięci przed pierwszym {@code rs.next()}.
+     * Kolumny odczytywane są po indeksie, bez wyszukiwania nazw w każdym wierszu.
+     * </p>
+     */
+    private void streamProducts(Consumer<DataPoint> sink, DoubleConsumer progress) throws SQLException {
+        try (OperationTimer.Sample sample = LOAD_TIMER.start();
+             Connection conn = pool.getConnection()) {
+            conn.setAutoCommit(false); // Warunek działania kursora (pula przywraca auto-commit po zwrocie)
+            long estimate = progress != null ? estimateProductCount(conn) : 0;
 
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
+            try (PreparedStatement stmt = conn.prepareStatement(PRODUCT_QUERY)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    StringPool names = new StringPool();
+                    long rows = 0;
+                    while (rs.next()) {
+                        sink.accept(readProduct(rs, names));
+                        rows++;
 
-            while (rs.next()) {
-                // Mapowanie wyniku SQL na obiekt Java
-                list.add(new DataPoint(
-                        rs.getString("produkt"),
-                        rs.getString("kategoria"),
-                        rs.getInt("ilosc"),
-                        rs.getDouble("cena"),
-                        rs.getBoolean("dostepnosc")
-                ));
+                        if (progress != null && rows % FETCH_SIZE == 0) {
+                            progress.accept(estimate > 0 ? Math.min(1.0, (double) rows / estimate) : -1);
+                        }
+                    }
+                    sample.rows(rows);
+                }
             }
+            conn.commit(); // Zamknięcie transakcji tylko do odczytu (po błędzie wycofuje ją pula)
+        }
+    }
+
+    /**
+     * Mapowanie wiersza {@link #PRODUCT_QUERY} na obiekt Java (kolumny po indeksie, kolejność jak w SELECT).
+     * Sterownik tworzy nowy napis w każdym wierszu - powtórzone nazwy produktów są zastępowane egzemplarzem z puli.
+     */
+    private static DataPoint readProduct(ResultSet rs, StringPool names) throws SQLException {
+        DataPoint dp = new DataPoint(
+                names.intern(rs.getString(2)),
+                rs.getString(3),
+                rs.getInt(4),
+                rs.getDouble(6),
+                rs.getBoolean(5)
+        );
+        dp.setId(rs.getInt(1)); // Identyfikator potrzebny do zapisu różnicowego
+        return dp;
+    }
+
+    /** Szacunkowa liczba produktów ze statystyk planisty (bez kosztownego COUNT(*)); 0 gdy nieznana. */
+    private long estimateProductCount(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT reltuples FROM pg_class WHERE oid = 'produkty'::regclass");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? Math.max(0, (long) rs.getFloat(1)) : 0;
         }
-        return list;
     }
 
     // ==========================================
@@ -156,12 +597,14 @@ public class DatabaseService {
     public List<String> getAllCategories() throws SQLException {
         List<String> categories = new ArrayList<>();
         String sql = "SELECT nazwa FROM kategorie ORDER BY nazwa";
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+        try (OperationTimer.Sample sample = CATEGORY_LIST_TIMER.start();
+             Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql); // zapytanie przygotowane trafia do cache puli
+             ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
                 categories.add(rs.getString("nazwa"));
             }
+            sample.rows(categories.size());
         }
         return categories;
     }
@@ -169,31 +612,163 @@ public class DatabaseService {
     /** Dodaje nową kategorię do bazy. */
     public void addCategory(String name) throws SQLException {
         String sql = "INSERT INTO kategorie (nazwa) VALUES (?)";
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+        try (OperationTimer.Sample sample = CATEGORY_ADD_TIMER.start();
+             Connection conn = pool.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, name);
-            pstmt.executeUpdate();
+            sample.rows(pstmt.executeUpdate());
         }
     }
 
     /** Aktualizuje nazwę istniejącej kategorii. */
     public void updateCategory(String oldName, String newName) throws SQLException {
         String sql = "UPDATE kategorie SET nazwa = ? WHERE nazwa = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+        try (OperationTimer.Sample sample = CATEGORY_UPDATE_TIMER.start();
+             Connection conn = pool.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, newName);
             pstmt.setString(2, oldName);
-            pstmt.executeUpdate();
+            sample.rows(pstmt.executeUpdate());
         }
     }
 
     /** Usuwa kategorię z bazy danych. */
     public void deleteCategory(String name) throws SQLException {
         String sql = "DELETE FROM kategorie WHERE nazwa = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASS);
+        try (OperationTimer.Sample sample = CATEGORY_DELETE_TIMER.start();
+             Connection conn = pool.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, name);
-            pstmt.executeUpdate();
+            sample.rows(pstmt.executeUpdate());
+        }
+    }
+
+    // ==========================================
+    // 3. STRONICOWANIE PRODUKTÓW (KEYSET)
+    // ==========================================
+
+    /**
+     * Liczy produkty spełniające filtr (pusty filtr = wszystkie produkty).
+     *
+     * @param filter Fragment nazwy produktu lub kategorii (bez rozróżniania wielkości liter).
+     * @return Liczba produktów.
+     * @throws SQLException Błąd zapytania SQL.
+     */
+    public long countProducts(String filter) throws SQLException {
+        boolean filtered = filter != null && !filter.isEmpty();
+        // Bez filtra wystarczy tabela produkty (stan i cena są w relacji 1:1)
+        String sql = filtered
+                ? "SELECT count(*) FROM produkty p JOIN kategorie k ON p.kategoria_id = k.id WHERE " + FILTER_CONDITION
+                : "SELECT count(*) FROM produkty";
+        try (OperationTimer.Sample sample = COUNT_TIMER.start();
+             Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (filtered) bindFilter(stmt, 1, filter);
+            try (ResultSet rs = stmt.executeQuery()) {
+                long count = rs.next() ? rs.getLong(1) : 0;
+                sample.rows(count); // Liczba wierszy objętych zapytaniem
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Pobiera stronę produktów następującą bezpośrednio po podanym wierszu (lub pierwszą stronę).
+     * Warunek {@code (kolumna, id) > (?, ?)} pozwala bazie zacząć odczyt od miejsca w indeksie,
+     * więc koszt nie rośnie wraz z numerem strony.
+     *
+     * @param sort      Kolumna sortowania.
+     * @param ascending Kierunek sortowania.
+     * @param filter    Filtr nazwy/kategorii (pusty = brak).
+     * @param after     Ostatni wiersz poprzedniej strony (null = początek listy).
+     * @param limit     Rozmiar strony.
+     * @return Produkty w porządku sortowania.
+     * @throws SQLException Błąd zapytania SQL.
+     */
+    public List<DataPoint> loadPageAfter(ProductSort sort, boolean ascending, String filter,
+                                         DataPoint after, int limit) throws SQLException {
+        return loadPage(sort, ascending, filter, after, limit, 0);
+    }
+
+    /**
+     * Pobiera stronę produktów kończącą się bezpośrednio przed podanym wierszem
+     * (przewijanie w górę od znanej strony).
+     *
+     * @param before Pierwszy wiersz następnej strony.
+     * @return Produkty w porządku sortowania.
+     * @throws SQLException Błąd zapytania SQL.
+     * @see #loadPageAfter
+     */
+    public List<DataPoint> loadPageBefore(ProductSort sort, boolean ascending, String filter,
+                                          DataPoint before, int limit) throws SQLException {
+        // Odczyt w odwrotnym kierunku od wiersza granicznego, a następnie odwrócenie wyniku
+        List<DataPoint> page = loadPage(sort, !ascending, filter, before, limit, 0);
+        Collections.reverse(page);
+        return page;
+    }
+
+    /**
+     * Pobiera stronę zaczynającą się od podanej pozycji ({@code OFFSET}) - używane tylko przy skoku
+     * w miejsce listy, dla którego nie jest znany sąsiedni wiersz graniczny.
+     *
+     * @param offset Pozycja pierwszego wiersza strony.
+     * @return Produkty w porządku sortowania.
+     * @throws SQLException Błąd zapytania SQL.
+     * @see #loadPageAfter
+     */
+    public List<DataPoint> loadPageAt(ProductSort sort, boolean ascending, String filter,
+                                      long offset, int limit) throws SQLException {
+        return loadPage(sort, ascending, filter, null, limit, offset);
+    }
+
+    /** Wspólna implementacja zapytań o stronę (keyset albo OFFSET). */
+    private List<DataPoint> loadPage(ProductSort sort, boolean ascending, String filter,
+                                     DataPoint anchor, int limit, long offset) throws SQLException {
+        boolean filtered = filter != null && !filter.isEmpty();
+        String dir = ascending ? "ASC" : "DESC";
+
+        StringBuilder sql = new StringBuilder(PRODUCT_QUERY);
+        List<String> conditions = new ArrayList<>();
+        if (anchor != null) {
+            String op = ascending ? ">" : "<";
+            conditions.add(sort.tieBreaker == null
+                    ? sort.column + " " + op + " ?"
+                    : "(" + sort.column + ", " + sort.tieBreaker + ") " + op + " (?, ?)");
+        }
+        if (filtered) conditions.add(FILTER_CONDITION);
+        if (!conditions.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        sql.append(" ORDER BY ").append(sort.column).append(' ').append(dir);
+        if (sort.tieBreaker != null) sql.append(", ").append(sort.tieBreaker).append(' ').append(dir);
+        sql.append(" LIMIT ?");
+        if (offset > 0) sql.append(" OFFSET ?");
+
+        List<DataPoint> page = new ArrayList<>(limit);
+        try (OperationTimer.Sample sample = PAGE_TIMER.start();
+             Connection conn = pool.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            if (anchor != null) {
+                stmt.setObject(i++, sort.keyOf(anchor));
+                if (sort.tieBreaker != null) stmt.setInt(i++, anchor.getId());
+            }
+            if (filtered) i = bindFilter(stmt, i, filter);
+            stmt.setInt(i++, limit);
+            if (offset > 0) stmt.setLong(i, offset);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                StringPool names = new StringPool();
+                while (rs.next()) page.add(readProduct(rs, names));
+            }
+            sample.rows(page.size());
         }
+        return page;
+    }
+
+    /** Ustawia parametry {@link #FILTER_CONDITION}; zwraca indeks kolejnego parametru. */
+    private static int bindFilter(PreparedStatement stmt, int index, String filter) throws SQLException {
+        String pattern = "%" + filter.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        stmt.setString(index, pattern);
+        stmt.setString(index + 1, pattern);
+        return index + 2;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,271 @@
+package pl.analiza.service;
+
+import pl.analiza.service.ColumnIndex.Comparison;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Strukturalny filtr produktów, np. {@code category = Nabiał AND price > 5 AND available}.
+ * <p>
+ * Składnia (słowa kluczowe bez względu na wielkość liter):
+ * <pre>
+ *   wyrażenie := składnik { (OR | LUB) składnik }
+ *   składnik  := czynnik { (AND | I) czynnik }
+ *   czynnik   := (NOT | NIE) czynnik | "(" wyrażenie ")" | warunek
+ *   warunek   := available | pole operator wartość
+ * </pre>
+ * Pola: {@code category}/{@code kategoria} (operatory =, !=, ~ - "zawiera"),
+ * {@code price}/{@code cena} i {@code quantity}/{@code ilość} (=, !=, &lt;, &lt;=, &gt;, &gt;=),
+ * {@code available}/{@code dostępny} (= true/false, tak/nie). Wartości z odstępami
+ * zapisuje się w cudzysłowie.
+ * </p>
+ * <p>
+ * Filtr jest kompilowany raz do drzewa warunków, a wykonywany na kolumnach zbioru ({@link ColumnFilter}):
+ * każdy warunek zwraca mapę bitową wierszy, łączoną operacjami AND/OR/NOT.
+ * Błąd składni zgłaszany jest jako {@link IllegalArgumentException} z opisem.
+ * </p>
+ */
+public final class FilterQuery {
+
+    private final String text;
+    private final Node root;
+
+    private FilterQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Kompiluje tekst filtra.
+     *
+     * @param text Tekst filtra.
+     * @return Skompilowany filtr.
+     * @throws IllegalArgumentException Gdy tekst jest niepoprawny.
+     */
+    public static FilterQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.expression();
+        if (!parser.atEnd()) throw new IllegalArgumentException("Nieoczekiwany element filtra: " + parser.peek().text);
+        return new FilterQuery(text, root);
+    }
+
+    /**
+     * Wyznacza wiersze spełniające filtr.
+     *
+     * @param index Indeks kolumn zbioru danych ({@link ColumnIndex}) lub zbiór poza stertą ({@link OffHeapDataset}).
+     * @return Mapa bitowa numerów pasujących wierszy.
+     */
+    public BitSet evaluate(ColumnFilter index) {
+        return root.eval(index);
+    }
+
+    @Override
+    public String toString() { return text; }
+
+    /** Węzeł drzewa filtra. */
+    private interface Node {
+        BitSet eval(ColumnFilter index);
+    }
+
+    // --- ANALIZA LEKSYKALNA ---
+
+    private enum TokenType { WORD, STRING, OPERATOR, LPAREN, RPAREN }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+
+        Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        boolean isKeyword(String... words) {
+            if (type != TokenType.WORD) return false;
+            for (String w : words) {
+                if (text.equalsIgnoreCase(w)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0, n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, ")"));
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int end = text.indexOf(c, i + 1);
+                if (end < 0) throw new IllegalArgumentException("Niezamknięty cudzysłów w filtrze.");
+                tokens.add(new Token(TokenType.STRING, text.substring(i + 1, end)));
+                i = end + 1;
+            } else if ("=!<>~".indexOf(c) >= 0) {
+                int start = i++;
+                if (i < n && (text.charAt(i) == '=' || (c == '<' && text.charAt(i) == '>'))) i++;
+                tokens.add(new Token(TokenType.OPERATOR, text.substring(start, i)));
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(text.charAt(i)) && "()=!<>~\"'".indexOf(text.charAt(i)) < 0) i++;
+                tokens.add(new Token(TokenType.WORD, text.substring(start, i)));
+            }
+        }
+        return tokens;
+    }
+
+    // --- ANALIZA SKŁADNIOWA ---
+
+    private static final class Parser {
+        private final List<Token> tokens;
+        private int pos;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() { return pos >= tokens.size(); }
+
+        Token peek() { return atEnd() ? null : tokens.get(pos); }
+
+        Token next() {
+            if (atEnd()) throw new IllegalArgumentException("Niekompletny filtr.");
+            return tokens.get(pos++);
+        }
+
+        Node expression() {
+            Node left = term();
+            while (!atEnd() && peek().isKeyword("OR", "LUB")) {
+                pos++;
+                Node l = left, r = term();
+                left = index -> {
+                    BitSet bits = l.eval(index);
+                    bits.or(r.eval(index));
+                    return bits;
+                };
+            }
+            return left;
+        }
+
+        Node term() {
+            Node left = factor();
+            while (!atEnd() && peek().isKeyword("AND", "I")) {
+                pos++;
+                Node l = left, r = factor();
+                left = index -> {
+                    BitSet bits = l.eval(index);
+                    bits.and(r.eval(index));
+                    return bits;
+                };
+            }
+            return left;
+        }
+
+        Node factor() {
+            Token t = next();
+            if (t.isKeyword("NOT", "NIE")) {
+                Node inner = factor();
+                return index -> {
+                    BitSet bits = inner.eval(index);
+                    bits.flip(0, index.size());
+                    return bits;
+                };
+            }
+            if (t.type == TokenType.LPAREN) {
+                Node inner = expression();
+                if (next().type != TokenType.RPAREN) throw new IllegalArgumentException("Brak nawiasu zamykającego.");
+                return inner;
+            }
+            if (t.type != TokenType.WORD) throw new IllegalArgumentException("Oczekiwano nazwy pola zamiast: " + t.text);
+            return condition(t.text.toLowerCase(Locale.ROOT));
+        }
+
+        private Node condition(String field) {
+            switch (field) {
+                case "available": case "dostępny": case "dostepny": case "dostępność": case "dostepnosc":
+                    if (atEnd() || peek().type != TokenType.OPERATOR) return index -> index.available(true);
+                    return availability();
+                case "category": case "kategoria":
+                    return category();
+                case "price": case "cena":
+                    return range(field, (index, op, v) -> index.price(op, v));
+                case "quantity": case "ilość": case "ilosc":
+                    return range(field, (index, op, v) -> index.quantity(op, v));
+                default:
+                    throw new IllegalArgumentException("Nieznane pole filtra: " + field);
+            }
+        }
+
+        private Node availability() {
+            Comparison op = comparison(next());
+            if (op != Comparison.EQ && op != Comparison.NE) throw new IllegalArgumentException("Dostępność obsługuje tylko = i !=.");
+            String v = value().toLowerCase(Locale.ROOT);
+            boolean flag;
+            if (v.equals("true") || v.equals("tak") || v.equals("1")) flag = true;
+            else if (v.equals("false") || v.equals("nie") || v.equals("0")) flag = false;
+            else throw new IllegalArgumentException("Niepoprawna wartość dostępności: " + v);
+            boolean expected = op == Comparison.EQ ? flag : !flag;
+            return index -> index.available(expected);
+        }
+
+        private Node category() {
+            Token opToken = next();
+            String value = value();
+            if (opToken.text.equals("~")) return index -> index.categoryContains(value);
+            Comparison op = comparison(opToken);
+            if (op == Comparison.EQ) return index -> index.categoryEquals(value);
+            if (op == Comparison.NE) return index -> {
+                BitSet bits = index.categoryEquals(value);
+                bits.flip(0, index.size());
+                return bits;
+            };
+            throw new IllegalArgumentException("Kategoria obsługuje tylko =, != i ~.");
+        }
+
+        private Node range(String field, RangeLookup lookup) {
+            Comparison op = comparison(next());
+            String raw = value();
+            double v;
+            try {
+                v = Double.parseDouble(raw.replace(",", "."));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Pole " + field + " wymaga liczby zamiast: " + raw);
+            }
+            return index -> lookup.select(index, op, v);
+        }
+
+        private String value() {
+            Token t = next();
+            if (t.type != TokenType.WORD && t.type != TokenType.STRING) throw new IllegalArgumentException("Oczekiwano wartości zamiast: " + t.text);
+            return t.text;
+        }
+
+        private static Comparison comparison(Token t) {
+            if (t.type == TokenType.OPERATOR) {
+                switch (t.text) {
+                    case "=": case "==": return Comparison.EQ;
+                    case "!=": case "<>": return Comparison.NE;
+                    case "<": return Comparison.LT;
+                    case "<=": return Comparison.LE;
+                    case ">": return Comparison.GT;
+                    case ">=": return Comparison.GE;
+                    default: break;
+                }
+            }
+            throw new IllegalArgumentException("Oczekiwano operatora porównania zamiast: " + t.text);
+        }
+    }
+
+    private interface RangeLookup {
+        BitSet select(ColumnFilter index, Comparison op, double value);
+    }
+}
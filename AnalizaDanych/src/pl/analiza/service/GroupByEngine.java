@@ -0,0 +1,315 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+import pl.analiza.model.GroupByResult;
+import pl.analiza.model.GroupRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Silnik grupowania (GROUP BY) i tabel przestawnych dla zbioru produktów.
+ * <p>
+ * Grupowanie odbywa się w jednym przebiegu po danych (agregacja haszująca):
+ * <ol>
+ *     <li>każdy klucz zamienia produkt na kod całkowity ({@link GroupKey} - kodowanie słownikowe),</li>
+ *     <li>kody kolejnych kluczy łączone są w numer grupy przez tablice haszujące par
+ *         (numer grupy poprzednich kluczy, kod klucza) z adresowaniem otwartym na typach prostych,</li>
+ *     <li>miary akumulowane są w tablicach indeksowanych numerem grupy (liczby, sumy z kompensacją,
+ *         minima i maksima) - bez obiektów na wiersz ani na grupę.</li>
+ * </ol>
+ * Koszt jest liniowy względem liczby wierszy, a pamięć zależy tylko od liczby grup.
+ * Warianty z parametrami {@code cancelled} i {@code progress} sprawdzają anulowanie i zgłaszają
+ * postęp co blok wierszy - przerwane grupowanie kończy się {@link java.util.concurrent.CancellationException}.
+ * </p>
+ */
+public class GroupByEngine {
+
+    /**
+     * Grupuje produkty według kluczy i wylicza miary dla każdej grupy.
+     *
+     * @param data     Lista produktów.
+     * @param keys     Klucze grupowania (co najmniej jeden).
+     * @param measures Miary wyliczane dla grup.
+     * @return Wynik: kolumny kluczy i miar, wiersze posortowane według kluczy.
+     */
+    public GroupByResult groupBy(List<? extends DataPoint> data, List<GroupKey> keys, List<Measure> measures) {
+        return groupBy(data, keys, measures, null, null);
+    }
+
+    /**
+     * Grupuje produkty z możliwością anulowania i zgłaszaniem postępu.
+     *
+     * @param cancelled Czy grupowanie zostało anulowane (null - bez sprawdzania).
+     * @param progress  Odbiorca postępu w zakresie 0-1 (null - bez zgłaszania).
+     * @see #groupBy(List, List, List)
+     */
+    public GroupByResult groupBy(List<? extends DataPoint> data, List<GroupKey> keys, List<Measure> measures,
+                                 BooleanSupplier cancelled, DoubleConsumer progress) {
+        return groupBy(data, keys, measures, new BlockProgress(cancelled, progress, data.size()));
+    }
+
+    /** Grupowanie dla innych usług (np. wykresu), które prowadzą własny postęp obejmujący kilka przebiegów. */
+    GroupByResult groupBy(List<? extends DataPoint> data, List<GroupKey> keys, List<Measure> measures, BlockProgress monitor) {
+        if (keys.isEmpty()) throw new IllegalArgumentException("Wymagany co najmniej jeden klucz grupowania.");
+        Aggregation agg = aggregate(data, keys, measures, monitor);
+
+        List<GroupRow> rows = new ArrayList<>(agg.groupCount());
+        String[] labels = new String[keys.size()];
+        double[] values = new double[measures.size()];
+        for (int g : agg.sortedGroups()) {
+            for (int k = 0; k < labels.length; k++) labels[k] = agg.encoders[k].label(agg.code(k, g));
+            for (int m = 0; m < values.length; m++) values[m] = agg.value(g, measures.get(m));
+            rows.add(new GroupRow(labels, values));
+        }
+
+        List<String> keyNames = new ArrayList<>();
+        for (GroupKey key : keys) keyNames.add(key.getName());
+        List<String> valueNames = new ArrayList<>();
+        for (Measure m : measures) valueNames.add(m.getLabel());
+        return new GroupByResult(keyNames, valueNames, rows);
+    }
+
+    /**
+     * Tworzy tabelę przestawną: wiersze według jednego klucza, kolumny według drugiego,
+     * w komórkach wartość miary (NaN, gdy grupa jest pusta).
+     *
+     * @param data       Lista produktów.
+     * @param rowKey     Klucz wierszy.
+     * @param columnKey  Klucz kolumn.
+     * @param measure    Miara w komórkach.
+     * @return Wynik: kolumna klucza wierszy i kolumny kolejnych wartości klucza kolumn.
+     */
+    public GroupByResult pivot(List<? extends DataPoint> data, GroupKey rowKey, GroupKey columnKey, Measure measure) {
+        return pivot(data, rowKey, columnKey, measure, null, null);
+    }
+
+    /**
+     * Tworzy tabelę przestawną z możliwością anulowania i zgłaszaniem postępu.
+     *
+     * @param cancelled Czy obliczenia zostały anulowane (null - bez sprawdzania).
+     * @param progress  Odbiorca postępu w zakresie 0-1 (null - bez zgłaszania).
+     * @see #pivot(List, GroupKey, GroupKey, Measure)
+     */
+    public GroupByResult pivot(List<? extends DataPoint> data, GroupKey rowKey, GroupKey columnKey, Measure measure,
+                               BooleanSupplier cancelled, DoubleConsumer progress) {
+        Aggregation agg = aggregate(data, Arrays.asList(rowKey, columnKey), Collections.singletonList(measure),
+                new BlockProgress(cancelled, progress, data.size()));
+        GroupKey.Encoder rowEnc = agg.encoders[0], colEnc = agg.encoders[1];
+
+        // Numeracja wierszy i kolumn tabeli w kolejności wartości kluczy
+        Map<Integer, Integer> rowIndex = new HashMap<>();
+        Map<Integer, Integer> columnIndex = new HashMap<>();
+        List<Integer> rowCodes = new ArrayList<>(), columnCodes = new ArrayList<>();
+        for (int g = 0; g < agg.groupCount(); g++) {
+            if (rowIndex.putIfAbsent(agg.code(0, g), 0) == null) rowCodes.add(agg.code(0, g));
+            if (columnIndex.putIfAbsent(agg.code(1, g), 0) == null) columnCodes.add(agg.code(1, g));
+        }
+        rowCodes.sort(rowEnc::compare);
+        columnCodes.sort(colEnc::compare);
+        for (int i = 0; i < rowCodes.size(); i++) rowIndex.put(rowCodes.get(i), i);
+        for (int i = 0; i < columnCodes.size(); i++) columnIndex.put(columnCodes.get(i), i);
+
+        double[][] cells = new double[rowCodes.size()][columnCodes.size()];
+        for (double[] row : cells) Arrays.fill(row, Double.NaN);
+        for (int g = 0; g < agg.groupCount(); g++) {
+            cells[rowIndex.get(agg.code(0, g))][columnIndex.get(agg.code(1, g))] = agg.value(g, measure);
+        }
+
+        List<GroupRow> rows = new ArrayList<>(rowCodes.size());
+        for (int i = 0; i < rowCodes.size(); i++) {
+            rows.add(new GroupRow(new String[] { rowEnc.label(rowCodes.get(i)) }, cells[i]));
+        }
+        List<String> valueNames = new ArrayList<>();
+        for (int code : columnCodes) valueNames.add(colEnc.label(code));
+        return new GroupByResult(Collections.singletonList(rowKey.getName()), valueNames, rows);
+    }
+
+    private static Aggregation aggregate(List<? extends DataPoint> data, List<GroupKey> keys, List<Measure> measures,
+                                         BlockProgress monitor) {
+        Aggregation agg = new Aggregation(keys, measures);
+        for (DataPoint dp : data) {
+            agg.add(dp);
+            monitor.row();
+        }
+        monitor.check();
+        return agg;
+    }
+
+    /**
+     * Stan jednego przebiegu grupowania: kodery kluczy, numeracja grup i akumulatory miar.
+     */
+    private static final class Aggregation {
+        private static final int INITIAL_GROUPS = 64;
+
+        final GroupKey.Encoder[] encoders;
+        /** Tablice numerujące prefiksy kluczy: poziom k odwzorowuje (grupa poziomu k-1, kod) na grupę poziomu k. */
+        private final LongIntMap[] levels;
+        /** Pola potrzebne miarom (indeks = StatField.ordinal()). */
+        private final boolean[] usedFields = new boolean[StatField.values().length];
+
+        private long[] counts = new long[INITIAL_GROUPS];
+        private final double[][] sums = new double[usedFields.length][];
+        private final double[][] compensations = new double[usedFields.length][];
+        private final double[][] mins = new double[usedFields.length][];
+        private final double[][] maxs = new double[usedFields.length][];
+        private int groups;
+
+        Aggregation(List<GroupKey> keys, List<Measure> measures) {
+            encoders = new GroupKey.Encoder[keys.size()];
+            levels = new LongIntMap[keys.size()];
+            for (int k = 0; k < encoders.length; k++) {
+                encoders[k] = keys.get(k).newEncoder();
+                levels[k] = new LongIntMap();
+            }
+            for (Measure m : measures) {
+                if (m.getField() != null) usedFields[m.getField().ordinal()] = true;
+            }
+            for (int f = 0; f < usedFields.length; f++) {
+                if (!usedFields[f]) continue;
+                sums[f] = new double[INITIAL_GROUPS];
+                compensations[f] = new double[INITIAL_GROUPS];
+                mins[f] = new double[INITIAL_GROUPS];
+                maxs[f] = new double[INITIAL_GROUPS];
+            }
+        }
+
+        void add(DataPoint dp) {
+            int g = 0;
+            for (int k = 0; k < encoders.length; k++) {
+                long pair = ((long) g << 32) | (encoders[k].code(dp) & 0xFFFFFFFFL);
+                g = levels[k].getOrAdd(pair);
+            }
+            if (g == groups) newGroup();
+
+            counts[g]++;
+            for (int f = 0; f < usedFields.length; f++) {
+                if (!usedFields[f]) continue;
+                double v = valueOf(dp, f);
+                double[] sum = sums[f];
+                double t = sum[g] + v;
+                compensations[f][g] += Math.abs(sum[g]) >= Math.abs(v) ? (sum[g] - t) + v : (v - t) + sum[g];
+                sum[g] = t;
+                if (counts[g] == 1 || v < mins[f][g]) mins[f][g] = v;
+                if (counts[g] == 1 || v > maxs[f][g]) maxs[f][g] = v;
+            }
+        }
+
+        private static double valueOf(DataPoint dp, int field) {
+            if (field == StatField.QUANTITY.ordinal()) return dp.getQuantity();
+            if (field == StatField.PRICE.ordinal()) return dp.getPrice();
+            return dp.getTotalValue();
+        }
+
+        private void newGroup() {
+            if (groups == counts.length) {
+                int capacity = groups * 2;
+                counts = Arrays.copyOf(counts, capacity);
+                for (int f = 0; f < usedFields.length; f++) {
+                    if (!usedFields[f]) continue;
+                    sums[f] = Arrays.copyOf(sums[f], capacity);
+                    compensations[f] = Arrays.copyOf(compensations[f], capacity);
+                    mins[f] = Arrays.copyOf(mins[f], capacity);
+                    maxs[f] = Arrays.copyOf(maxs[f], capacity);
+                }
+            }
+            groups++;
+        }
+
+        int groupCount() { return groups; }
+
+        /** Kod k-tego klucza grupy g (odczytany wstecz po poziomach numeracji). */
+        int code(int k, int g) {
+            for (int level = encoders.length - 1; level > k; level--) {
+                g = (int) (levels[level].keyOf(g) >>> 32);
+            }
+            return (int) levels[k].keyOf(g);
+        }
+
+        double value(int g, Measure m) {
+            if (m.getFunction() == AggregateFunction.COUNT) return counts[g];
+            int f = m.getField().ordinal();
+            switch (m.getFunction()) {
+                case SUM: return sums[f][g] + compensations[f][g];
+                case AVERAGE: return (sums[f][g] + compensations[f][g]) / counts[g];
+                case MIN: return mins[f][g];
+                case MAX: return maxs[f][g];
+                default: return Double.NaN;
+            }
+        }
+
+        /** Numery grup w kolejności wartości kluczy (porównanie kolejnych kluczy). */
+        Integer[] sortedGroups() {
+            Integer[] order = new Integer[groups];
+            for (int g = 0; g < groups; g++) order[g] = g;
+            int[][] codes = new int[encoders.length][groups];
+            for (int k = 0; k < encoders.length; k++) {
+                for (int g = 0; g < groups; g++) codes[k][g] = code(k, g);
+            }
+            Arrays.sort(order, (a, b) -> {
+                for (int k = 0; k < encoders.length; k++) {
+                    int c = encoders[k].compare(codes[k][a], codes[k][b]);
+                    if (c != 0) return c;
+                }
+                return 0;
+            });
+            return order;
+        }
+    }
+
+    /**
+     * Tablica haszująca long -> int z adresowaniem otwartym, nadająca kluczom kolejne numery od 0.
+     */
+    private static final class LongIntMap {
+        private long[] keys = new long[16];
+        private int[] ids = new int[16];
+        private long[] byId = new long[16];
+        private int size;
+
+        /** Zwraca numer klucza, nadając kolejny numer nowemu kluczowi. */
+        int getOrAdd(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (ids[i] != 0) {
+                if (keys[i] == key) return ids[i] - 1;
+                i = (i + 1) & mask;
+            }
+            // Numery przechowywane jako id + 1 (0 = pusta komórka)
+            keys[i] = key;
+            ids[i] = size + 1;
+            if (size == byId.length) byId = Arrays.copyOf(byId, size * 2);
+            byId[size] = key;
+            int id = size++;
+            if (size * 2 > keys.length) rehash();
+            return id;
+        }
+
+        long keyOf(int id) { return byId[id]; }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[oldKeys.length * 2];
+            ids = new int[oldIds.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldIds[j] == 0) continue;
+                int i = hash(oldKeys[j]) & mask;
+                while (ids[i] != 0) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                ids[i] = oldIds[j];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
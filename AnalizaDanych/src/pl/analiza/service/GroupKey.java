@@ -0,0 +1,169 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Klucz grupowania produktów dla {@link GroupByEngine}.
+ * <p>
+ * Klucz zamienia produkt na kod całkowity (kodowanie słownikowe): kategoria otrzymuje
+ * kolejny numer ze słownika budowanego podczas przebiegu, dostępność - 0 lub 1,
+ * a ilość i cena - numer przedziału. Silnik grupuje po kodach, a etykiety tworzy
+ * dopiero dla gotowych grup. Obiekty tej klasy są niemutowalne.
+ * </p>
+ */
+public abstract class GroupKey {
+
+    private final String name;
+
+    private GroupKey(String name) {
+        this.name = name;
+    }
+
+    /** @return Nazwa klucza (nagłówek kolumny wyniku). */
+    public String getName() { return name; }
+
+    @Override
+    public String toString() { return name; }
+
+    /** Tworzy koder na jeden przebieg grupowania (koder kategorii ma własny słownik). */
+    abstract Encoder newEncoder();
+
+    /**
+     * Koder wartości klucza na kody całkowite.
+     */
+    interface Encoder {
+        /** @return Kod wartości klucza dla produktu. */
+        int code(DataPoint dp);
+
+        /** @return Etykieta wartości klucza o podanym kodzie. */
+        String label(int code);
+
+        /** Porównuje wartości klucza (kolejność wierszy wyniku). */
+        int compare(int a, int b);
+    }
+
+    /** @return Klucz: kategoria produktu. */
+    public static GroupKey category() {
+        return new GroupKey("Kategoria") {
+            @Override
+            Encoder newEncoder() {
+                Map<String, Integer> dictionary = new HashMap<>();
+                List<String> labels = new ArrayList<>();
+                return new Encoder() {
+                    @Override
+                    public int code(DataPoint dp) {
+                        String category = dp.getCategory() == null ? "(brak)" : dp.getCategory();
+                        Integer code = dictionary.get(category);
+                        if (code == null) {
+                            code = labels.size();
+                            dictionary.put(category, code);
+                            labels.add(category);
+                        }
+                        return code;
+                    }
+
+                    @Override
+                    public String label(int code) { return labels.get(code); }
+
+                    @Override
+                    public int compare(int a, int b) { return labels.get(a).compareTo(labels.get(b)); }
+                };
+            }
+        };
+    }
+
+    /** @return Klucz: dostępność produktu. */
+    public static GroupKey availability() {
+        return new GroupKey("Dostępność") {
+            @Override
+            Encoder newEncoder() {
+                return new Encoder() {
+                    @Override
+                    public int code(DataPoint dp) { return dp.isAvailable() ? 1 : 0; }
+
+                    @Override
+                    public String label(int code) { return code == 1 ? "Dostępny" : "Niedostępny"; }
+
+                    @Override
+                    public int compare(int a, int b) { return Integer.compare(b, a); }
+                };
+            }
+        };
+    }
+
+    /**
+     * Klucz: przedział ilości o stałej szerokości (np. 0–9, 10–19...).
+     *
+     * @param width Szerokość przedziału (liczba sztuk).
+     * @return Klucz.
+     */
+    public static GroupKey quantityBuckets(int width) {
+        if (width < 1) throw new IllegalArgumentException("Szerokość przedziału musi być dodatnia.");
+        return new GroupKey("Ilość (co " + width + ")") {
+            @Override
+            Encoder newEncoder() {
+                return new Encoder() {
+                    @Override
+                    public int code(DataPoint dp) { return Math.floorDiv(dp.getQuantity(), width); }
+
+                    @Override
+                    public String label(int code) {
+                        long from = (long) code * width;
+                        return from + "–" + (from + width - 1);
+                    }
+
+                    @Override
+                    public int compare(int a, int b) { return Integer.compare(a, b); }
+                };
+            }
+        };
+    }
+
+    /**
+     * Klucz: przedział cenowy wyznaczony granicami (np. 10, 50, 100 daje przedziały
+     * "&lt; 10", "10–50", "50–100", "≥ 100").
+     *
+     * @param bounds Granice przedziałów (rosnąco).
+     * @return Klucz.
+     */
+    public static GroupKey priceBands(double... bounds) {
+        if (bounds.length == 0) throw new IllegalArgumentException("Wymagana co najmniej jedna granica przedziału.");
+        double[] b = bounds.clone();
+        Arrays.sort(b);
+        String[] labels = new String[b.length + 1];
+        labels[0] = "< " + format(b[0]);
+        for (int i = 1; i < b.length; i++) labels[i] = format(b[i - 1]) + "–" + format(b[i]);
+        labels[b.length] = "≥ " + format(b[b.length - 1]);
+
+        return new GroupKey("Przedział cenowy") {
+            @Override
+            Encoder newEncoder() {
+                return new Encoder() {
+                    @Override
+                    public int code(DataPoint dp) {
+                        // Liczba granic nie większych od ceny = numer przedziału
+                        int i = Arrays.binarySearch(b, dp.getPrice());
+                        return i >= 0 ? i + 1 : -i - 1;
+                    }
+
+                    @Override
+                    public String label(int code) { return labels[code]; }
+
+                    @Override
+                    public int compare(int x, int y) { return Integer.compare(x, y); }
+                };
+            }
+        };
+    }
+
+    private static String format(double v) {
+        return BigDecimal.valueOf(v).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,18 @@
+package pl.analiza.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenie JFR pojedynczego importu (CSV, Excel, migawka, odczyt z bazy).
+ */
+@Name("pl.analiza.Import")
+@Label("Import danych")
+@Category({"Analiza Danych", "Operacje"})
+@Description("Wczytanie zbioru produktów: źródło, liczba wierszy i przeczytanych bajtów")
+@StackTrace(false)
+final class ImportEvent extends OperationEvent {
+}
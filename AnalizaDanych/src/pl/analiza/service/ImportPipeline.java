@@ -0,0 +1,144 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Potok importu publikujący wczytane produkty w paczkach przez {@link Flow.Publisher}.
+ * <p>
+ * Parser ({@link ImportSource}) działa w osobnym wątku i przekazuje wiersze do potoku,
+ * który grupuje je w paczki. Pierwsza paczka jest mała, aby widok mógł pokazać pierwsze
+ * wiersze niemal natychmiast; kolejne są większe, co ogranicza narzut synchronizacji.
+ * </p>
+ * <p>
+ * Bufor subskrybenta jest ograniczony ({@link #MAX_BUFFERED_BATCHES}) — gdy odbiorca nie nadąża,
+ * parser jest wstrzymywany (backpressure), więc pamięć nie rośnie ponad kilka paczek.
+ * Import można przerwać metodą {@link #cancel()}; subskrybent otrzyma wtedy
+ * {@link CancellationException} w {@code onError}.
+ * </p>
+ */
+public class ImportPipeline implements Flow.Publisher<List<DataPoint>> {
+
+    /** Rozmiar pierwszej paczki (pierwszy ekran tabeli). */
+    public static final int FIRST_BATCH_SIZE = 256;
+
+    /** Rozmiar kolejnych paczek. */
+    public static final int BATCH_SIZE = 8192;
+
+    /** Maksymalna liczba paczek oczekujących w buforze subskrybenta. */
+    public static final int MAX_BUFFERED_BATCHES = 8;
+
+    /** Odstęp, co jaki wstrzymany parser sprawdza, czy import nie został anulowany. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final ImportSource source;
+    private final Executor executor;
+    private final SubmissionPublisher<List<DataPoint>> publisher;
+
+    private volatile boolean cancelled;
+    private volatile double progress;
+    private volatile long rowCount;
+
+    /**
+     * Tworzy potok dla podanego źródła.
+     *
+     * @param source   Źródło danych (parser pliku, baza itp.).
+     * @param executor Wykonawca, w którym zostanie uruchomiony parser (nie może to być wątek GUI).
+     */
+    public ImportPipeline(ImportSource source, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+        this.publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), MAX_BUFFERED_BATCHES);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<DataPoint>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    /** Uruchamia odczyt źródła w tle. Subskrybentów należy zarejestrować wcześniej. */
+    public void start() {
+        executor.execute(this::run);
+    }
+
+    /** Przerywa import. Wiersze już opublikowane pozostają u subskrybenta. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /** @return true, jeśli import został anulowany. */
+    public boolean isCancelled() { return cancelled; }
+
+    /** @return Postęp odczytu w zakresie 0..1 (wartość ujemna, gdy nieznany). */
+    public double getProgress() { return progress; }
+
+    /** @return Liczba wierszy przekazanych dotąd do potoku. */
+    public long getRowCount() { return rowCount; }
+
+    /** Główna pętla wątku parsera. */
+    private void run() {
+        Batcher batcher = new Batcher();
+        try {
+            source.read(batcher, p -> progress = p);
+            batcher.flush();
+            progress = 1.0;
+            publisher.close();
+        } catch (CancellationException e) {
+            publisher.closeExceptionally(e);
+        } catch (Exception e) {
+            publisher.closeExceptionally(cancelled ? new CancellationException() : e);
+        } catch (Error e) {
+            // Również przy błędzie JVM (np. OutOfMemoryError) subskrybent musi dostać onError,
+            // inaczej import pozostałby na zawsze "w toku"
+            publisher.closeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Publikuje paczkę, czekając na miejsce w buforze i reagując na anulowanie.
+     */
+    private void publish(List<DataPoint> batch) {
+        while (true) {
+            if (cancelled || publisher.isClosed()) throw new CancellationException("Import anulowany.");
+            int lag = publisher.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS, (s, item) -> false);
+            if (lag >= 0) return;
+            // Brak miejsca w buforze - subskrybent nie nadąża, ponowna próba
+            if (publisher.getNumberOfSubscribers() == 0) throw new CancellationException("Brak odbiorców importu.");
+        }
+    }
+
+    /**
+     * Odbiorca wierszy grupujący je w paczki.
+     */
+    private final class Batcher implements Consumer<DataPoint> {
+        private int limit = FIRST_BATCH_SIZE;
+        private List<DataPoint> batch = new ArrayList<>(limit);
+
+        @Override
+        public void accept(DataPoint dp) {
+            if (cancelled) throw new CancellationException("Import anulowany.");
+            batch.add(dp);
+            rowCount++;
+            if (batch.size() >= limit) {
+                publish(batch);
+                limit = BATCH_SIZE;
+                batch = new ArrayList<>(limit);
+            }
+        }
+
+        void flush() {
+            if (!batch.isEmpty()) publish(batch);
+            batch = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Źródło danych dla potoku importu ({@link ImportPipeline}).
+ * <p>
+ * Implementacja czyta dane strumieniowo i przekazuje produkty do odbiorcy w kolejności źródła,
+ * zgłaszając przy tym postęp odczytu. Odbiorca może przerwać odczyt, rzucając
+ * {@link java.util.concurrent.CancellationException}.
+ * </p>
+ */
+@FunctionalInterface
+public interface ImportSource {
+
+    /**
+     * Czyta wszystkie produkty ze źródła.
+     *
+     * @param sink     Odbiorca kolejnych produktów.
+     * @param progress Odbiorca postępu w zakresie 0..1 (lub wartości ujemnej, gdy postęp jest nieznany).
+     * @throws IOException Błąd odczytu danych.
+     */
+    void read(Consumer<DataPoint> sink, DoubleConsumer progress) throws IOException;
+}
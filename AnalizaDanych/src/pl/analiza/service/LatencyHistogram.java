@@ -0,0 +1,123 @@
+package pl.analiza.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram czasów trwania o stałym błędzie względnym (układ kubełków jak w HdrHistogram).
+ * <p>
+ * Wartości (nanosekundy) trafiają do kubełków logarytmiczno-liniowych: każda potęga dwójki
+ * jest podzielona na {@value #SUB_BUCKETS_HALF} równych kubełków, więc percentyl odczytany
+ * z histogramu różni się od dokładnego o mniej niż 1/{@value #SUB_BUCKETS_HALF} (ok. 0,8%),
+ * niezależnie od rzędu wielkości - tak samo dla mikrosekund zapytania o kategorie,
+ * jak i minut importu dużego pliku. Pamięć jest stała (kilka tysięcy liczników).
+ * </p>
+ * <p>
+ * Zapis jest nieblokujący i bezpieczny wątkowo (liczniki atomowe). Odczyt w trakcie zapisu
+ * daje spójny w przybliżeniu obraz, co wystarcza do podglądu na żywo.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /** Liczba bitów mantysy kubełka (2^8 = 256 pod-kubełków). */
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKETS_HALF = SUB_BUCKETS / 2;
+
+    /** Największa rozróżniana wartość (2^42 ns, ok. 73 minuty); dłuższe czasy trafiają do ostatniego kubełka. */
+    private static final long MAX_TRACKABLE = (1L << 42) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_TRACKABLE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Zapisuje jeden pomiar.
+     *
+     * @param nanos Czas trwania w nanosekundach (wartości ujemne są traktowane jak 0).
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(index(Math.min(v, MAX_TRACKABLE)));
+        count.incrementAndGet();
+        total.addAndGet(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+            // Ponowna próba - inny wątek zapisał w międzyczasie większe maksimum
+        }
+    }
+
+    /** Zeruje histogram. */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /** @return Liczba pomiarów. */
+    public long getCount() { return count.get(); }
+
+    /** @return Suma czasów w nanosekundach. */
+    public long getTotalNanos() { return total.get(); }
+
+    /** @return Najdłuższy zapisany czas w nanosekundach (dokładny, nie z kubełka). */
+    public long getMaxNanos() { return max.get(); }
+
+    /** @return Średni czas w nanosekundach (0 przy braku pomiarów). */
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Wyznacza percentyl czasu.
+     *
+     * @param q Rząd percentyla z przedziału [0, 1] (np. 0.99).
+     * @return Czas w nanosekundach (środek kubełka, nie więcej niż maksimum; 0 przy braku pomiarów).
+     */
+    public long getPercentileNanos(double q) {
+        return getPercentilesNanos(q)[0];
+    }
+
+    /**
+     * Wyznacza kilka percentyli w jednym przebiegu po kubełkach.
+     *
+     * @param qs Rzędy percentyli w kolejności rosnącej.
+     * @return Czasy w nanosekundach w kolejności argumentów.
+     */
+    public long[] getPercentilesNanos(double... qs) {
+        long[] result = new long[qs.length];
+        long n = count.get();
+        if (n == 0) return result;
+        long maxValue = max.get();
+
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < counts.length() && next < qs.length; i++) {
+            seen += counts.get(i);
+            // Kubełek zawierający element o randze ⌈q·n⌉ (metoda najbliższej rangi)
+            while (next < qs.length && seen >= Math.max(1, (long) Math.ceil(qs[next] * n))) {
+                result[next++] = Math.min(maxValue, midpoint(i));
+            }
+        }
+        while (next < qs.length) result[next++] = maxValue;
+        return result;
+    }
+
+    /** Numer kubełka wartości: małe wartości dokładnie, większe z mantysą {@value #SUB_BUCKET_BITS}-bitową. */
+    private static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int shift = 64 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (v >>> shift);
+    }
+
+    /** Środek zakresu wartości kubełka (odwrotność {@link #index(long)}). */
+    private static long midpoint(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        long lower = (long) (index - (shift << (SUB_BUCKET_BITS - 1))) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
@@ -0,0 +1,338 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Strumieniowy parser plików CSV oparty o mapowanie pliku do pamięci (NIO {@link FileChannel}).
+ * <p>
+ * Bajty pliku są skanowane bezpośrednio w poszukiwaniu separatora ';' oraz znaków końca linii.
+ * Ilość, cena (również z polskim przecinkiem) i dostępność są parsowane wprost z bufora,
+ * bez tworzenia pośrednich obiektów String. Tekst powstaje wyłącznie dla nazwy produktu i kategorii;
+ * kategoria trafia do wspólnego słownika ({@link pl.analiza.model.CategoryDictionary}), a powtarzające
+ * się nazwy produktów są zastępowane egzemplarzem z puli importu ({@link StringPool}).
+ * </p>
+ * <p>
+ * Semantyka jest zgodna z poprzednią implementacją opartą o {@code readLine()/split(";")}:
+ * wiersze z mniej niż 5 kolumnami są pomijane, a wiersze z błędnym formatem liczby
+ * (np. nagłówek) są logowane i pomijane. Każde wywołanie {@code read} ma własny stan,
+ * więc jedna instancja może być używana z wielu wątków jednocześnie.
+ * </p>
+ */
+public class MappedCsvReader {
+
+    /** Domyślny rozmiar okna mapowania (pojedynczy MappedByteBuffer ma limit 2 GB). */
+    static final int DEFAULT_WINDOW = 256 * 1024 * 1024;
+
+    /** Co ile bajtów zgłaszany jest postęp odczytu (4 MB). */
+    private static final int PROGRESS_STEP = 4 * 1024 * 1024;
+
+    /** Maksymalna liczba cyfr, dla której szybka ścieżka parsowania ceny jest dokładna. */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /** Dokładnie reprezentowalne potęgi dziesięciu (10^0 .. 10^22). */
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10.0;
+    }
+
+    private final Charset charset;
+    private final int windowSize;
+
+    /** Tworzy parser używający domyślnego kodowania platformy (jak {@code FileReader}). */
+    public MappedCsvReader() {
+        this(Charset.defaultCharset(), DEFAULT_WINDOW);
+    }
+
+    /**
+     * Tworzy parser z podanym kodowaniem i rozmiarem okna mapowania.
+     *
+     * @param charset    Kodowanie tekstu w pliku (musi być zgodne z ASCII dla ';' i końców linii).
+     * @param windowSize Rozmiar pojedynczego okna mapowania w bajtach.
+     */
+    MappedCsvReader(Charset charset, int windowSize) {
+        this.charset = charset;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Wczytuje cały plik i przekazuje kolejne produkty do odbiorcy.
+     *
+     * @param file Plik CSV.
+     * @param sink Odbiorca wczytanych produktów (wywoływany w kolejności pliku).
+     * @throws IOException Błąd odczytu pliku.
+     */
+    public void read(File file, Consumer<DataPoint> sink) throws IOException {
+        read(file, sink, null);
+    }
+
+    /**
+     * Wczytuje cały plik, zgłaszając postęp odczytu.
+     *
+     * @param file     Plik CSV.
+     * @param sink     Odbiorca wczytanych produktów (wywoływany w kolejności pliku).
+     * @param progress Odbiorca postępu 0..1 (może być null).
+     * @throws IOException Błąd odczytu pliku.
+     */
+    public void read(File file, Consumer<DataPoint> sink, DoubleConsumer progress) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read(ch, 0, ch.size(), new StringPool(), sink, progress);
+        }
+    }
+
+    /**
+     * Wczytuje zakres bajtów pliku [start, end).
+     * <p>
+     * Początek zakresu musi być początkiem linii, a koniec — początkiem linii lub końcem pliku.
+     * </p>
+     *
+     * @param ch    Otwarty kanał pliku.
+     * @param start Pozycja początkowa (włącznie).
+     * @param end   Pozycja końcowa (wyłącznie).
+     * @param names Pula nazw produktów (wspólna dla wszystkich zakresów jednego pliku).
+     * @param sink  Odbiorca wczytanych produktów.
+     * @throws IOException Błąd odczytu pliku.
+     */
+    public void read(FileChannel ch, long start, long end, StringPool names, Consumer<DataPoint> sink) throws IOException {
+        read(ch, start, end, names, sink, null);
+    }
+
+    /**
+     * Wczytuje zakres bajtów pliku [start, end), zgłaszając postęp względem długości zakresu.
+     *
+     * @param ch       Otwarty kanał pliku.
+     * @param start    Pozycja początkowa (włącznie).
+     * @param end      Pozycja końcowa (wyłącznie).
+     * @param names    Pula nazw produktów (wspólna dla wszystkich zakresów jednego pliku).
+     * @param sink     Odbiorca wczytanych produktów.
+     * @param progress Odbiorca postępu 0..1 (może być null).
+     * @throws IOException Błąd odczytu pliku.
+     */
+    public void read(FileChannel ch, long start, long end, StringPool names, Consumer<DataPoint> sink,
+                     DoubleConsumer progress) throws IOException {
+        LineParser parser = new LineParser(names, sink);
+        long pos = start;
+        int window = windowSize;
+
+        while (pos < end) {
+            long len = Math.min(end - pos, window);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            boolean last = pos + len == end;
+            if (progress != null) parser.trackProgress(progress, pos - start, end - start);
+            int consumed = parser.parse(buf, (int) len, last);
+
+            if (consumed == 0) {
+                // Pojedyncza linia dłuższa niż okno - powiększenie okna i ponowna próba
+                if (window == Integer.MAX_VALUE) throw new IOException("Linia pliku CSV przekracza 2 GB.");
+                window = (int) Math.min(Integer.MAX_VALUE, window * 2L);
+                continue;
+            }
+            pos += consumed;
+        }
+    }
+
+    /**
+     * Stan parsowania pojedynczego wywołania (bufor pomocniczy na tekst).
+     */
+    private final class LineParser {
+        private final StringPool names;
+        private final Consumer<DataPoint> sink;
+        private byte[] scratch = new byte[256];
+        private final int[] sep = new int[5];
+
+        // Raportowanie postępu (opcjonalne)
+        private DoubleConsumer progress;
+        private long offset;
+        private double total;
+
+        LineParser(StringPool names, Consumer<DataPoint> sink) {
+            this.names = names;
+            this.sink = sink;
+        }
+
+        /** Ustawia odbiorcę postępu dla kolejnego okna (offset okna względem początku zakresu). */
+        void trackProgress(DoubleConsumer progress, long offset, long total) {
+            this.progress = progress;
+            this.offset = offset;
+            this.total = Math.max(1, total);
+        }
+
+        /**
+         * Parsuje kompletne linie z bufora.
+         *
+         * @return Liczba skonsumowanych bajtów (do końca ostatniej pełnej linii).
+         */
+        int parse(MappedByteBuffer buf, int limit, boolean last) {
+            int lineStart = 0;
+            int i = 0;
+            int nextReport = PROGRESS_STEP;
+            while (i < limit) {
+                byte b = buf.get(i);
+                if (b == '\n' || b == '\r') {
+                    parseLine(buf, lineStart, i);
+                    if (progress != null && i >= nextReport) {
+                        progress.accept((offset + i) / total);
+                        nextReport = i + PROGRESS_STEP;
+                    }
+                    // Obsługa "\r\n" jako jednego końca linii
+                    if (b == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') i++;
+                    lineStart = ++i;
+                } else {
+                    i++;
+                }
+            }
+            if (last) {
+                if (lineStart < limit) parseLine(buf, lineStart, limit);
+                return limit;
+            }
+            return lineStart;
+        }
+
+        /** Parsuje pojedynczą linię [from, to) — odpowiednik split(";") + walidacji kolumn. */
+        private void parseLine(MappedByteBuffer buf, int from, int to) {
+            // Wyszukanie pozycji pierwszych separatorów
+            int found = 0;
+            int p = from;
+            while (p < to && found < 4) {
+                if (buf.get(p) == ';') sep[found++] = p;
+                p++;
+            }
+            if (found < 4) return;
+
+            // split(";") odrzuca puste pola końcowe - piąta kolumna musi zawierać coś poza ';'
+            int fifthEnd = -1;
+            boolean nonEmptyTail = false;
+            for (int q = sep[3] + 1; q < to; q++) {
+                if (buf.get(q) == ';') {
+                    if (fifthEnd < 0) fifthEnd = q;
+                    if (nonEmptyTail) break;
+                } else {
+                    nonEmptyTail = true;
+                    if (fifthEnd >= 0) break;
+                }
+            }
+            if (!nonEmptyTail) return;
+            sep[4] = fifthEnd < 0 ? to : fifthEnd;
+
+            try {
+                String prod = names.intern(text(buf, from, sep[0]));
+                String cat = text(buf, sep[0] + 1, sep[1]);
+                int qty = parseInt(buf, sep[1] + 1, sep[2]);
+                double price = parseDouble(buf, sep[2] + 1, sep[3]);
+                boolean avail = parseBoolean(buf, sep[3] + 1, sep[4]);
+
+                sink.accept(new DataPoint(prod, cat, qty, price, avail));
+            } catch (NumberFormatException e) {
+                // Logowanie błędu, jeśli dane w kolumnie liczbowej są nieprawidłowe
+                System.out.println("Błąd formatu liczby w linii: " + decode(buf, from, to));
+            }
+        }
+
+        /** Tekst pola po obcięciu białych znaków (odpowiednik trim()). */
+        private String text(MappedByteBuffer buf, int from, int to) {
+            while (from < to && (buf.get(from) & 0xFF) <= ' ') from++;
+            while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') to--;
+            return decode(buf, from, to);
+        }
+
+        private String decode(MappedByteBuffer buf, int from, int to) {
+            int len = to - from;
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            for (int i = 0; i < len; i++) scratch[i] = buf.get(from + i);
+            return new String(scratch, 0, len, charset);
+        }
+
+        /** Parsowanie liczby całkowitej zgodne z Integer.parseInt(trim()). */
+        private int parseInt(MappedByteBuffer buf, int from, int to) {
+            int s = from, e = to;
+            while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+            while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+
+            int p = s;
+            boolean negative = false;
+            if (p < e && (buf.get(p) == '-' || buf.get(p) == '+')) {
+                negative = buf.get(p) == '-';
+                p++;
+            }
+            if (p == e) throw new NumberFormatException();
+
+            // Akumulacja w wartościach ujemnych, aby obsłużyć Integer.MIN_VALUE
+            long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            long result = 0;
+            for (; p < e; p++) {
+                int b = buf.get(p) & 0xFF;
+                if (b >= 0x80) return Integer.parseInt(decode(buf, s, e)); // cyfry spoza ASCII
+                int d = b - '0';
+                if (d < 0 || d > 9) throw new NumberFormatException();
+                result = result * 10 - d;
+                if (result < limit) throw new NumberFormatException();
+            }
+            return (int) (negative ? result : -result);
+        }
+
+        /**
+         * Parsowanie ceny zgodne z Double.parseDouble(trim().replace(",", ".")).
+         * <p>
+         * Szybka ścieżka obsługuje zapis [znak]cyfry[.|,]cyfry do 15 cyfr znaczących —
+         * wtedy iloraz m / 10^k jest poprawnie zaokrąglony. Pozostałe przypadki
+         * (wykładnik, NaN, długie liczby) trafiają do standardowego parsera.
+         * </p>
+         */
+        private double parseDouble(MappedByteBuffer buf, int from, int to) {
+            int s = from, e = to;
+            while (s < e && (buf.get(s) & 0xFF) <= ' ') s++;
+            while (e > s && (buf.get(e - 1) & 0xFF) <= ' ') e--;
+
+            int p = s;
+            boolean negative = false;
+            if (p < e && (buf.get(p) == '-' || buf.get(p) == '+')) {
+                negative = buf.get(p) == '-';
+                p++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1; // -1 = brak separatora dziesiętnego
+            for (; p < e; p++) {
+                byte b = buf.get(p);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (fraction >= 0) fraction++;
+                } else if ((b == '.' || b == ',') && fraction < 0) {
+                    fraction = 0;
+                } else {
+                    return slowParseDouble(buf, s, e);
+                }
+            }
+            if (digits == 0) throw new NumberFormatException();
+            if (digits > MAX_FAST_DIGITS) return slowParseDouble(buf, s, e);
+
+            double value = fraction > 0 ? mantissa / POW10[fraction] : (double) mantissa;
+            return negative ? -value : value;
+        }
+
+        private double slowParseDouble(MappedByteBuffer buf, int from, int to) {
+            return Double.parseDouble(decode(buf, from, to).replace(",", "."));
+        }
+
+        /** Odpowiednik Boolean.parseBoolean(trim()) - "true" bez względu na wielkość liter. */
+        private boolean parseBoolean(MappedByteBuffer buf, int from, int to) {
+            while (from < to && (buf.get(from) & 0xFF) <= ' ') from++;
+            while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') to--;
+            if (to - from != 4) return false;
+            return (buf.get(from) | 0x20) == 't' && (buf.get(from + 1) | 0x20) == 'r'
+                    && (buf.get(from + 2) | 0x20) == 'u' && (buf.get(from + 3) | 0x20) == 'e';
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package pl.analiza.service;
 
+import pl.analiza.model.CategoryDictionary;
 import pl.analiza.model.DataPoint;
 import pl.analiza.model.CategoryStats;
+import pl.analiza.model.FieldSummary;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
 
 /**
  * Serwis realizujący operacje matematyczne i statystyczne na danych.
@@ -17,88 +25,763 @@ import java.util.Map;
  */
 public class MathService {
 
+    /** Liczba wartości przetwarzanych jednym blokiem (mieści się w pamięci podręcznej L1). */
+    private static final int BLOCK_SIZE = 1024;
+
+    /** Liczba wierszy porcji przy grupowaniu według kategorii. */
+    private static final int CATEGORY_CHUNK_SIZE = 16384;
+
+    /** Liczba bloków kolumny przetwarzanych przez jedno zadanie fork-join. */
+    private static final int NUMERIC_BLOCKS_PER_TASK = 16;
+
+    /** Liczba bitów klucza rozstrzyganych w jednym przebiegu wyboru pozycyjnego (histogram 2^16 liczników). */
+    private static final int RADIX_BITS = 16;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /** Tablice robocze bloków kopiowanych ze zbioru poza stertą (po jednej na wątek). */
+    private static final ThreadLocal<int[]> INT_BLOCK = ThreadLocal.withInitial(() -> new int[BLOCK_SIZE]);
+    private static final ThreadLocal<double[]> DOUBLE_BLOCK = ThreadLocal.withInitial(() -> new double[BLOCK_SIZE]);
+
+    /** Domyślna liczba wierszy, od której obliczenia są wykonywane równolegle. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 250_000;
+
+    // Czasy obliczeń (liczba wierszy = rozmiar danych wejściowych)
+    private static final OperationTimer CALCULATE_TIMER = Metrics.timer("math.calculate");
+    private static final OperationTimer MEDIAN_TIMER = Metrics.timer("math.median");
+    private static final OperationTimer PERCENTILE_TIMER = Metrics.timer("math.percentile");
+    private static final OperationTimer SKETCH_TIMER = Metrics.timer("math.sketch");
+    private static final OperationTimer SUMMARIZE_TIMER = Metrics.timer("math.summarize");
+    private static final OperationTimer CATEGORY_STATS_TIMER = Metrics.timer("math.categoryStats");
+
+    private final ForkJoinPool pool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /** Tworzy serwis korzystający ze wspólnej puli fork-join. */
+    public MathService() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool Pula fork-join dla obliczeń równoległych.
+     */
+    public MathService(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** @return Liczba wierszy, od której obliczenia są wykonywane równolegle. */
+    public int getParallelThreshold() { return parallelThreshold; }
+
+    /**
+     * Ustawia próg trybu równoległego (wynik nie zależy od trybu - zmienia się tylko czas obliczeń).
+     *
+     * @param rows Liczba wierszy ({@link Integer#MAX_VALUE} wyłącza tryb równoległy).
+     */
+    public void setParallelThreshold(int rows) {
+        if (rows < 1) throw new IllegalArgumentException("Próg musi być dodatni.");
+        this.parallelThreshold = rows;
+    }
+
+    /** Dopuszczalny błąd rangi percentyli (0 = wartości dokładne, bez szkicu). */
+    private double quantileRankError;
+
+    /** @return Dopuszczalny błąd rangi percentyli (0 = wartości dokładne). */
+    public double getQuantileRankError() { return quantileRankError; }
+
+    /**
+     * Włącza przybliżone percentyle ze szkicu {@link QuantileSketch} o ograniczonej pamięci.
+     *
+     * @param rankError Dopuszczalny błąd rangi (np. 0.01 = 1% elementów) lub 0 dla wartości dokładnych.
+     */
+    public void setQuantileRankError(double rankError) {
+        if (rankError < 0 || rankError >= 1) throw new IllegalArgumentException("Błąd rangi musi należeć do [0, 1).");
+        this.quantileRankError = rankError;
+    }
+
     /**
      * Wykonuje wybraną operację matematyczną na określonym polu zbioru danych.
      *
      * @param data      Lista produktów (dane wejściowe).
      * @param field     Pole, na którym ma być wykonana operacja ("Ilość", "Cena", "Wartość Całkowita").
-     * @param operation Rodzaj operacji ("Suma", "Średnia", "Minimum", "Maksimum", "Mediana", "Odchylenie Std.", "Wariancja").
+     * @param operation Rodzaj operacji ("Suma", "Średnia", "Minimum", "Maksimum", "Mediana", "Odchylenie Std.", "Wariancja",
+     *                  "Percentyl 90", "Percentyl 99").
      * @return Wynik obliczeń jako liczba zmiennoprzecinkowa (double).
      */
     public double calculate(List<DataPoint> data, String field, String operation) {
         if (data == null || data.isEmpty()) return 0.0;
+        return calculate(new ColumnStore(data), StatField.fromLabel(field), StatOperation.fromLabel(operation));
+    }
+
+    /**
+     * Wykonuje operację na kolumnie magazynu kolumnowego.
+     * <p>
+     * Pole i operacja są rozstrzygane raz, a obliczenia to pętle po tablicach typów prostych
+     * (bez opakowywania wartości w obiekty). Suma, średnia, minimum, maksimum i wariancja
+     * pochodzą z jednoprzebiegowego {@link #summarize(ColumnStore, StatField)}, a mediana
+     * i percentyle z algorytmu wyboru o czasie O(n).
+     * </p>
+     *
+     * @param columns   Kolumny zbioru danych.
+     * @param field     Pole (null = nieznane, wynik 0).
+     * @param operation Operacja (null = nieznana, wynik 0).
+     * @return Wynik obliczeń (0.0 dla pustego zbioru).
+     */
+    public double calculate(ColumnStore columns, StatField field, StatOperation operation) {
+        int n = columns.size();
+        try (OperationTimer.Sample sample = CALCULATE_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null || operation == null) return 0.0;
+
+            switch (operation) {
+                case MEDIAN: return median(columns, field);
+                case P90: return percentile(columns, field, 0.90);
+                case P99: return percentile(columns, field, 0.99);
+                default: break;
+            }
 
-        // 1. Ekstrakcja wartości liczbowych z listy obiektów do prostej listy Double
-        List<Double> values = new ArrayList<>();
-        for (DataPoint dp : data) {
-            if ("Ilość".equals(field)) values.add((double) dp.getQuantity());
-            else if ("Cena".equals(field)) values.add(dp.getPrice());
-            else if ("Wartość Całkowita".equals(field)) values.add(dp.getTotalValue());
+            return valueOf(summarize(columns, field), operation);
         }
-        if (values.isEmpty()) return 0.0;
+    }
+
+    /**
+     * Wykonuje operację na kolumnie zbioru przechowywanego poza stertą ({@link OffHeapDataset}).
+     * <p>
+     * Wynik jest taki sam jak dla {@link #calculate(ColumnStore, StatField, StatOperation)} na tych
+     * samych danych. Statystyki liczone są na blokach kopiowanych z buforów do krótkich tablic
+     * roboczych, a mediana i percentyle wyborem pozycyjnym po bitach wartości - zajętość sterty
+     * nie zależy od liczby wierszy.
+     * </p>
+     *
+     * @param data      Zbiór poza stertą.
+     * @param field     Pole (null = nieznane, wynik 0).
+     * @param operation Operacja (null = nieznana, wynik 0).
+     * @return Wynik obliczeń (0.0 dla pustego zbioru).
+     */
+    public double calculate(OffHeapDataset data, StatField field, StatOperation operation) {
+        int n = data.size();
+        try (OperationTimer.Sample sample = CALCULATE_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null || operation == null) return 0.0;
 
-        // 2. Obliczenie sumy (potrzebna do wielu operacji)
-        double sum = 0;
-        for(Double v : values) sum += v;
+            switch (operation) {
+                case MEDIAN: return median(data, field);
+                case P90: return percentile(data, field, 0.90);
+                case P99: return percentile(data, field, 0.99);
+                default: return valueOf(summarize(data, field), operation);
+            }
+        }
+    }
 
-        // 3. Wykonanie właściwej operacji statystycznej
+    /** Odczytuje wynik operacji ze statystyk pola (operacje inne niż mediana i percentyle). */
+    private static double valueOf(FieldSummary summary, StatOperation operation) {
         switch (operation) {
-            case "Suma": return sum;
+            case SUM: return summary.getSum();
+            case AVERAGE: return summary.getMean();
+            case MIN: return summary.getMin();
+            case MAX: return summary.getMax();
+            case STD_DEV: return summary.getStdDev();
+            case VARIANCE: return summary.getVariance();
+            default: return 0.0;
+        }
+    }
+
+    /**
+     * Wyznacza medianę pola algorytmem wyboru (quickselect) w czasie O(n), bez sortowania kolumny.
+     *
+     * @param columns Kolumny zbioru danych.
+     * @param field   Pole.
+     * @return Mediana (dla parzystej liczby elementów średnia z dwóch środkowych; 0.0 dla pustego zbioru).
+     */
+    public double median(ColumnStore columns, StatField field) {
+        int n = columns.size();
+        try (OperationTimer.Sample sample = MEDIAN_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null) return 0.0;
+            double[] r = select(columns, field, n / 2);
+            return n % 2 == 0 ? (r[0] + r[1]) / 2.0 : r[1];
+        }
+    }
 
-            case "Średnia": return sum / values.size();
+    /**
+     * Wyznacza percentyl pola metodą najbliższej rangi (element o randze ⌈q·n⌉).
+     * <p>
+     * Domyślnie wynik jest dokładny (quickselect na kopii kolumny). Po ustawieniu
+     * {@link #setQuantileRankError(double)} wartość pochodzi ze szkicu {@link QuantileSketch},
+     * który zajmuje stałą pamięć niezależnie od liczby wierszy.
+     * </p>
+     *
+     * @param columns Kolumny zbioru danych.
+     * @param field   Pole.
+     * @param q       Rząd percentyla z przedziału [0, 1] (np. 0.9).
+     * @return Percentyl (0.0 dla pustego zbioru).
+     */
+    public double percentile(ColumnStore columns, StatField field, double q) {
+        int n = columns.size();
+        try (OperationTimer.Sample sample = PERCENTILE_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null) return 0.0;
+            if (quantileRankError > 0) return sketch(columns, field, quantileRankError).getQuantile(q);
+            int rank = (int) Math.ceil(q * n);
+            return select(columns, field, Math.max(0, Math.min(n - 1, rank - 1)))[1];
+        }
+    }
 
-            case "Minimum": return values.stream().min(Double::compare).orElse(0.0);
+    /**
+     * Buduje szkic kwantyli pola w jednym przebiegu po kolumnie.
+     *
+     * @param columns   Kolumny zbioru danych.
+     * @param field     Pole.
+     * @param rankError Dopuszczalny błąd rangi szkicu.
+     * @return Szkic, z którego można odczytać dowolny kwantyl (medianę, p90, p99...).
+     */
+    public QuantileSketch sketch(ColumnStore columns, StatField field, double rankError) {
+        try (OperationTimer.Sample sample = SKETCH_TIMER.start()) {
+            sample.rows(columns.size());
+            QuantileSketch sketch = QuantileSketch.withRankError(rankError);
+            int n = columns.size();
+            if (field == StatField.QUANTITY) {
+                int[] q = columns.quantities();
+                for (int i = 0; i < n; i++) sketch.update(q[i]);
+            } else if (field != null) {
+                double[] values = field == StatField.PRICE ? columns.prices() : columns.totals();
+                for (int i = 0; i < n; i++) sketch.update(values[i]);
+            }
+            return sketch;
+        }
+    }
 
-            case "Maksimum": return values.stream().max(Double::compare).orElse(0.0);
+    /**
+     * Wyznacza medianę pola zbioru poza stertą (jak {@link #median(ColumnStore, StatField)}).
+     *
+     * @param data  Zbiór poza stertą.
+     * @param field Pole.
+     * @return Mediana (0.0 dla pustego zbioru).
+     */
+    public double median(OffHeapDataset data, StatField field) {
+        int n = data.size();
+        try (OperationTimer.Sample sample = MEDIAN_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null) return 0.0;
+            double value = select(data, field, n / 2);
+            return n % 2 == 0 ? (select(data, field, n / 2 - 1) + value) / 2.0 : value;
+        }
+    }
 
-            case "Mediana":
-                values.sort(Double::compareTo); // Sortowanie wymagane do mediany
-                int size = values.size();
-                // Dla parzystej liczby elementów średnia z dwóch środkowych
-                return size % 2 == 0 ? (values.get(size/2 - 1) + values.get(size/2))/2.0 : values.get(size/2);
+    /**
+     * Wyznacza percentyl pola zbioru poza stertą (jak {@link #percentile(ColumnStore, StatField, double)}).
+     *
+     * @param data  Zbiór poza stertą.
+     * @param field Pole.
+     * @param q     Rząd percentyla z przedziału [0, 1].
+     * @return Percentyl (0.0 dla pustego zbioru).
+     */
+    public double percentile(OffHeapDataset data, StatField field, double q) {
+        int n = data.size();
+        try (OperationTimer.Sample sample = PERCENTILE_TIMER.start()) {
+            sample.rows(n);
+            if (n == 0 || field == null) return 0.0;
+            if (quantileRankError > 0) return sketch(data, field, quantileRankError).getQuantile(q);
+            int rank = (int) Math.ceil(q * n);
+            return select(data, field, Math.max(0, Math.min(n - 1, rank - 1)));
+        }
+    }
 
-            case "Odchylenie Std.":
-                double avg = sum / values.size();
-                // Suma kwadratów różnic od średniej
-                double variance = values.stream().mapToDouble(v -> Math.pow(v - avg, 2)).sum() / values.size();
-                return Math.sqrt(variance);
+    /**
+     * Buduje szkic kwantyli pola zbioru poza stertą w jednym przebiegu.
+     *
+     * @param data      Zbiór poza stertą.
+     * @param field     Pole.
+     * @param rankError Dopuszczalny błąd rangi szkicu.
+     * @return Szkic kwantyli.
+     */
+    public QuantileSketch sketch(OffHeapDataset data, StatField field, double rankError) {
+        try (OperationTimer.Sample sample = SKETCH_TIMER.start()) {
+            sample.rows(data.size());
+            QuantileSketch sketch = QuantileSketch.withRankError(rankError);
+            int n = data.size();
+            if (field == StatField.QUANTITY) {
+                for (int i = 0; i < n; i++) sketch.update(data.getQuantity(i));
+            } else if (field != null) {
+                for (int i = 0; i < n; i++) sketch.update(valueOf(data, field, i));
+            }
+            return sketch;
+        }
+    }
 
-            case "Wariancja":
-                double avg2 = sum / values.size();
-                return values.stream().mapToDouble(v -> Math.pow(v - avg2, 2)).sum() / values.size();
+    /**
+     * Wybiera k-ty najmniejszy element kolumny zbioru poza stertą (liczony od 0) bez kopiowania kolumny.
+     * <p>
+     * Wartości porównywane są jako klucze {@link #sortableBits(double)} (ilości zamieniane na double
+     * bez straty), a wybór rozstrzyga po {@value #RADIX_BITS} bitów klucza: każdy z czterech przebiegów
+     * liczy histogram kolejnych bitów wśród wierszy o ustalonym dotąd przedrostku i wybiera kubełek
+     * zawierający rangę k. Pamięć to jeden histogram, niezależnie od liczby wierszy.
+     * </p>
+     */
+    private static double select(OffHeapDataset data, StatField field, int k) {
+        int n = data.size();
+        int[] counts = new int[RADIX];
+        long prefix = 0, mask = 0;
+        int rank = k;
+        for (int shift = Long.SIZE - RADIX_BITS; shift >= 0; shift -= RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                // Odwrócenie bitu znaku - porządek kluczy bez znaku zgodny z porządkiem wartości
+                long key = sortableBits(valueOf(data, field, i)) ^ Long.MIN_VALUE;
+                if ((key & mask) == prefix) counts[(int) (key >>> shift) & (RADIX - 1)]++;
+            }
+            int bucket = 0;
+            while (rank >= counts[bucket]) rank -= counts[bucket++];
+            prefix |= (long) bucket << shift;
+            mask |= (long) (RADIX - 1) << shift;
+        }
+        return fromSortableBits(prefix ^ Long.MIN_VALUE);
+    }
 
-            default: return 0.0;
+    private static double valueOf(OffHeapDataset data, StatField field, int row) {
+        switch (field) {
+            case QUANTITY: return data.getQuantity(row);
+            case PRICE: return data.getPrice(row);
+            default: return data.getTotalValue(row);
+        }
+    }
+
+    /**
+     * Wybiera k-ty najmniejszy element kolumny (liczony od 0) oraz jego poprzednika w porządku rosnącym.
+     * <p>
+     * Kolumna jest kopiowana do tablicy typu prostego: ilości jako {@code int[]}, a wartości
+     * zmiennoprzecinkowe jako klucze {@code long} zachowujące porządek {@link Double#compare}
+     * (ten sam co w {@code Arrays.sort(double[])}), dzięki czemu porównania są całkowitoliczbowe.
+     * </p>
+     *
+     * @return Tablica {poprzednik (NaN dla k = 0), k-ty element}.
+     */
+    private static double[] select(ColumnStore columns, StatField field, int k) {
+        int n = columns.size();
+        double previous = Double.NaN;
+        double value;
+        if (field == StatField.QUANTITY) {
+            int[] a = Arrays.copyOf(columns.quantities(), n);
+            quickselect(a, 0, n - 1, k);
+            value = a[k];
+            // Po wyborze wszystkie elementy [0, k) są nie większe od a[k] - poprzednik to ich maksimum
+            if (k > 0) {
+                int max = a[0];
+                for (int i = 1; i < k; i++) if (a[i] > max) max = a[i];
+                previous = max;
+            }
+        } else {
+            double[] values = field == StatField.PRICE ? columns.prices() : columns.totals();
+            long[] a = new long[n];
+            for (int i = 0; i < n; i++) a[i] = sortableBits(values[i]);
+            quickselect(a, 0, n - 1, k);
+            value = fromSortableBits(a[k]);
+            if (k > 0) {
+                long max = a[0];
+                for (int i = 1; i < k; i++) if (a[i] > max) max = a[i];
+                previous = fromSortableBits(max);
+            }
+        }
+        return new double[] { previous, value };
+    }
+
+    /** Bity liczby double jako long o porządku zgodnym z {@link Double#compare} (-0.0 przed 0.0, NaN na końcu). */
+    private static long sortableBits(double v) {
+        long bits = Double.doubleToLongBits(v);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static double fromSortableBits(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    /**
+     * Quickselect z podziałem na trzy części (mniejsze / równe / większe od osi), odporny na
+     * powtarzające się wartości. Oś to mediana z trzech; gdy liczba podziałów przekroczy
+     * 2·log2(n), zakres jest sortowany (ochrona przed kwadratowym przypadkiem pesymistycznym).
+     * Po zakończeniu a[k] zawiera k-ty najmniejszy element, a[lo..k) - elementy nie większe.
+     */
+    private static void quickselect(long[] a, int lo, int hi, int k) {
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(hi - lo + 1));
+        while (hi > lo) {
+            if (depth-- == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            long x = a[lo], y = a[(lo + hi) >>> 1], z = a[hi];
+            long pivot = Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                long v = a[i];
+                if (v < pivot) { a[i++] = a[lt]; a[lt++] = v; }
+                else if (v > pivot) { a[i] = a[gt]; a[gt--] = v; }
+                else i++;
+            }
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
+    }
+
+    /** Wariant {@link #quickselect(long[], int, int, int)} dla kolumny ilości. */
+    private static void quickselect(int[] a, int lo, int hi, int k) {
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(hi - lo + 1));
+        while (hi > lo) {
+            if (depth-- == 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return;
+            }
+            int x = a[lo], y = a[(lo + hi) >>> 1], z = a[hi];
+            int pivot = Math.max(Math.min(x, y), Math.min(Math.max(x, y), z));
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                int v = a[i];
+                if (v < pivot) { a[i++] = a[lt]; a[lt++] = v; }
+                else if (v > pivot) { a[i] = a[gt]; a[gt--] = v; }
+                else i++;
+            }
+            if (k < lt) hi = lt - 1;
+            else if (k > gt) lo = gt + 1;
+            else return;
+        }
+    }
+
+    /**
+     * Wyznacza liczbę, sumę, minimum, maksimum, średnią i wariancję pola w jednym przebiegu po kolumnie.
+     * <p>
+     * Kolumna przetwarzana jest blokami po {@link #BLOCK_SIZE} wartości: statystyki bloku liczone są
+     * na danych w pamięci podręcznej procesora, a następnie łączone z wynikiem wzorem Chana
+     * (uogólnienie metody Welforda), co daje stabilną numerycznie wariancję bez odejmowania
+     * dużych sum kwadratów. Sumy bloków są dodawane z kompensacją błędu (Kahan-Neumaier).
+     * </p>
+     * <p>
+     * Powyżej progu {@link #setParallelThreshold(int)} statystyki bloków liczone są równolegle
+     * w puli fork-join. Bloki są zawsze łączone w tej samej kolejności, więc wynik jest
+     * identyczny z obliczeniem jednowątkowym.
+     * </p>
+     *
+     * @param columns Kolumny zbioru danych.
+     * @param field   Pole (null = nieznane - wynik jak dla pustego zbioru).
+     * @return Statystyki pola (same zera dla pustego zbioru).
+     */
+    public FieldSummary summarize(ColumnStore columns, StatField field) {
+        int n = columns.size();
+        try (OperationTimer.Sample sample = SUMMARIZE_TIMER.start()) {
+            sample.rows(n);
+            Accumulator acc = new Accumulator();
+            if (n == 0 || field == null) return acc.toSummary();
+
+            int[] q = field == StatField.QUANTITY ? columns.quantities() : null;
+            double[] values = q != null ? null : field == StatField.PRICE ? columns.prices() : columns.totals();
+            int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+            if (isParallel(n)) {
+                Block[] partials = new Block[blocks];
+                pool.invoke(new ChunkTask(0, blocks, NUMERIC_BLOCKS_PER_TASK, b -> {
+                    int from = b * BLOCK_SIZE;
+                    int len = Math.min(BLOCK_SIZE, n - from);
+                    partials[b] = q != null ? Block.of(q, from, len) : Block.of(values, from, len);
+                }));
+                for (Block block : partials) acc.add(block);
+            } else {
+                for (int from = 0; from < n; from += BLOCK_SIZE) {
+                    int len = Math.min(BLOCK_SIZE, n - from);
+                    acc.add(q != null ? Block.of(q, from, len) : Block.of(values, from, len));
+                }
+            }
+            return acc.toSummary();
+        }
+    }
+
+    /**
+     * Wyznacza statystyki pola zbioru poza stertą (jak {@link #summarize(ColumnStore, StatField)}).
+     * <p>
+     * Każdy blok jest kopiowany z buforów do tablicy roboczej wątku ({@value #BLOCK_SIZE} wartości),
+     * więc obliczenia korzystają z tych samych pętli co kolumny na stercie, a wynik jest identyczny.
+     * </p>
+     *
+     * @param data  Zbiór poza stertą.
+     * @param field Pole (null = nieznane - wynik jak dla pustego zbioru).
+     * @return Statystyki pola.
+     */
+    public FieldSummary summarize(OffHeapDataset data, StatField field) {
+        int n = data.size();
+        try (OperationTimer.Sample sample = SUMMARIZE_TIMER.start()) {
+            sample.rows(n);
+            Accumulator acc = new Accumulator();
+            if (n == 0 || field == null) return acc.toSummary();
+
+            // Bloki nie przekraczają granic segmentów zbioru (rozmiar segmentu jest wielokrotnością bloku)
+            IntFunction<Block> blockOf = b -> {
+                int from = b * BLOCK_SIZE;
+                int len = Math.min(BLOCK_SIZE, n - from);
+                if (field == StatField.QUANTITY) {
+                    int[] values = INT_BLOCK.get();
+                    data.readQuantities(from, len, values);
+                    return Block.of(values, 0, len);
+                }
+                double[] values = DOUBLE_BLOCK.get();
+                data.readPrices(from, len, values);
+                if (field == StatField.TOTAL_VALUE) {
+                    int[] quantities = INT_BLOCK.get();
+                    data.readQuantities(from, len, quantities);
+                    ColumnKernels.get().multiply(quantities, values, values, 0, len);
+                }
+                return Block.of(values, 0, len);
+            };
+            int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+            if (isParallel(n)) {
+                Block[] partials = new Block[blocks];
+                pool.invoke(new ChunkTask(0, blocks, NUMERIC_BLOCKS_PER_TASK, b -> partials[b] = blockOf.apply(b)));
+                for (Block block : partials) acc.add(block);
+            } else {
+                for (int b = 0; b < blocks; b++) acc.add(blockOf.apply(b));
+            }
+            return acc.toSummary();
+        }
+    }
+
+    /**
+     * Statystyki jednego bloku wartości: liczba, suma, minimum, maksimum, średnia i suma kwadratów odchyleń.
+     * Pętle wykonuje {@link ColumnKernels#get()} - wariant SIMD lub skalarny daje ten sam wynik.
+     */
+    private static final class Block {
+        final int count;
+        final double sum, min, max, mean, m2;
+
+        private Block(int count, double sum, double min, double max, double m2) {
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.mean = sum / count;
+            this.m2 = m2;
+        }
+
+        /** Statystyki bloku values[from, from + len) - krótkie przebiegi po danych w pamięci podręcznej. */
+        static Block of(double[] values, int from, int len) {
+            ColumnKernels kernels = ColumnKernels.get();
+            double sum = kernels.sum(values, from, len);
+            double min = kernels.min(values, from, len);
+            double max = kernels.max(values, from, len);
+            return new Block(len, sum, min, max, kernels.sumSquaredDeviations(values, from, len, sum / len));
+        }
+
+        /** Wariant dla kolumny ilości (wartości int zamieniane na double bez kopiowania bloku). */
+        static Block of(int[] values, int from, int len) {
+            ColumnKernels kernels = ColumnKernels.get();
+            double sum = kernels.sum(values, from, len);
+            int min = kernels.min(values, from, len);
+            int max = kernels.max(values, from, len);
+            return new Block(len, sum, min, max, kernels.sumSquaredDeviations(values, from, len, sum / len));
+        }
+    }
+
+    /**
+     * Akumulator statystyk łączący bloki wartości (średnia i suma kwadratów odchyleń wg Chana).
+     */
+    private static final class Accumulator {
+        private long count;
+        private double sum, compensation;
+        private double min, max;
+        private double mean, m2;
+
+        void add(Block b) {
+            if (count == 0) {
+                min = b.min;
+                max = b.max;
+            } else {
+                if (Double.compare(b.min, min) < 0) min = b.min;
+                if (Double.compare(b.max, max) > 0) max = b.max;
+            }
+
+            // Suma z kompensacją (Kahan-Neumaier)
+            double t = sum + b.sum;
+            compensation += Math.abs(sum) >= Math.abs(b.sum) ? (sum - t) + b.sum : (b.sum - t) + sum;
+            sum = t;
+
+            // Połączenie średnich i sum kwadratów odchyleń (Chan i in.)
+            long total = count + b.count;
+            double delta = b.mean - mean;
+            mean += delta * b.count / total;
+            m2 += b.m2 + delta * delta * ((double) count * b.count / total);
+            count = total;
+        }
+
+        FieldSummary toSummary() {
+            if (count == 0) return new FieldSummary(0, 0, 0, 0, 0, 0);
+            double total = sum + compensation;
+            // Średnia jako suma / liczba (spójna z operacją "Suma"); średnia Chana służy tylko wariancji
+            return new FieldSummary(count, total, min, max, total / count, m2 / count);
         }
     }
 
     /**
      * Generuje statystyki pogrupowane według kategorii.
+     * <p>
+     * Produkty są przetwarzane porcjami po {@link #CATEGORY_CHUNK_SIZE} wierszy - każda porcja
+     * zbiera własne liczniki i sumy dla kategorii, bez kopiowania wierszy do list grup.
+     * Wyniki porcji są łączone w kolejności porcji (sumy z kompensacją), a powyżej progu
+     * {@link #setParallelThreshold(int)} porcje liczone są równolegle z identycznym wynikiem.
+     * </p>
      *
      * @param data Lista wszystkich produktów.
      * @return Lista obiektów CategoryStats zawierająca podsumowanie dla każdej kategorii.
      */
     public List<CategoryStats> getCategoryStatistics(List<DataPoint> data) {
-        Map<String, List<DataPoint>> grouped = new HashMap<>();
+        int n = data.size();
+        try (OperationTimer.Sample sample = CATEGORY_STATS_TIMER.start()) {
+            sample.rows(n);
+            int chunks = (n + CATEGORY_CHUNK_SIZE - 1) / CATEGORY_CHUNK_SIZE;
+
+            // 1. Liczniki i sumy kategorii dla każdej porcji wierszy
+            List<Map<String, CategoryAccumulator>> partials = new ArrayList<>(Collections.nCopies(chunks, null));
+            IntConsumer chunkBody = c -> {
+                int from = c * CATEGORY_CHUNK_SIZE;
+                partials.set(c, accumulateCategories(data, from, Math.min(n, from + CATEGORY_CHUNK_SIZE)));
+            };
+            if (isParallel(n)) {
+                pool.invoke(new ChunkTask(0, chunks, 1, chunkBody));
+            } else {
+                for (int c = 0; c < chunks; c++) chunkBody.accept(c);
+            }
+
+            // 2. Łączenie porcji w stałej kolejności
+            Map<String, CategoryAccumulator> grouped = new HashMap<>();
+            for (Map<String, CategoryAccumulator> partial : partials) {
+                for (Map.Entry<String, CategoryAccumulator> entry : partial.entrySet()) {
+                    grouped.computeIfAbsent(entry.getKey(), k -> new CategoryAccumulator()).merge(entry.getValue());
+                }
+            }
+
+            // 3. Przetwarzanie grup na obiekty statystyk
+            List<CategoryStats> result = new ArrayList<>(grouped.size());
+            for (Map.Entry<String, CategoryAccumulator> entry : grouped.entrySet()) {
+                CategoryAccumulator acc = entry.getValue();
+                int count = (int) acc.count;
+                // Średnia cena w danej grupie
+                double avgPrice = count == 0 ? 0.0 : acc.priceSum.value() / count;
+                result.add(new CategoryStats(entry.getKey(), count, avgPrice, acc.valueSum.value()));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Generuje statystyki kategorii zbioru poza stertą (jak {@link #getCategoryStatistics(List)}).
+     * <p>
+     * Wiersze są grupowane według kodu kategorii ({@link CategoryDictionary}) - liczniki porcji
+     * są tablicą indeksowaną kodem, bez napisów i map.
+     * </p>
+     *
+     * @param data Zbiór poza stertą.
+     * @return Statystyki kategorii występujących w zbiorze.
+     */
+    public List<CategoryStats> getCategoryStatistics(OffHeapDataset data) {
+        int n = data.size();
+        try (OperationTimer.Sample sample = CATEGORY_STATS_TIMER.start()) {
+            sample.rows(n);
+            int codes = CategoryDictionary.size();
+            int chunks = (n + CATEGORY_CHUNK_SIZE - 1) / CATEGORY_CHUNK_SIZE;
+
+            CategoryAccumulator[][] partials = new CategoryAccumulator[chunks][];
+            IntConsumer chunkBody = c -> {
+                CategoryAccumulator[] local = new CategoryAccumulator[codes];
+                int from = c * CATEGORY_CHUNK_SIZE;
+                int to = Math.min(n, from + CATEGORY_CHUNK_SIZE);
+                for (int i = from; i < to; i++) {
+                    int code = data.getCategoryCode(i);
+                    CategoryAccumulator acc = local[code];
+                    if (acc == null) acc = local[code] = new CategoryAccumulator();
+                    acc.count++;
+                    acc.priceSum.add(data.getPrice(i));
+                    acc.valueSum.add(data.getTotalValue(i));
+                }
+                partials[c] = local;
+            };
+            if (isParallel(n)) {
+                pool.invoke(new ChunkTask(0, chunks, 1, chunkBody));
+            } else {
+                for (int c = 0; c < chunks; c++) chunkBody.accept(c);
+            }
+
+            // Łączenie porcji w stałej kolejności
+            CategoryAccumulator[] grouped = new CategoryAccumulator[codes];
+            for (CategoryAccumulator[] partial : partials) {
+                for (int code = 0; code < codes; code++) {
+                    if (partial[code] == null) continue;
+                    if (grouped[code] == null) grouped[code] = new CategoryAccumulator();
+                    grouped[code].merge(partial[code]);
+                }
+            }
+
+            List<CategoryStats> result = new ArrayList<>();
+            for (int code = 0; code < codes; code++) {
+                CategoryAccumulator acc = grouped[code];
+                if (acc == null) continue;
+                int count = (int) acc.count;
+                result.add(new CategoryStats(CategoryDictionary.nameOf(code), count,
+                        acc.priceSum.value() / count, acc.valueSum.value()));
+            }
+            return result;
+        }
+    }
+
+    private static Map<String, CategoryAccumulator> accumulateCategories(List<DataPoint> data, int from, int to) {
+        Map<String, CategoryAccumulator> local = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            DataPoint dp = data.get(i);
+            CategoryAccumulator acc = local.computeIfAbsent(dp.getCategory(), k -> new CategoryAccumulator());
+            acc.count++;
+            acc.priceSum.add(dp.getPrice());
+            acc.valueSum.add(dp.getTotalValue());
+        }
+        return local;
+    }
 
-        // 1. Grupowanie produktów w mapie (Klucz: Kategoria -> Wartość: Lista produktów)
-        for (DataPoint dp : data) {
-            grouped.computeIfAbsent(dp.getCategory(), k -> new ArrayList<>()).add(dp);
+    /**
+     * Liczba produktów oraz sumy cen i wartości jednej kategorii.
+     */
+    private static final class CategoryAccumulator {
+        long count;
+        final CompensatedSum priceSum = new CompensatedSum();
+        final CompensatedSum valueSum = new CompensatedSum();
+
+        void merge(CategoryAccumulator other) {
+            count += other.count;
+            priceSum.add(other.priceSum.value());
+            valueSum.add(other.valueSum.value());
         }
+    }
+
+    private boolean isParallel(int rows) {
+        return rows >= parallelThreshold && pool.getParallelism() > 1;
+    }
 
-        // 2. Przetwarzanie grup na obiekty statystyk
-        List<CategoryStats> result = new ArrayList<>();
-        for (Map.Entry<String, List<DataPoint>> entry : grouped.entrySet()) {
-            String catName = entry.getKey();
-            List<DataPoint> items = entry.getValue();
+    /**
+     * Zadanie fork-join wykonujące ciało dla porcji [from, to), dzielone na pół do osiągnięcia
+     * {@code grain} porcji. Każda porcja zapisuje wynik we własnym miejscu tablicy wyników.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-            int count = items.size();
-            // Suma wartości w danej grupie
-            double totalVal = items.stream().mapToDouble(DataPoint::getTotalValue).sum();
-            // Średnia cena w danej grupie
-            double avgPrice = items.stream().mapToDouble(DataPoint::getPrice).average().orElse(0.0);
+        private final int from, to, grain;
+        private final IntConsumer body;
+
+        ChunkTask(int from, int to, int grain, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
 
-            result.add(new CategoryStats(catName, count, avgPrice, totalVal));
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                for (int c = from; c < to; c++) body.accept(c);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid, grain, body), new ChunkTask(mid, to, grain, body));
         }
-        return result;
     }
-}
\ No newline at end of file
+}
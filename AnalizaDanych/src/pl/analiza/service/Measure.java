@@ -0,0 +1,48 @@
+package pl.analiza.service;
+
+/**
+ * Miara tabeli grupowania: funkcja agregująca zastosowana do pola (np. "Suma: Wartość Całkowita").
+ * Obiekty tej klasy są niemutowalne.
+ */
+public final class Measure {
+
+    private final AggregateFunction function;
+    private final StatField field;
+
+    private Measure(AggregateFunction function, StatField field) {
+        this.function = function;
+        this.field = field;
+    }
+
+    /** @return Miara zliczająca wiersze grupy. */
+    public static Measure count() {
+        return new Measure(AggregateFunction.COUNT, null);
+    }
+
+    /**
+     * Tworzy miarę dla pola.
+     *
+     * @param function Funkcja agregująca (dla {@link AggregateFunction#COUNT} pole jest pomijane).
+     * @param field    Pole produktu.
+     * @return Miara.
+     */
+    public static Measure of(AggregateFunction function, StatField field) {
+        if (function == AggregateFunction.COUNT) return count();
+        if (field == null) throw new IllegalArgumentException("Miara " + function.getLabel() + " wymaga pola.");
+        return new Measure(function, field);
+    }
+
+    /** @return Funkcja agregująca. */
+    public AggregateFunction getFunction() { return function; }
+
+    /** @return Pole produktu (null dla liczby wierszy). */
+    public StatField getField() { return field; }
+
+    /** @return Nazwa miary wyświetlana w interfejsie. */
+    public String getLabel() {
+        return field == null ? function.getLabel() : function.getLabel() + ": " + field.getLabel();
+    }
+
+    @Override
+    public String toString() { return getLabel(); }
+}
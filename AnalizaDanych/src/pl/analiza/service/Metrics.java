@@ -0,0 +1,143 @@
+package pl.analiza.service;
+
+import pl.analiza.model.MetricSnapshot;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Rejestr liczników czasu operacji ({@link OperationTimer}) współdzielony przez serwisy i kontroler.
+ * <p>
+ * Serwisy pobierają liczniki raz, do stałych statycznych, i mierzą nimi każde wywołanie
+ * (zapytania JDBC, parsowanie plików, obliczenia {@link MathService}, fazy odświeżania widoków).
+ * Pomiary są domyślnie wyłączone; włącza je właściwość systemowa {@code -Danaliza.metrics=true},
+ * zakładka "Diagnostyka" albo atrybut JMX {@code Enabled}. Zdarzenia JFR importów i zapisów
+ * włącza osobno {@code -Danaliza.jfr=true} - są zapisywane tylko podczas aktywnego nagrania
+ * (np. {@code jcmd <pid> JFR.start}).
+ * </p>
+ * <p>
+ * Po {@link #registerMBeans()} sterowanie ({@code pl.analiza:type=Metrics}) i każdy licznik
+ * ({@code pl.analiza:type=Timer,name=...}) są dostępne w JConsole / VisualVM.
+ * </p>
+ */
+public final class Metrics {
+
+    /** Rodzaj operacji - decyduje o typie emitowanego zdarzenia JFR. */
+    public enum Kind {
+        /** Operacja bez zdarzenia JFR (zapytanie, obliczenie, odświeżenie widoku). */
+        OPERATION,
+        /** Import zbioru produktów ({@link ImportEvent}). */
+        IMPORT,
+        /** Zapis zbioru produktów ({@link SaveEvent}). */
+        SAVE
+    }
+
+    private static final String JMX_DOMAIN = "pl.analiza";
+
+    private static volatile boolean enabled = Boolean.getBoolean("analiza.metrics");
+    private static volatile boolean jfrEvents = Boolean.getBoolean("analiza.jfr");
+
+    /** Liczniki według nazwy (kolejność alfabetyczna - operacje tego samego serwisu obok siebie). */
+    private static final Map<String, OperationTimer> TIMERS = new ConcurrentSkipListMap<>();
+
+    /** Serwer MBean po rejestracji (null - liczniki nie są publikowane przez JMX). */
+    private static MBeanServer mbeanServer;
+
+    private Metrics() {
+    }
+
+    /**
+     * Pobiera (lub tworzy) licznik operacji bez zdarzeń JFR.
+     *
+     * @param name Nazwa w postaci {@code obszar.operacja} (np. "db.count").
+     */
+    public static OperationTimer timer(String name) {
+        return timer(name, Kind.OPERATION);
+    }
+
+    /**
+     * Pobiera (lub tworzy) licznik operacji.
+     *
+     * @param name Nazwa w postaci {@code obszar.operacja} (np. "csv.import").
+     * @param kind Rodzaj operacji (import i zapis mogą emitować zdarzenia JFR).
+     */
+    public static synchronized OperationTimer timer(String name, Kind kind) {
+        OperationTimer timer = TIMERS.get(name);
+        if (timer != null) {
+            if (timer.getKind() != kind) throw new IllegalArgumentException("Licznik " + name + " ma rodzaj " + timer.getKind() + ".");
+            return timer;
+        }
+        timer = new OperationTimer(name, kind);
+        TIMERS.put(name, timer);
+        if (mbeanServer != null) register(timer);
+        return timer;
+    }
+
+    /** @return true, jeśli czasy operacji są zapisywane. */
+    public static boolean isEnabled() { return enabled; }
+
+    /** Włącza lub wyłącza zapis czasów operacji (zebrane wartości pozostają). */
+    public static void setEnabled(boolean value) { enabled = value; }
+
+    /** @return true, jeśli importy i zapisy emitują zdarzenia JFR. */
+    public static boolean isJfrEvents() { return jfrEvents; }
+
+    /** Włącza lub wyłącza zdarzenia JFR importów i zapisów. */
+    public static void setJfrEvents(boolean value) { jfrEvents = value; }
+
+    /** Zeruje wszystkie liczniki. */
+    public static void resetAll() {
+        for (OperationTimer timer : TIMERS.values()) timer.reset();
+    }
+
+    /**
+     * Odczytuje liczniki, które mają co najmniej jeden pomiar.
+     *
+     * @return Odczyty w kolejności nazw.
+     */
+    public static List<MetricSnapshot> snapshot() {
+        List<MetricSnapshot> result = new ArrayList<>();
+        for (OperationTimer timer : TIMERS.values()) {
+            if (timer.getCount() > 0) result.add(timer.snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * Publikuje sterowanie i liczniki (także tworzone później) w platformowym serwerze MBean.
+     * Kolejne wywołania nic nie robią.
+     */
+    public static synchronized void registerMBeans() {
+        if (mbeanServer != null) return;
+        mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mbeanServer.registerMBean(new Control(), new ObjectName(JMX_DOMAIN + ":type=Metrics"));
+        } catch (JMException e) {
+            throw new IllegalStateException("Nie udało się zarejestrować MBean pomiarów: " + e.getMessage(), e);
+        }
+        for (OperationTimer timer : TIMERS.values()) register(timer);
+    }
+
+    private static void register(OperationTimer timer) {
+        try {
+            mbeanServer.registerMBean(timer, new ObjectName(JMX_DOMAIN + ":type=Timer,name=" + ObjectName.quote(timer.getName())));
+        } catch (JMException e) {
+            throw new IllegalStateException("Nie udało się zarejestrować MBean licznika " + timer.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /** Sterowanie pomiarami przez JMX. */
+    private static final class Control implements MetricsControlMXBean {
+        @Override public boolean isEnabled() { return Metrics.isEnabled(); }
+        @Override public void setEnabled(boolean value) { Metrics.setEnabled(value); }
+        @Override public boolean isJfrEvents() { return Metrics.isJfrEvents(); }
+        @Override public void setJfrEvents(boolean value) { Metrics.setJfrEvents(value); }
+        @Override public void resetAll() { Metrics.resetAll(); }
+    }
+}
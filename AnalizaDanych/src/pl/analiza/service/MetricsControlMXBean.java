@@ -0,0 +1,22 @@
+package pl.analiza.service;
+
+/**
+ * Interfejs JMX sterowania pomiarami ({@code pl.analiza:type=Metrics}).
+ */
+public interface MetricsControlMXBean {
+
+    /** @return true, jeśli czasy operacji są zapisywane. */
+    boolean isEnabled();
+
+    /** Włącza lub wyłącza zapis czasów operacji. */
+    void setEnabled(boolean enabled);
+
+    /** @return true, jeśli importy i zapisy emitują zdarzenia JFR. */
+    boolean isJfrEvents();
+
+    /** Włącza lub wyłącza zdarzenia JFR importów i zapisów. */
+    void setJfrEvents(boolean jfrEvents);
+
+    /** Zeruje wszystkie liczniki. */
+    void resetAll();
+}
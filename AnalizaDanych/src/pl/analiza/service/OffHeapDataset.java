@@ -0,0 +1,477 @@
+package pl.analiza.service;
+
+import pl.analiza.model.CategoryDictionary;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.ColumnIndex.Comparison;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Zbiór produktów przechowywany poza stertą, w buforach bezpośrednich ({@link ByteBuffer#allocateDirect}).
+ * <p>
+ * Kolumny ilości, ceny, dostępności, kodu kategorii ({@link CategoryDictionary}) i numeru nazwy mają
+ * stałą szerokość (21 bajtów na wiersz) i są podzielone na segmenty po {@value #SEGMENT_ROWS} wierszy.
+ * Nazwy produktów trafiają do areny napisów (strony po {@value #ARENA_PAGE_SIZE} bajtów, UTF-8)
+ * i są adresowane przesunięciem; każda różna nazwa zapisywana jest raz, a tablica mieszająca
+ * do wyszukiwania powtórzeń również leży poza stertą. Na stercie zostaje tylko kilka obiektów
+ * na segment, więc odśmiecanie nie przegląda danych niezależnie od liczby wierszy.
+ * </p>
+ * <p>
+ * Obliczenia {@link MathService}, wyszukiwanie ({@link #search(String)}) i filtry strukturalne
+ * ({@link FilterQuery}, przez {@link ColumnFilter}) czytają kolumny bezpośrednio z buforów.
+ * {@link #get(int)} tworzy niezależną kopię wiersza jako {@link DataPoint} - np. dla widocznej
+ * strony tabeli. Zbiór jest tylko do dopisywania; zmiana wiersza wymaga zbudowania nowego zbioru.
+ * </p>
+ * <p>
+ * Pamięć buforów zwalnia maszyna wirtualna po {@link #close()}, gdy obiekty buforów zostaną
+ * odśmiecone (limit pamięci poza stertą ustawia {@code -XX:MaxDirectMemorySize}); zamknięty zbiór
+ * zgłasza {@link IllegalStateException} przy każdym odczycie i dopisywaniu. Dopisywanie
+ * wymaga jednego wątku; po zakończeniu dopisywania zbiór może być czytany z wielu wątków.
+ * </p>
+ */
+public class OffHeapDataset implements ColumnFilter, AutoCloseable {
+
+    /** Liczba wierszy segmentu kolumn (2^20 - wielokrotność bloków {@link MathService}). */
+    static final int SEGMENT_ROWS = 1 << 20;
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_MASK = SEGMENT_ROWS - 1;
+
+    /** Rozmiar strony areny napisów (16 MB). */
+    static final int ARENA_PAGE_SIZE = 16 * 1024 * 1024;
+
+    /** Nagłówek nazwy w arenie: skrót (int) i długość w bajtach (int). */
+    private static final int NAME_HEADER = 2 * Integer.BYTES;
+
+    /** Numer nazwy oznaczający brak nazwy (null). */
+    private static final int NO_NAME = -1;
+
+    private static final int INITIAL_TABLE_SIZE = 1 << 16;
+
+    /** Liczba znaczników kopiowanych jednorazowo przy budowie maski (wielokrotność 64, dzielnik segmentu). */
+    private static final int MASK_CHUNK = 8192;
+
+    private List<Segment> segments = new ArrayList<>();
+    private int size;
+
+    // Arena napisów: strony, adresy nazw według numeru (segmenty po SEGMENT_ROWS) i tablica mieszająca
+    private List<ByteBuffer> arenaPages = new ArrayList<>();
+    private List<ByteBuffer> nameAddresses = new ArrayList<>();
+    private int nameCount;
+    private ByteBuffer nameTable = allocate((long) INITIAL_TABLE_SIZE * Integer.BYTES);
+    private int nameTableMask = INITIAL_TABLE_SIZE - 1;
+    private long offHeapBytes = nameTable.capacity();
+    private boolean closed;
+
+    /**
+     * Wczytuje zbiór ze źródła importu (np. {@link CsvService#source}) bez gromadzenia wierszy na stercie.
+     *
+     * @param source   Źródło produktów.
+     * @param progress Odbiorca postępu odczytu (może być null).
+     * @return Zbiór z produktami w kolejności źródła.
+     * @throws IOException Błąd odczytu źródła (pamięć częściowo wczytanego zbioru jest zwalniana).
+     */
+    public static OffHeapDataset load(ImportSource source, DoubleConsumer progress) throws IOException {
+        OffHeapDataset data = new OffHeapDataset();
+        try {
+            source.read(data::add, progress != null ? progress : p -> { });
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+        return data;
+    }
+
+    /**
+     * Dopisuje produkt na końcu zbioru (kopiuje wartości pól - obiekt nie jest zapamiętywany).
+     *
+     * @param dp Produkt.
+     */
+    public void add(DataPoint dp) {
+        ensureOpen();
+        int row = size;
+        if ((row & SEGMENT_MASK) == 0 && row >> SEGMENT_SHIFT == segments.size()) {
+            segments.add(new Segment());
+            offHeapBytes += (long) SEGMENT_ROWS * Segment.ROW_BYTES;
+        }
+        Segment s = segments.get(row >> SEGMENT_SHIFT);
+        int i = row & SEGMENT_MASK;
+        s.quantities.putInt(i * Integer.BYTES, dp.getQuantity());
+        s.prices.putDouble(i * Double.BYTES, dp.getPrice());
+        s.categories.putInt(i * Integer.BYTES, dp.getCategoryCode());
+        s.names.putInt(i * Integer.BYTES, nameId(dp.getProduct()));
+        s.flags.put(i, (byte) (dp.isAvailable() ? 1 : 0));
+        size++;
+    }
+
+    /**
+     * Dopisuje produkty na końcu zbioru.
+     *
+     * @param rows Produkty.
+     */
+    public void addAll(List<? extends DataPoint> rows) {
+        for (DataPoint dp : rows) add(dp);
+    }
+
+    @Override
+    public int size() {
+        ensureOpen();
+        return size;
+    }
+
+    /** @return Liczba różnych nazw produktów w arenie. */
+    public int getNameCount() { return nameCount; }
+
+    /** @return Rozmiar zarezerwowanej pamięci poza stertą w bajtach. */
+    public long getOffHeapBytes() { return offHeapBytes; }
+
+    /** @return Ilość w wierszu. */
+    public int getQuantity(int row) {
+        return segment(row).quantities.getInt((row & SEGMENT_MASK) * Integer.BYTES);
+    }
+
+    /** @return Cena w wierszu. */
+    public double getPrice(int row) {
+        return segment(row).prices.getDouble((row & SEGMENT_MASK) * Double.BYTES);
+    }
+
+    /** @return Wartość całkowita (ilość * cena) w wierszu - jak {@link DataPoint#getTotalValue()}. */
+    public double getTotalValue(int row) {
+        Segment s = segment(row);
+        int i = row & SEGMENT_MASK;
+        return s.quantities.getInt(i * Integer.BYTES) * s.prices.getDouble(i * Double.BYTES);
+    }
+
+    /** @return Dostępność w wierszu. */
+    public boolean isAvailable(int row) {
+        return segment(row).flags.get(row & SEGMENT_MASK) != 0;
+    }
+
+    /** @return Kod kategorii wiersza w {@link CategoryDictionary}. */
+    public int getCategoryCode(int row) {
+        return segment(row).categories.getInt((row & SEGMENT_MASK) * Integer.BYTES);
+    }
+
+    /** @return Kategoria wiersza (napis współdzielony ze słownika). */
+    public String getCategory(int row) {
+        return CategoryDictionary.nameOf(getCategoryCode(row));
+    }
+
+    /** @return Nazwa produktu w wierszu (dekodowana z areny przy każdym wywołaniu). */
+    public String getProduct(int row) {
+        return nameOf(nameIdOf(row));
+    }
+
+    /**
+     * Tworzy kopię wiersza jako obiekt produktu (zmiany kopii nie wpływają na zbiór).
+     *
+     * @param row Numer wiersza.
+     * @return Nowy obiekt produktu.
+     */
+    public DataPoint get(int row) {
+        return new DataPoint(getProduct(row), getCategory(row), getQuantity(row), getPrice(row), isAvailable(row));
+    }
+
+    /**
+     * Kopiuje ilości wierszy [from, from + len) do tablicy (zakres nie może przekraczać granicy segmentu).
+     */
+    void readQuantities(int from, int len, int[] dst) {
+        ByteBuffer column = segment(from).quantities;
+        int base = (from & SEGMENT_MASK) * Integer.BYTES;
+        for (int i = 0; i < len; i++) dst[i] = column.getInt(base + i * Integer.BYTES);
+    }
+
+    /** Kopiuje ceny wierszy [from, from + len) do tablicy (zakres nie może przekraczać granicy segmentu). */
+    void readPrices(int from, int len, double[] dst) {
+        ByteBuffer column = segment(from).prices;
+        int base = (from & SEGMENT_MASK) * Double.BYTES;
+        for (int i = 0; i < len; i++) dst[i] = column.getDouble(base + i * Double.BYTES);
+    }
+
+    /**
+     * Wyszukuje wiersze, których nazwa produktu lub kategoria zawiera zapytanie (jak {@link SearchIndex#search}).
+     * <p>
+     * Zapytanie jest porównywane z każdą różną nazwą i kategorią raz (koszt zależy od liczby
+     * różnych nazw), a wiersze wybierane są przebiegiem po kolumnach numerów nazw i kodów kategorii.
+     * </p>
+     *
+     * @param query Zapytanie (puste = wszystkie wiersze).
+     * @return Numery pasujących wierszy w kolejności rosnącej.
+     */
+    public int[] search(String query) {
+        ensureOpen();
+        String q = SearchIndex.normalize(query);
+        if (q.isEmpty()) {
+            int[] all = new int[size];
+            for (int row = 0; row < size; row++) all[row] = row;
+            return all;
+        }
+
+        BitSet names = new BitSet(nameCount);
+        for (int id = 0; id < nameCount; id++) {
+            if (SearchIndex.normalize(nameOf(id)).contains(q)) names.set(id);
+        }
+        boolean[] categories = matchCategories(name -> name.contains(q));
+
+        int n = 0;
+        int[] result = new int[Math.min(size, 1024)];
+        for (int row = 0; row < size; row++) {
+            int nameId = nameIdOf(row);
+            if ((nameId != NO_NAME && names.get(nameId)) || categories[getCategoryCode(row)]) {
+                if (n == result.length) result = Arrays.copyOf(result, Math.min(size, n * 2));
+                result[n++] = row;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    @Override
+    public BitSet categoryEquals(String category) {
+        ensureOpen();
+        String c = SearchIndex.normalize(category);
+        return rowsWithCategory(matchCategories(name -> name.equals(c)));
+    }
+
+    @Override
+    public BitSet categoryContains(String text) {
+        ensureOpen();
+        String t = SearchIndex.normalize(text);
+        return rowsWithCategory(matchCategories(name -> name.contains(t)));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Znaczniki są kopiowane porcjami po {@value #MASK_CHUNK} bajtów i zamieniane na słowa maski
+     * przez {@link ColumnKernels#nonZeroMask} (64 wiersze na słowo).
+     * </p>
+     */
+    @Override
+    public BitSet available(boolean value) {
+        ensureOpen();
+        long[] words = new long[(size + 63) >>> 6];
+        byte[] flags = new byte[Math.min(size, MASK_CHUNK)];
+        long[] chunkWords = new long[MASK_CHUNK / 64];
+        ColumnKernels kernels = ColumnKernels.get();
+        for (int from = 0; from < size; from += MASK_CHUNK) {
+            int len = Math.min(MASK_CHUNK, size - from);
+            ByteBuffer column = segment(from).flags.duplicate();
+            column.position(from & SEGMENT_MASK);
+            column.get(flags, 0, len);
+            kernels.nonZeroMask(flags, len, chunkWords);
+            System.arraycopy(chunkWords, 0, words, from >>> 6, (len + 63) >>> 6);
+        }
+        if (!value) {
+            for (int w = 0; w < words.length; w++) words[w] = ~words[w];
+            // Bity za ostatnim wierszem nie należą do wyniku
+            if ((size & 63) != 0) words[words.length - 1] &= (1L << size) - 1;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    @Override
+    public BitSet price(Comparison op, double value) {
+        ensureOpen();
+        BitSet bits = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            if (matches(Double.compare(getPrice(row), value), op)) bits.set(row);
+        }
+        return bits;
+    }
+
+    @Override
+    public BitSet quantity(Comparison op, double value) {
+        ensureOpen();
+        BitSet bits = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            if (matches(Double.compare(getQuantity(row), value), op)) bits.set(row);
+        }
+        return bits;
+    }
+
+    /** Porównanie wyniku {@link Double#compare} z operatorem (ta sama semantyka co w {@link ColumnIndex}). */
+    private static boolean matches(int cmp, Comparison op) {
+        switch (op) {
+            case EQ: return cmp == 0;
+            case NE: return cmp != 0;
+            case LT: return cmp < 0;
+            case LE: return cmp <= 0;
+            case GT: return cmp > 0;
+            case GE: return cmp >= 0;
+            default: return false;
+        }
+    }
+
+    /** Kody kategorii słownika, których znormalizowana nazwa spełnia warunek (indeks = kod). */
+    private static boolean[] matchCategories(Predicate<String> condition) {
+        int codes = CategoryDictionary.size();
+        boolean[] matches = new boolean[codes];
+        for (int code = 0; code < codes; code++) {
+            matches[code] = condition.test(SearchIndex.normalize(CategoryDictionary.nameOf(code)));
+        }
+        return matches;
+    }
+
+    private BitSet rowsWithCategory(boolean[] codes) {
+        BitSet bits = new BitSet(size);
+        for (int row = 0; row < size; row++) {
+            if (codes[getCategoryCode(row)]) bits.set(row);
+        }
+        return bits;
+    }
+
+    /**
+     * Zwalnia odwołania do buforów - pamięć poza stertą wraca do systemu po ich odśmieceniu.
+     * Kolejne wywołania nic nie robią; pozostałe metody zgłaszają {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        segments = null;
+        arenaPages = null;
+        nameAddresses = null;
+        nameTable = null;
+        offHeapBytes = 0;
+        size = 0;
+        nameCount = 0;
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Zbiór poza stertą został zamknięty.");
+    }
+
+    private Segment segment(int row) {
+        ensureOpen();
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Wiersz: " + row + ", rozmiar: " + size);
+        return segments.get(row >> SEGMENT_SHIFT);
+    }
+
+    private int nameIdOf(int row) {
+        return segment(row).names.getInt((row & SEGMENT_MASK) * Integer.BYTES);
+    }
+
+    // --- Arena napisów ---
+
+    /** Numer nazwy w arenie; nowa nazwa jest zapisywana przy pierwszym wystąpieniu. */
+    private int nameId(String name) {
+        if (name == null) return NO_NAME;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+
+        // Adresowanie otwarte z sondowaniem liniowym; w tablicy numery nazw + 1 (0 = wolne miejsce)
+        int slot = hash & nameTableMask;
+        while (true) {
+            int entry = nameTable.getInt(slot * Integer.BYTES);
+            if (entry == 0) break;
+            if (equalsName(entry - 1, hash, bytes)) return entry - 1;
+            slot = (slot + 1) & nameTableMask;
+        }
+
+        int id = appendName(hash, bytes);
+        nameTable.putInt(slot * Integer.BYTES, id + 1);
+        // Współczynnik wypełnienia co najwyżej 1/2 - krótkie sondowanie
+        if (nameCount * 2 > nameTableMask) growNameTable();
+        return id;
+    }
+
+    private int appendName(int hash, byte[] bytes) {
+        int entrySize = NAME_HEADER + bytes.length;
+        if (entrySize > ARENA_PAGE_SIZE) throw new IllegalArgumentException("Nazwa produktu jest zbyt długa.");
+
+        ByteBuffer page = arenaPages.isEmpty() ? null : arenaPages.get(arenaPages.size() - 1);
+        if (page == null || page.remaining() < entrySize) {
+            page = allocate(ARENA_PAGE_SIZE);
+            arenaPages.add(page);
+            offHeapBytes += ARENA_PAGE_SIZE;
+        }
+        long address = ((long) (arenaPages.size() - 1) << 32) | page.position();
+        page.putInt(hash).putInt(bytes.length).put(bytes);
+
+        int id = nameCount++;
+        if ((id & SEGMENT_MASK) == 0) {
+            nameAddresses.add(allocate((long) SEGMENT_ROWS * Long.BYTES));
+            offHeapBytes += (long) SEGMENT_ROWS * Long.BYTES;
+        }
+        nameAddresses.get(id >> SEGMENT_SHIFT).putLong((id & SEGMENT_MASK) * Long.BYTES, address);
+        return id;
+    }
+
+    private long addressOf(int id) {
+        return nameAddresses.get(id >> SEGMENT_SHIFT).getLong((id & SEGMENT_MASK) * Long.BYTES);
+    }
+
+    private boolean equalsName(int id, int hash, byte[] bytes) {
+        long address = addressOf(id);
+        ByteBuffer page = arenaPages.get((int) (address >>> 32));
+        int offset = (int) address;
+        if (page.getInt(offset) != hash || page.getInt(offset + Integer.BYTES) != bytes.length) return false;
+        int data = offset + NAME_HEADER;
+        for (int i = 0; i < bytes.length; i++) {
+            if (page.get(data + i) != bytes[i]) return false;
+        }
+        return true;
+    }
+
+    private String nameOf(int id) {
+        if (id == NO_NAME) return null;
+        long address = addressOf(id);
+        ByteBuffer page = arenaPages.get((int) (address >>> 32));
+        int offset = (int) address;
+        int length = page.getInt(offset + Integer.BYTES);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = page.get(offset + NAME_HEADER + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Podwaja tablicę mieszającą (skróty nazw są zapisane w arenie - bez ponownego liczenia). */
+    private void growNameTable() {
+        int capacity = (nameTableMask + 1) * 2;
+        ByteBuffer table = allocate((long) capacity * Integer.BYTES);
+        int mask = capacity - 1;
+        for (int id = 0; id < nameCount; id++) {
+            long address = addressOf(id);
+            int hash = arenaPages.get((int) (address >>> 32)).getInt((int) address);
+            int slot = hash & mask;
+            while (table.getInt(slot * Integer.BYTES) != 0) slot = (slot + 1) & mask;
+            table.putInt(slot * Integer.BYTES, id + 1);
+        }
+        offHeapBytes += table.capacity() - nameTable.capacity();
+        nameTable = table;
+        nameTableMask = mask;
+    }
+
+    /** Skrót bajtów nazwy z wymieszaniem bitów (niższe bity adresują tablicę). */
+    private static int hash(byte[] bytes) {
+        int h = 1;
+        for (byte b : bytes) h = 31 * h + b;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("Bufor przekracza 2 GB.");
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Kolumny jednego segmentu wierszy (osobny bufor bezpośredni na kolumnę).
+     */
+    private static final class Segment {
+        /** Bajty kolumn na wiersz: ilość, cena, kod kategorii, numer nazwy, dostępność. */
+        static final int ROW_BYTES = Integer.BYTES + Double.BYTES + Integer.BYTES + Integer.BYTES + 1;
+
+        final ByteBuffer quantities = allocate((long) SEGMENT_ROWS * Integer.BYTES);
+        final ByteBuffer prices = allocate((long) SEGMENT_ROWS * Double.BYTES);
+        final ByteBuffer categories = allocate((long) SEGMENT_ROWS * Integer.BYTES);
+        final ByteBuffer names = allocate((long) SEGMENT_ROWS * Integer.BYTES);
+        final ByteBuffer flags = allocate(SEGMENT_ROWS);
+    }
+}
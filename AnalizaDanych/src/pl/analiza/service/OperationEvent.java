@@ -0,0 +1,25 @@
+package pl.analiza.service;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * Wspólne pola zdarzeń JFR operacji na danych (import, zapis).
+ * <p>
+ * Zdarzenia są tworzone przez {@link OperationTimer}, gdy włączono je opcją
+ * {@link Metrics#setJfrEvents(boolean)}; czas trwania zdarzenia obejmuje całą operację.
+ * </p>
+ */
+abstract class OperationEvent extends Event {
+
+    @Label("Operacja")
+    String operation;
+
+    @Label("Wiersze")
+    long rows;
+
+    @Label("Bajty")
+    @DataAmount
+    long bytes;
+}
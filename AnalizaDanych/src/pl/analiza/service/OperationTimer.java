@@ -0,0 +1,156 @@
+package pl.analiza.service;
+
+import pl.analiza.model.MetricSnapshot;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Licznik czasu jednej operacji (np. import CSV, zapis do bazy, mediana kolumny).
+ * <p>
+ * Pomiar obejmuje blok try-with-resources:
+ * <pre>
+ * try (OperationTimer.Sample sample = TIMER.start()) {
+ *     ...
+ *     sample.rows(n).bytes(size);
+ * }
+ * </pre>
+ * Czas trafia do histogramu ({@link LatencyHistogram}), a liczby wierszy i bajtów są sumowane.
+ * Gdy pomiary są wyłączone ({@link Metrics#setEnabled(boolean)}), {@link #start()} zwraca
+ * wspólną, pustą próbkę - koszt to odczyt jednej flagi, bez pomiaru czasu i bez alokacji.
+ * </p>
+ * <p>
+ * Liczniki importów i zapisów mogą dodatkowo emitować zdarzenia JFR ({@link ImportEvent},
+ * {@link SaveEvent}) - niezależnie od zapisu czasów. Klasa jest bezpieczna wątkowo.
+ * </p>
+ */
+public final class OperationTimer implements OperationTimerMXBean {
+
+    /** Percentyle wyświetlane w podglądzie i udostępniane przez JMX. */
+    private static final double[] PERCENTILES = { 0.50, 0.90, 0.99, 0.999 };
+
+    private final String name;
+    private final Metrics.Kind kind;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    OperationTimer(String name, Metrics.Kind kind) {
+        this.name = name;
+        this.kind = kind;
+    }
+
+    /**
+     * Rozpoczyna pomiar.
+     *
+     * @return Próbka do zamknięcia po zakończeniu operacji (pusta, gdy pomiary są wyłączone).
+     */
+    public Sample start() {
+        boolean record = Metrics.isEnabled();
+        OperationEvent event = kind != Metrics.Kind.OPERATION && Metrics.isJfrEvents() ? newEvent() : null;
+        if (!record && event == null) return Sample.DISABLED;
+        return new Sample(this, record, event);
+    }
+
+    private OperationEvent newEvent() {
+        OperationEvent event = kind == Metrics.Kind.IMPORT ? new ImportEvent() : new SaveEvent();
+        if (!event.isEnabled()) return null; // Brak aktywnego nagrania JFR
+        event.operation = name;
+        event.begin();
+        return event;
+    }
+
+    /** @return Rodzaj operacji. */
+    public Metrics.Kind getKind() { return kind; }
+
+    /** @return Odczyt licznika (jeden przebieg po histogramie). */
+    public MetricSnapshot snapshot() {
+        long[] p = histogram.getPercentilesNanos(PERCENTILES);
+        return new MetricSnapshot(name, histogram.getCount(), histogram.getMeanNanos() / 1e6,
+                p[0] / 1e6, p[1] / 1e6, p[2] / 1e6, p[3] / 1e6,
+                histogram.getMaxNanos() / 1e6, rows.sum(), bytes.sum());
+    }
+
+    @Override public String getName() { return name; }
+    @Override public long getCount() { return histogram.getCount(); }
+    @Override public double getMeanMillis() { return histogram.getMeanNanos() / 1e6; }
+    @Override public double getP50Millis() { return histogram.getPercentileNanos(0.50) / 1e6; }
+    @Override public double getP90Millis() { return histogram.getPercentileNanos(0.90) / 1e6; }
+    @Override public double getP99Millis() { return histogram.getPercentileNanos(0.99) / 1e6; }
+    @Override public double getP999Millis() { return histogram.getPercentileNanos(0.999) / 1e6; }
+    @Override public double getMaxMillis() { return histogram.getMaxNanos() / 1e6; }
+    @Override public long getRows() { return rows.sum(); }
+    @Override public long getBytes() { return bytes.sum(); }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+        rows.reset();
+        bytes.reset();
+    }
+
+    /**
+     * Pojedynczy pomiar operacji. Obiekt używany jest przez jeden wątek - ten, który wykonuje operację.
+     */
+    public static final class Sample implements AutoCloseable {
+
+        /** Pusta próbka zwracana przy wyłączonych pomiarach (wszystkie metody nic nie robią). */
+        private static final Sample DISABLED = new Sample(null, false, null);
+
+        private final OperationTimer timer;
+        private final boolean record;
+        private final OperationEvent event;
+        private final long startNanos;
+        private long rows, bytes;
+
+        private Sample(OperationTimer timer, boolean record, OperationEvent event) {
+            this.timer = timer;
+            this.record = record;
+            this.event = event;
+            this.startNanos = record ? System.nanoTime() : 0;
+        }
+
+        /** Ustawia liczbę przetworzonych wierszy. */
+        public Sample rows(long rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        /** Ustawia liczbę przeczytanych lub zapisanych bajtów. */
+        public Sample bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        /**
+         * Zwraca odbiorcę liczącego przekazane elementy jako wiersze próbki
+         * (przy wyłączonych pomiarach - odbiorcę bez zmian).
+         */
+        public <T> Consumer<T> counting(Consumer<T> sink) {
+            if (timer == null) return sink;
+            return item -> {
+                rows++;
+                sink.accept(item);
+            };
+        }
+
+        /** Kończy pomiar (także po błędzie lub anulowaniu operacji). */
+        @Override
+        public void close() {
+            if (timer == null) return;
+            if (record) {
+                timer.histogram.record(System.nanoTime() - startNanos);
+                timer.rows.add(rows);
+                timer.bytes.add(bytes);
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.rows = rows;
+                    event.bytes = bytes;
+                    event.commit();
+                }
+            }
+        }
+    }
+}
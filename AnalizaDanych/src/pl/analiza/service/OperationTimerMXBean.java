@@ -0,0 +1,41 @@
+package pl.analiza.service;
+
+/**
+ * Interfejs JMX licznika czasu operacji ({@code pl.analiza:type=Timer,name=...}).
+ * Czasy podawane są w milisekundach.
+ */
+public interface OperationTimerMXBean {
+
+    /** @return Nazwa operacji. */
+    String getName();
+
+    /** @return Liczba wywołań. */
+    long getCount();
+
+    /** @return Średni czas. */
+    double getMeanMillis();
+
+    /** @return Mediana czasu. */
+    double getP50Millis();
+
+    /** @return 90. percentyl czasu. */
+    double getP90Millis();
+
+    /** @return 99. percentyl czasu. */
+    double getP99Millis();
+
+    /** @return 99,9. percentyl czasu. */
+    double getP999Millis();
+
+    /** @return Najdłuższy czas. */
+    double getMaxMillis();
+
+    /** @return Łączna liczba przetworzonych wierszy. */
+    long getRows();
+
+    /** @return Łączna liczba przeczytanych lub zapisanych bajtów. */
+    long getBytes();
+
+    /** Zeruje licznik. */
+    void reset();
+}
@@ -0,0 +1,44 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.math.BigDecimal;
+
+/**
+ * Kolumna sortowania produktów po stronie bazy (stronicowanie kluczem, tzw. keyset pagination).
+ * <p>
+ * Każda kolumna ma kolumnę rozstrzygającą (identyfikator produktu), dzięki czemu porządek
+ * jest jednoznaczny, a kolejną stronę można wskazać parą (wartość sortowania, id)
+ * ostatniego wiersza poprzedniej strony - bez kosztownego {@code OFFSET}.
+ * </p>
+ */
+public enum ProductSort {
+    ID("p.id", null),
+    PRODUCT("p.nazwa", "p.id"),
+    CATEGORY("k.nazwa", "p.id"),
+    QUANTITY("m.ilosc", "m.produkt_id"),
+    PRICE("c.cena", "c.produkt_id"),
+    AVAILABLE("m.dostepnosc", "m.produkt_id");
+
+    /** Wyrażenie SQL kolumny sortowania. */
+    final String column;
+    /** Kolumna rozstrzygająca remisy (null, gdy kolumna sortowania jest unikalna). */
+    final String tieBreaker;
+
+    ProductSort(String column, String tieBreaker) {
+        this.column = column;
+        this.tieBreaker = tieBreaker;
+    }
+
+    /** Wartość kolumny sortowania dla produktu (typ zgodny z kolumną w bazie). */
+    Object keyOf(DataPoint dp) {
+        switch (this) {
+            case PRODUCT: return dp.getProduct();
+            case CATEGORY: return dp.getCategory();
+            case QUANTITY: return dp.getQuantity();
+            case PRICE: return BigDecimal.valueOf(dp.getPrice()); // kolumna numeric - porównanie bez konwersji na double
+            case AVAILABLE: return dp.isAvailable();
+            default: return dp.getId();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package pl.analiza.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Strumieniowy szkic kwantyli KLL (Karnin, Lang, Liberty).
+ * <p>
+ * Pozwala wyznaczyć przybliżoną medianę, 90. czy 99. percentyl dowolnie dużego strumienia wartości
+ * przy ograniczonej pamięci - rzędu {@code k} wartości, niezależnie od liczby elementów.
+ * Błąd rangi (część elementów między wynikiem a kwantylem dokładnym) jest ograniczony
+ * przez parametr dokładności {@code k}: większe {@code k} to mniejszy błąd i więcej pamięci.
+ * </p>
+ * <p>
+ * Szkic składa się z poziomów (kompaktorów). Wartość na poziomie h reprezentuje 2^h elementów
+ * strumienia. Gdy poziom się zapełni, jest sortowany, a co druga wartość (losowo parzyste
+ * lub nieparzyste) przechodzi na poziom wyżej. Ziarno losowania jest stałe, więc ten sam
+ * strumień daje zawsze ten sam wynik. Klasa nie jest bezpieczna wątkowo.
+ * </p>
+ */
+public class QuantileSketch {
+
+    /** Współczynnik zmniejszania pojemności niższych poziomów. */
+    private static final double LEVEL_DECAY = 2.0 / 3.0;
+
+    /** Minimalna pojemność poziomu. */
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private final List<Compactor> levels = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(0x4B4C4CL);
+    private long count;
+    private int size;
+    private int maxSize;
+
+    /**
+     * Tworzy szkic o zadanym parametrze dokładności.
+     *
+     * @param k Pojemność najwyższego poziomu (np. 200 daje błąd rangi ok. 1,3%).
+     */
+    public QuantileSketch(int k) {
+        if (k < 8) throw new IllegalArgumentException("Parametr dokładności k musi wynosić co najmniej 8.");
+        this.k = k;
+        grow();
+    }
+
+    /**
+     * Tworzy szkic, którego błąd rangi (z prawdopodobieństwem ok. 99%) nie przekracza podanej wartości.
+     *
+     * @param rankError Dopuszczalny błąd rangi jako ułamek liczby elementów (np. 0.01 = 1%).
+     * @return Nowy, pusty szkic.
+     */
+    public static QuantileSketch withRankError(double rankError) {
+        if (!(rankError > 0 && rankError < 1)) throw new IllegalArgumentException("Błąd rangi musi należeć do (0, 1).");
+        // Empiryczna zależność błędu od k dla szkicu KLL: eps ≈ 2.296 / k^0.9723
+        int k = (int) Math.ceil(Math.pow(2.296 / rankError, 1 / 0.9723));
+        return new QuantileSketch(Math.max(8, k));
+    }
+
+    /** @return Parametr dokładności k. */
+    public int getK() { return k; }
+
+    /** @return Liczba wartości dodanych do szkicu. */
+    public long getCount() { return count; }
+
+    /** @return Liczba wartości przechowywanych w szkicu (miara zajętej pamięci). */
+    public int getRetainedCount() { return size; }
+
+    /**
+     * Dodaje wartość do szkicu (wartości NaN są pomijane).
+     *
+     * @param value Wartość ze strumienia.
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) return;
+        levels.get(0).add(value);
+        count++;
+        size++;
+        if (size >= maxSize) compress();
+    }
+
+    /**
+     * Zwraca przybliżony kwantyl rzędu q (np. 0.5 = mediana, 0.9 = 90. percentyl).
+     *
+     * @param q Rząd kwantyla z przedziału [0, 1].
+     * @return Wartość ze strumienia, której ranga jest bliska q * n (0.0 dla pustego szkicu).
+     */
+    public double getQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Rząd kwantyla musi należeć do [0, 1].");
+        if (count == 0) return 0.0;
+
+        // Wartości wszystkich poziomów z wagami 2^h, posortowane po wartości
+        double[] values = new double[size];
+        long[] weights = new long[size];
+        int n = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            Compactor c = levels.get(h);
+            for (int i = 0; i < c.size; i++) {
+                values[n] = c.items[i];
+                weights[n++] = 1L << h;
+            }
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        long total = 0;
+        for (int i = 0; i < n; i++) total += weights[i];
+        double target = q * total;
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[order[i]];
+            if (cumulative >= target) return values[order[i]];
+        }
+        return values[order[n - 1]];
+    }
+
+    /** Pojemność poziomu h - niższe poziomy są geometrycznie mniejsze od najwyższego. */
+    private int capacity(int h) {
+        int depth = levels.size() - h - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_DECAY, depth)));
+    }
+
+    private void grow() {
+        levels.add(new Compactor());
+        maxSize = 0;
+        for (int h = 0; h < levels.size(); h++) maxSize += capacity(h);
+    }
+
+    /** Kompaktuje najniższy przepełniony poziom (leniwie - jeden poziom na wywołanie). */
+    private void compress() {
+        for (int h = 0; h < levels.size(); h++) {
+            Compactor c = levels.get(h);
+            if (c.size >= capacity(h)) {
+                if (h + 1 >= levels.size()) grow();
+                int before = c.size;
+                int moved = c.compactInto(levels.get(h + 1), random.nextBoolean());
+                size -= before - c.size - moved;
+                if (size < maxSize) return;
+            }
+        }
+    }
+
+    /**
+     * Poziom szkicu - bufor wartości o jednakowej wadze.
+     */
+    private static final class Compactor {
+        private double[] items = new double[16];
+        private int size;
+
+        void add(double v) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = v;
+        }
+
+        /**
+         * Sortuje bufor i przenosi co drugą wartość do poziomu wyżej (przy nieparzystej liczbie
+         * największa wartość zostaje na poziomie).
+         *
+         * @return Liczba wartości przeniesionych wyżej.
+         */
+        int compactInto(Compactor up, boolean odd) {
+            Arrays.sort(items, 0, size);
+            int keep = size % 2;
+            int end = size - keep;
+            int moved = 0;
+            for (int i = odd ? 1 : 0; i < end; i += 2, moved++) up.add(items[i]);
+            if (keep == 1) items[0] = items[size - 1];
+            size = keep;
+            return moved;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package pl.analiza.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Zdarzenie JFR pojedynczego zapisu (baza danych, migawka).
+ */
+@Name("pl.analiza.Save")
+@Label("Zapis danych")
+@Category({"Analiza Danych", "Operacje"})
+@Description("Zapis zbioru produktów: cel, liczba wierszy i zapisanych bajtów")
+@StackTrace(false)
+final class SaveEvent extends OperationEvent {
+}
@@ -0,0 +1,260 @@
+package pl.analiza.service;
+
+import pl.analiza.model.DataPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Indeks wyszukiwania pełnotekstowego po nazwie produktu i kategorii.
+ * <p>
+ * Teksty są normalizowane (małe litery) raz - przy dodawaniu wierszy. Każda różna nazwa
+ * trafia do słownika pola, a słownik ma odwrócony indeks trigramów (trzyznakowych fragmentów):
+ * dla zapytania o długości co najmniej 3 sprawdzane są tylko nazwy zawierające wszystkie jego
+ * trigramy. Wiersze przechowują numery nazw ze słowników, więc wyznaczenie pasujących wierszy
+ * to przebieg po tablicach liczb, bez operacji na napisach.
+ * </p>
+ * <p>
+ * Gdy zapytanie rozszerza poprzednie (np. "mle" -&gt; "mlek"), przeszukiwane są tylko nazwy
+ * i wiersze z poprzedniego wyniku. Każda zmiana indeksu unieważnia ten wynik.
+ * </p>
+ * <p>
+ * Usunięte wiersze zostawiają puste miejsce (numery pozostałych wierszy się nie zmieniają), a edycja
+ * podmienia tylko numery nazw wiersza - trigramy dostaje wyłącznie nowa nazwa. Gdy puste miejsca
+ * stanowią ponad połowę indeksu, jest on budowany od nowa z pozostałych wierszy.
+ * Klasa nie jest bezpieczna wątkowo - powinna być używana przez jeden wątek wyszukiwania.
+ * </p>
+ */
+public class SearchIndex {
+
+    /** Zaindeksowane wiersze (null = wiersz usunięty). */
+    private final List<DataPoint> docs = new ArrayList<>();
+    private int removedDocs;
+    private int[] productIds = new int[16];
+    private int[] categoryIds = new int[16];
+    private final TermDictionary products = new TermDictionary();
+    private final TermDictionary categories = new TermDictionary();
+
+    /** Poprzednie zapytanie i jego wynik (do zawężania przy dopisywaniu znaków). */
+    private String lastQuery;
+    private BitSet lastProducts, lastCategories;
+    private int[] lastResult;
+
+    /** Usuwa wszystkie wiersze i buduje indeks od nowa z podanej listy. */
+    public void rebuild(List<? extends DataPoint> rows) {
+        docs.clear();
+        removedDocs = 0;
+        products.clear();
+        categories.clear();
+        append(rows);
+    }
+
+    /** Dopisuje wiersze na końcu indeksu (numery wierszy są kolejnymi pozycjami). */
+    public void append(List<? extends DataPoint> rows) {
+        int size = docs.size();
+        int required = size + rows.size();
+        if (required > productIds.length) {
+            int capacity = Math.max(required, productIds.length + (productIds.length >> 1));
+            productIds = Arrays.copyOf(productIds, capacity);
+            categoryIds = Arrays.copyOf(categoryIds, capacity);
+        }
+        for (DataPoint dp : rows) {
+            productIds[size] = products.idOf(normalize(dp.getProduct()));
+            categoryIds[size] = categories.idOf(normalize(dp.getCategory()));
+            docs.add(dp);
+            size++;
+        }
+        lastQuery = null;
+    }
+
+    /**
+     * Usuwa wiersze z indeksu (porównanie tożsamości obiektów). Numery pozostałych wierszy się nie zmieniają,
+     * chyba że usunięte wiersze przeważają i indeks jest budowany od nowa.
+     */
+    public void remove(Collection<? extends DataPoint> rows) {
+        Set<DataPoint> targets = identitySet(rows);
+        for (int doc = 0; doc < docs.size() && !targets.isEmpty(); doc++) {
+            DataPoint dp = docs.get(doc);
+            if (dp != null && targets.remove(dp)) {
+                docs.set(doc, null);
+                removedDocs++;
+            }
+        }
+        lastQuery = null;
+        if (removedDocs > docs.size() / 2) compact();
+    }
+
+    /** Aktualizuje nazwy zmienionych wierszy (porównanie tożsamości obiektów); pozostałe wiersze bez zmian. */
+    public void update(Collection<? extends DataPoint> rows) {
+        Set<DataPoint> targets = identitySet(rows);
+        for (int doc = 0; doc < docs.size() && !targets.isEmpty(); doc++) {
+            DataPoint dp = docs.get(doc);
+            if (dp != null && targets.remove(dp)) {
+                productIds[doc] = products.idOf(normalize(dp.getProduct()));
+                categoryIds[doc] = categories.idOf(normalize(dp.getCategory()));
+            }
+        }
+        lastQuery = null;
+    }
+
+    private static Set<DataPoint> identitySet(Collection<? extends DataPoint> rows) {
+        Set<DataPoint> set = Collections.newSetFromMap(new IdentityHashMap<>(rows.size()));
+        set.addAll(rows);
+        return set;
+    }
+
+    /** Buduje indeks od nowa z pozostałych wierszy (usuwa puste miejsca i nieużywane nazwy). */
+    private void compact() {
+        List<DataPoint> live = new ArrayList<>(docs.size() - removedDocs);
+        for (DataPoint dp : docs) {
+            if (dp != null) live.add(dp);
+        }
+        rebuild(live);
+    }
+
+    /** @return Liczba numerów wierszy w indeksie (łącznie z pustymi miejscami po usuniętych wierszach). */
+    public int size() { return docs.size(); }
+
+    /** @return Zaindeksowany wiersz o podanym numerze (null, gdy został usunięty). */
+    public DataPoint get(int doc) { return docs.get(doc); }
+
+    /**
+     * Wyszukuje wiersze, których nazwa produktu lub kategoria zawiera zapytanie (bez względu na wielkość liter).
+     *
+     * @param query Zapytanie (puste = wszystkie wiersze).
+     * @return Numery pasujących wierszy w kolejności rosnącej.
+     */
+    public int[] search(String query) {
+        String q = normalize(query);
+        boolean narrowing = lastQuery != null && q.contains(lastQuery);
+
+        BitSet productMatches = products.match(q, narrowing ? lastProducts : null);
+        BitSet categoryMatches = categories.match(q, narrowing ? lastCategories : null);
+
+        int[] result;
+        if (narrowing) {
+            // Wynik rozszerzonego zapytania jest podzbiorem poprzedniego wyniku
+            int n = 0;
+            result = new int[lastResult.length];
+            for (int doc : lastResult) {
+                if (productMatches.get(productIds[doc]) || categoryMatches.get(categoryIds[doc])) result[n++] = doc;
+            }
+            result = Arrays.copyOf(result, n);
+        } else {
+            int size = docs.size();
+            int n = 0;
+            result = new int[Math.min(size, 1024)];
+            for (int doc = 0; doc < size; doc++) {
+                if ((productMatches.get(productIds[doc]) || categoryMatches.get(categoryIds[doc])) && docs.get(doc) != null) {
+                    if (n == result.length) result = Arrays.copyOf(result, Math.min(size, n * 2));
+                    result[n++] = doc;
+                }
+            }
+            result = Arrays.copyOf(result, n);
+        }
+
+        lastQuery = q;
+        lastProducts = productMatches;
+        lastCategories = categoryMatches;
+        lastResult = result;
+        return result;
+    }
+
+    /** Normalizuje tekst do porównań (małe litery; null jako pusty tekst). */
+    static String normalize(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Słownik różnych wartości pola z odwróconym indeksem trigramów.
+     */
+    private static final class TermDictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> terms = new ArrayList<>();
+        /** Trigram (trzy znaki upakowane w long) -&gt; rosnąca lista numerów wartości. */
+        private final Map<Long, IntList> postings = new HashMap<>();
+
+        void clear() {
+            ids.clear();
+            terms.clear();
+            postings.clear();
+        }
+
+        int idOf(String term) {
+            Integer id = ids.get(term);
+            if (id != null) return id;
+            int newId = terms.size();
+            ids.put(term, newId);
+            terms.add(term);
+            for (int i = 0; i + 3 <= term.length(); i++) {
+                IntList list = postings.computeIfAbsent(trigram(term, i), k -> new IntList());
+                if (list.size == 0 || list.items[list.size - 1] != newId) list.add(newId);
+            }
+            return newId;
+        }
+
+        /**
+         * Wyznacza wartości zawierające zapytanie.
+         *
+         * @param q          Znormalizowane zapytanie.
+         * @param candidates Wartości do sprawdzenia (null = wszystkie).
+         */
+        BitSet match(String q, BitSet candidates) {
+            BitSet result = new BitSet(terms.size());
+            if (q.isEmpty()) {
+                result.set(0, terms.size());
+                return result;
+            }
+            if (candidates == null && q.length() >= 3) {
+                // Najkrótsza lista trigramu zapytania ogranicza liczbę sprawdzanych wartości
+                IntList shortest = null;
+                for (int i = 0; i + 3 <= q.length(); i++) {
+                    IntList list = postings.get(trigram(q, i));
+                    if (list == null) return result;
+                    if (shortest == null || list.size < shortest.size) shortest = list;
+                }
+                for (int i = 0; i < shortest.size; i++) {
+                    int id = shortest.items[i];
+                    if (terms.get(id).contains(q)) result.set(id);
+                }
+                return result;
+            }
+            if (candidates == null) {
+                for (int id = 0; id < terms.size(); id++) {
+                    if (terms.get(id).contains(q)) result.set(id);
+                }
+            } else {
+                for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+                    if (terms.get(id).contains(q)) result.set(id);
+                }
+            }
+            return result;
+        }
+
+        private static long trigram(String s, int i) {
+            return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+    }
+
+    /**
+     * Rosnąca lista liczb int (lista wystąpień trigramu).
+     */
+    private static final class IntList {
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int v) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package pl.analiza.service;
+
+import pl.analiza.model.CategoryDictionary;
+import pl.analiza.model.DataPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Serwis zapisu i odczytu binarnej migawki (snapshotu) zbioru danych.
+ * <p>
+ * Migawka ma układ kolumnowy, dzięki czemu można ją szybko odtworzyć bez bazy danych
+ * i bez ponownego parsowania plików CSV/Excel:
+ * </p>
+ * <pre>
+ * nagłówek (72 B): magic, wersja, liczba wierszy, rozmiar słownika, szerokość kodu kategorii,
+ *                  przesunięcia sześciu sekcji
+ * słownik kategorii:  [int długość][UTF-8] ...
+ * kody kategorii:     rowCount × (1 | 2 | 4 B)
+ * ilości:             rowCount × int
+ * ceny:               rowCount × double
+ * dostępność:         ceil(rowCount / 64) × long (mapa bitowa)
+ * nazwy produktów:    [int długość][UTF-8] ... (w kolejności wierszy)
+ * </pre>
+ * <p>
+ * Wszystkie liczby zapisywane są w porządku little-endian, a sekcje wyrównane do 8 bajtów.
+ * Odczyt odbywa się przez mapowanie pliku do pamięci.
+ * </p>
+ */
+public class SnapshotService {
+
+    /** Sygnatura pliku ("ADSN"). */
+    private static final int MAGIC = 0x4E534441;
+
+    /** Wersja formatu. */
+    private static final int VERSION = 1;
+
+    /** Rozmiar nagłówka w bajtach. */
+    private static final int HEADER_SIZE = 72;
+
+    /** Rozmiar bufora zapisu. */
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    /** Maksymalny rozmiar okna mapowania sekcji nazw. */
+    private static final int NAMES_WINDOW = 1 << 30;
+
+    // Czasy zapisu i odczytu migawek (wiersze i rozmiar pliku)
+    private static final OperationTimer SAVE_TIMER = Metrics.timer("snapshot.save", Metrics.Kind.SAVE);
+    private static final OperationTimer IMPORT_TIMER = Metrics.timer("snapshot.import", Metrics.Kind.IMPORT);
+
+    // ==========================================
+    // 1. ZAPIS
+    // ==========================================
+
+    /**
+     * Zapisuje listę produktów do pliku migawki (nadpisując istniejący plik).
+     *
+     * @param data Lista produktów.
+     * @param file Plik docelowy.
+     * @throws IOException Błąd zapisu pliku.
+     */
+    public void save(List<DataPoint> data, File file) throws IOException {
+        int rows = data.size();
+
+        // Słownik kategorii (kod = kolejność pierwszego wystąpienia)
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> categories = new ArrayList<>();
+        int[] codes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            String cat = data.get(i).getCategory();
+            Integer code = dictionary.get(cat);
+            if (code == null) {
+                code = categories.size();
+                dictionary.put(cat, code);
+                categories.add(cat);
+            }
+            codes[i] = code;
+        }
+        int codeWidth = categories.size() <= 0xFF ? 1 : categories.size() <= 0xFFFF ? 2 : 4;
+
+        try (OperationTimer.Sample sample = SAVE_TIMER.start();
+             FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(ch);
+            out.skip(HEADER_SIZE);
+
+            long dictOffset = out.position();
+            for (String cat : categories) out.putString(cat);
+            out.align();
+
+            long codesOffset = out.position();
+            for (int code : codes) {
+                if (codeWidth == 1) out.putByte((byte) code);
+                else if (codeWidth == 2) out.putShort((short) code);
+                else out.putInt(code);
+            }
+            out.align();
+
+            long qtyOffset = out.position();
+            for (DataPoint dp : data) out.putInt(dp.getQuantity());
+
+            out.align();
+            long priceOffset = out.position();
+            for (DataPoint dp : data) out.putDouble(dp.getPrice());
+
+            long availOffset = out.position();
+            long word = 0;
+            for (int i = 0; i < rows; i++) {
+                if (data.get(i).isAvailable()) word |= 1L << (i & 63);
+                if ((i & 63) == 63) { out.putLong(word); word = 0; }
+            }
+            if ((rows & 63) != 0) out.putLong(word);
+
+            long namesOffset = out.position();
+            for (DataPoint dp : data) out.putString(dp.getProduct());
+            out.flush();
+
+            // Nagłówek zapisywany na końcu, gdy znane są przesunięcia sekcji
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(rows)
+                    .putInt(categories.size()).putInt(codeWidth)
+                    .putLong(dictOffset).putLong(codesOffset).putLong(qtyOffset)
+                    .putLong(priceOffset).putLong(availOffset).putLong(namesOffset);
+            header.flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+            sample.rows(rows).bytes(ch.size());
+        }
+    }
+
+    // ==========================================
+    // 2. ODCZYT
+    // ==========================================
+
+    /**
+     * Wczytuje całą migawkę do listy produktów.
+     *
+     * @param file Plik migawki.
+     * @return Lista produktów w kolejności zapisu.
+     * @throws IOException Błąd odczytu lub nieprawidłowy format pliku.
+     */
+    public List<DataPoint> load(File file) throws IOException {
+        List<DataPoint> result = new ArrayList<>();
+        read(file, result::add, null);
+        return result;
+    }
+
+    /**
+     * Tworzy źródło dla potoku importu ({@link ImportPipeline}) odczytujące migawkę.
+     *
+     * @param file Plik migawki.
+     * @return Źródło publikujące produkty w kolejności zapisu.
+     */
+    public ImportSource source(File file) {
+        return (sink, progress) -> read(file, sink, progress);
+    }
+
+    /**
+     * Odczytuje migawkę przez mapowanie sekcji pliku do pamięci.
+     */
+    private void read(File file, Consumer<DataPoint> sink, DoubleConsumer progress) throws IOException {
+        try (OperationTimer.Sample sample = IMPORT_TIMER.start();
+             FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            sample.bytes(ch.size());
+            if (ch.size() < HEADER_SIZE) throw new IOException("Plik nie jest migawką danych.");
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) throw new IOException("Plik nie jest migawką danych.");
+            if (header.getInt(4) != VERSION) throw new IOException("Nieobsługiwana wersja migawki: " + header.getInt(4));
+
+            long rows = header.getLong(8);
+            int dictSize = header.getInt(16);
+            int codeWidth = header.getInt(20);
+            long dictOffset = header.getLong(24);
+            long codesOffset = header.getLong(32);
+            long qtyOffset = header.getLong(40);
+            long priceOffset = header.getLong(48);
+            long availOffset = header.getLong(56);
+            long namesOffset = header.getLong(64);
+            if (rows * Double.BYTES > Integer.MAX_VALUE) throw new IOException("Migawka jest zbyt duża.");
+            int n = (int) rows;
+
+            // Słownik kategorii
+            ByteBuffer dict = map(ch, dictOffset, codesOffset - dictOffset);
+            String[] categories = new String[dictSize];
+            byte[] scratch = new byte[64];
+            for (int i = 0; i < dictSize; i++) {
+                int len = dict.getInt();
+                if (len < 0) continue;
+                if (scratch.length < len) scratch = new byte[len];
+                dict.get(scratch, 0, len);
+                categories[i] = CategoryDictionary.intern(new String(scratch, 0, len, StandardCharsets.UTF_8));
+            }
+
+            ByteBuffer codes = map(ch, codesOffset, (long) n * codeWidth);
+            ByteBuffer qty = map(ch, qtyOffset, (long) n * Integer.BYTES);
+            ByteBuffer price = map(ch, priceOffset, (long) n * Double.BYTES);
+            ByteBuffer avail = map(ch, availOffset, ((n + 63L) / 64) * Long.BYTES);
+            NameCursor names = new NameCursor(ch, namesOffset);
+            StringPool namePool = new StringPool();
+
+            int step = Math.max(1, n / 100);
+            for (int i = 0; i < n; i++) {
+                int code = codeWidth == 1 ? codes.get(i) & 0xFF
+                        : codeWidth == 2 ? codes.getShort(i * 2) & 0xFFFF
+                        : codes.getInt(i * 4);
+                boolean available = (avail.getLong((i >>> 6) * 8) & (1L << (i & 63))) != 0;
+
+                sink.accept(new DataPoint(namePool.intern(names.next()), categories[code],
+                        qty.getInt(i * 4), price.getDouble(i * 8), available));
+                if (progress != null && i % step == 0) progress.accept((double) i / n);
+            }
+            sample.rows(n);
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long offset, long length) throws IOException {
+        return ch.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Sekwencyjny odczyt sekcji nazw produktów mapowanej oknami (sekcja może przekraczać 2 GB).
+     */
+    private static final class NameCursor {
+        private final FileChannel ch;
+        private final long end;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private byte[] scratch = new byte[256];
+
+        NameCursor(FileChannel ch, long offset) throws IOException {
+            this.ch = ch;
+            this.end = ch.size();
+            remap(offset);
+        }
+
+        /** Odczyt kolejnego napisu [int długość][UTF-8] (-1 = null). */
+        String next() throws IOException {
+            if (window.remaining() < Integer.BYTES) remap(windowStart + window.position());
+            int len = window.getInt(window.position());
+            if (window.remaining() < Integer.BYTES + Math.max(len, 0)) remap(windowStart + window.position());
+
+            window.position(window.position() + Integer.BYTES);
+            if (len < 0) return null;
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            window.get(scratch, 0, len);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        private void remap(long position) throws IOException {
+            windowStart = position;
+            window = ch.map(FileChannel.MapMode.READ_ONLY, position, Math.min(NAMES_WINDOW, end - position));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Buforowany zapis sekwencyjny do kanału pliku.
+     */
+    private static final class Writer {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Writer(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        long position() { return written + buf.position(); }
+
+        void skip(int bytes) throws IOException {
+            for (int i = 0; i < bytes; i++) putByte((byte) 0);
+        }
+
+        /** Wyrównanie do granicy 8 bajtów. */
+        void align() throws IOException {
+            while ((position() & 7) != 0) putByte((byte) 0);
+        }
+
+        void putByte(byte v) throws IOException { ensure(1); buf.put(v); }
+        void putShort(short v) throws IOException { ensure(2); buf.putShort(v); }
+        void putInt(int v) throws IOException { ensure(4); buf.putInt(v); }
+        void putLong(long v) throws IOException { ensure(8); buf.putLong(v); }
+        void putDouble(double v) throws IOException { ensure(8); buf.putDouble(v); }
+
+        void putString(String s) throws IOException {
+            if (s == null) { putInt(-1); return; }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int off = 0;
+            while (off < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, chunk);
+                off += chunk;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) written += ch.write(buf);
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package pl.analiza.service;
+
+/**
+ * Pole produktu, na którym wykonywane są obliczenia statystyczne.
+ * <p>
+ * Etykieta odpowiada nazwie wyświetlanej w interfejsie (np. w liście wyboru kalkulatora).
+ * </p>
+ */
+public enum StatField {
+    QUANTITY("Ilość"),
+    PRICE("Cena"),
+    TOTAL_VALUE("Wartość Całkowita");
+
+    private final String label;
+
+    StatField(String label) {
+        this.label = label;
+    }
+
+    /** @return Nazwa pola wyświetlana w interfejsie. */
+    public String getLabel() { return label; }
+
+    /**
+     * Wyszukuje pole po etykiecie z interfejsu.
+     *
+     * @param label Etykieta (np. "Cena").
+     * @return Pole lub null, jeśli etykieta jest nieznana.
+     */
+    public static StatField fromLabel(String label) {
+        for (StatField f : values()) {
+            if (f.label.equals(label)) return f;
+        }
+        return null;
+    }
+}
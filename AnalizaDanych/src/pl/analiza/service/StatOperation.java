@@ -0,0 +1,41 @@
+package pl.analiza.service;
+
+/**
+ * Operacja statystyczna dostępna w kalkulatorze.
+ * <p>
+ * Etykieta odpowiada nazwie wyświetlanej w interfejsie (np. w liście wyboru kalkulatora).
+ * </p>
+ */
+public enum StatOperation {
+    SUM("Suma"),
+    AVERAGE("Średnia"),
+    MIN("Minimum"),
+    MAX("Maksimum"),
+    MEDIAN("Mediana"),
+    STD_DEV("Odchylenie Std."),
+    VARIANCE("Wariancja"),
+    P90("Percentyl 90"),
+    P99("Percentyl 99");
+
+    private final String label;
+
+    StatOperation(String label) {
+        this.label = label;
+    }
+
+    /** @return Nazwa operacji wyświetlana w interfejsie. */
+    public String getLabel() { return label; }
+
+    /**
+     * Wyszukuje operację po etykiecie z interfejsu.
+     *
+     * @param label Etykieta (np. "Suma").
+     * @return Operacja lub null, jeśli etykieta jest nieznana.
+     */
+    public static StatOperation fromLabel(String label) {
+        for (StatOperation op : values()) {
+            if (op.label.equals(label)) return op;
+        }
+        return null;
+    }
+}
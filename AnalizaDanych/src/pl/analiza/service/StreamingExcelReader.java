@@ -0,0 +1,303 @@
+package pl.analiza.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import pl.analiza.model.DataPoint;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Strumieniowy czytnik plików Excel (.xlsx) oparty o zdarzeniowe API biblioteki Apache POI.
+ * <p>
+ * Zamiast budować pełny model skoroszytu ({@code XSSFWorkbook}), arkusz jest czytany parserem SAX
+ * wiersz po wierszu, a gotowe produkty są od razu przekazywane do odbiorcy. Zużycie pamięci
+ * nie zależy od liczby wierszy (w pamięci pozostaje jedynie tabela współdzielonych napisów).
+ * </p>
+ * <p>
+ * Reguły konwersji komórek w kolumnach A–E są takie same jak w dotychczasowym imporcie:
+ * komórki z formułą, błędem lub puste nie są interpretowane i dają wartość domyślną.
+ * </p>
+ */
+public class StreamingExcelReader {
+
+    /**
+     * Wczytuje pierwszy arkusz pliku i przekazuje kolejne produkty do odbiorcy (z pominięciem nagłówka).
+     *
+     * @param file Plik Excel (.xlsx).
+     * @param sink Odbiorca wczytanych produktów (wywoływany w kolejności wierszy).
+     * @throws IOException Błąd odczytu lub nieprawidłowa struktura pliku.
+     */
+    public void read(File file, Consumer<DataPoint> sink) throws IOException {
+        read(file, sink, null);
+    }
+
+    /**
+     * Wczytuje pierwszy arkusz pliku, zgłaszając postęp jako część przeczytanego XML arkusza.
+     *
+     * @param file     Plik Excel (.xlsx).
+     * @param sink     Odbiorca wczytanych produktów.
+     * @param progress Odbiorca postępu 0..1 (może być null).
+     * @throws IOException Błąd odczytu lub nieprawidłowa struktura pliku.
+     */
+    public void read(File file, Consumer<DataPoint> sink, DoubleConsumer progress) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException("Nieprawidłowy plik Excel: " + e.getMessage(), e);
+        }
+
+        try {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+            // Pierwszy arkusz w kolejności skoroszytu (odpowiednik getSheetAt(0))
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            if (!sheets.hasNext()) return;
+
+            try (InputStream sheet = new ProgressInputStream(sheets.next(), sheets.getSheetPart().getSize(), progress)) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(strings, new StringPool(), sink));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Błąd odczytu arkusza: " + e.getMessage(), e);
+        } finally {
+            // Pakiet otwarty tylko do odczytu - zamknięcie bez zapisu zmian
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Strumień zliczający przeczytane bajty arkusza i zgłaszający postęp.
+     */
+    private static final class ProgressInputStream extends FilterInputStream {
+        private static final long STEP = 1024 * 1024;
+
+        private final double total;
+        private final DoubleConsumer progress;
+        private long read;
+        private long nextReport = STEP;
+
+        ProgressInputStream(InputStream in, long total, DoubleConsumer progress) {
+            super(in);
+            this.total = total;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        private void count(int n) {
+            read += n;
+            if (progress != null && read >= nextReport) {
+                // Rozmiar części archiwum może być nieznany (-1) - wtedy postęp nieokreślony
+                progress.accept(total > 0 ? Math.min(1.0, read / total) : -1);
+                nextReport = read + STEP;
+            }
+        }
+    }
+
+    /** Typ komórki odpowiadający {@code CellType} z modelu XSSFWorkbook. */
+    private enum Kind { BLANK, NUMERIC, STRING, BOOLEAN, OTHER }
+
+    /**
+     * Handler SAX zamieniający elementy {@code <row>/<c>/<v>} arkusza na obiekty DataPoint.
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        private static final int COLUMNS = 5;
+
+        private final ReadOnlySharedStringsTable strings;
+        private final StringPool names;
+        private final Consumer<DataPoint> sink;
+
+        // Stan bieżącego wiersza (kolumny A-E)
+        private final Kind[] kinds = new Kind[COLUMNS];
+        private final String[] texts = new String[COLUMNS];
+        private final double[] numbers = new double[COLUMNS];
+        private final boolean[] booleans = new boolean[COLUMNS];
+        private int rowNum = -1;
+        /** Czy wiersz ma komórkę z nieprawidłową liczbą (wiersz jest pomijany, jak w imporcie CSV). */
+        private boolean malformed;
+
+        // Stan bieżącej komórki
+        private int column = -1;
+        private String cellType;
+        private boolean hasFormula;
+        private boolean hasValue;
+        private boolean collecting;
+        private final StringBuilder value = new StringBuilder();
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StringPool names, Consumer<DataPoint> sink) {
+            this.strings = strings;
+            this.names = names;
+            this.sink = sink;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+            switch (localName) {
+                case "row":
+                    String r = attrs.getValue("r");
+                    try {
+                        rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+                    } catch (NumberFormatException e) {
+                        throw new SAXException("Nieprawidłowy numer wiersza po wierszu " + (rowNum + 1) + ": " + r, e);
+                    }
+                    for (int i = 0; i < COLUMNS; i++) kinds[i] = Kind.BLANK;
+                    column = -1;
+                    malformed = false;
+                    break;
+                case "c":
+                    String ref = attrs.getValue("r");
+                    column = ref != null ? columnIndex(ref) : column + 1;
+                    cellType = attrs.getValue("t");
+                    hasFormula = false;
+                    hasValue = false;
+                    value.setLength(0);
+                    break;
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "v":
+                case "t": // tekst w komórce typu inlineStr (<is><t>...</t></is>)
+                    collecting = true;
+                    hasValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) value.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    collecting = false;
+                    break;
+                case "c":
+                    if (column >= 0 && column < COLUMNS) storeCell(column);
+                    break;
+                case "row":
+                    // Pominięcie nagłówka (pierwszy wiersz)
+                    if (rowNum == 0) break;
+                    if (malformed) {
+                        // Logowanie błędu, jeśli dane w kolumnie liczbowej są nieprawidłowe
+                        System.out.println("Błąd formatu liczby w wierszu: " + (rowNum + 1));
+                    } else {
+                        sink.accept(toDataPoint());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /** Zapamiętuje typ i wartość zakończonej komórki. */
+        private void storeCell(int col) {
+            if (hasFormula) { kinds[col] = Kind.OTHER; return; }
+            if (!hasValue) { kinds[col] = Kind.BLANK; return; }
+
+            String raw = value.toString();
+            try {
+                if (cellType == null || "n".equals(cellType)) {
+                    kinds[col] = Kind.NUMERIC;
+                    numbers[col] = Double.parseDouble(raw);
+                } else if ("s".equals(cellType)) {
+                    kinds[col] = Kind.STRING;
+                    texts[col] = strings.getItemAt(Integer.parseInt(raw)).getString();
+                } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                    kinds[col] = Kind.STRING;
+                    texts[col] = raw;
+                } else if ("b".equals(cellType)) {
+                    kinds[col] = Kind.BOOLEAN;
+                    booleans[col] = "1".equals(raw);
+                } else {
+                    kinds[col] = Kind.OTHER; // np. błąd (#DIV/0!)
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // Indeks tekstu spoza tabeli współdzielonej (uszkodzony plik) - jak błędna liczba.
+                // Atrybut count tabeli liczy wystąpienia, a nie unikalne teksty, więc nie nadaje się do kontroli zakresu
+                kinds[col] = Kind.OTHER;
+                malformed = true;
+            }
+        }
+
+        /** Konwersja komórek wiersza na produkt - te same reguły co w modelu XSSFWorkbook. */
+        private DataPoint toDataPoint() {
+            // 1. Produkt (Kolumna A, egzemplarz z puli importu) i 2. Kategoria (Kolumna B)
+            String product = names.intern(textOf(0));
+            String category = textOf(1);
+
+            // 3. Ilość (Kolumna C)
+            int quantity = 0;
+            if (kinds[2] == Kind.NUMERIC) quantity = (int) numbers[2];
+            else if (kinds[2] == Kind.STRING) {
+                try { quantity = Integer.parseInt(texts[2]); } catch (Exception e) {}
+            }
+
+            // 4. Cena (Kolumna D)
+            double price = 0.0;
+            if (kinds[3] == Kind.NUMERIC) price = numbers[3];
+            else if (kinds[3] == Kind.STRING) {
+                try { price = Double.parseDouble(texts[3].replace(",", ".")); } catch (Exception e) {}
+            }
+
+            // 5. Dostępność (Kolumna E)
+            boolean available = false;
+            if (kinds[4] == Kind.BOOLEAN) available = booleans[4];
+            else if (kinds[4] == Kind.STRING) available = Boolean.parseBoolean(texts[4]);
+
+            return new DataPoint(product, category, quantity, price, available);
+        }
+
+        private String textOf(int col) {
+            if (kinds[col] == Kind.STRING) return texts[col];
+            if (kinds[col] == Kind.NUMERIC) return String.valueOf(numbers[col]);
+            return "";
+        }
+
+        /** Zamienia adres komórki (np. "C12") na indeks kolumny liczony od zera. */
+        private static int columnIndex(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                col = col * 26 + (c - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
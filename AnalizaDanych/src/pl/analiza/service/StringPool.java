@@ -0,0 +1,38 @@
+package pl.analiza.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pula napisów jednego importu - powtarzające się nazwy produktów dzielą jeden egzemplarz String.
+ * <p>
+ * Parsery tworzą nowy napis dla każdego wiersza, a w typowych danych ta sama nazwa powtarza się
+ * w wielu wierszach (różne stany magazynowe tego samego towaru). Pula żyje tylko w czasie importu,
+ * więc po jego zakończeniu w pamięci zostają wyłącznie egzemplarze używane przez produkty.
+ * W przeciwieństwie do {@link String#intern()} nie trafia do globalnej tablicy maszyny wirtualnej.
+ * </p>
+ * <p>
+ * Klasa jest bezpieczna wątkowo (fragmenty pliku CSV są parsowane równolegle ze wspólną pulą).
+ * </p>
+ */
+public class StringPool {
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * Zwraca egzemplarz z puli równy podanemu napisowi (pierwszy zgłoszony staje się wzorcem).
+     *
+     * @param s Napis (może być null).
+     * @return Egzemplarz współdzielony lub null.
+     */
+    public String intern(String s) {
+        if (s == null) return null;
+        String pooled = strings.get(s);
+        if (pooled == null) pooled = strings.putIfAbsent(s, s);
+        return pooled != null ? pooled : s;
+    }
+
+    /** @return Liczba różnych napisów w puli. */
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,100 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.analiza.model.CategoryStats;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.ColumnStore;
+import pl.analiza.service.MathService;
+import pl.analiza.service.OffHeapDataset;
+import pl.analiza.service.StatField;
+import pl.analiza.service.StatOperation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obliczenia statystyczne: {@link MathService#calculate} (kolumny, lista produktów i zbiór
+ * poza stertą {@link OffHeapDataset}) oraz {@link MathService#getCategoryStatistics}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Thread)
+public class AggregationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Dataset {
+        @Param({ "1000", "1000000", "10000000" })
+        public int rows;
+
+        List<DataPoint> data;
+        ColumnStore columns;
+        OffHeapDataset offHeap;
+
+        @Setup(Level.Trial)
+        public void generate() {
+            data = DataGenerator.points(rows);
+            columns = new ColumnStore(data);
+            offHeap = new OffHeapDataset();
+            offHeap.addAll(data);
+        }
+
+        @TearDown(Level.Trial)
+        public void release() {
+            offHeap.close();
+        }
+    }
+
+    /** Operacja kalkulatora (parametr osobny od rozmiaru, aby getCategoryStatistics nie był powtarzany). */
+    @State(Scope.Benchmark)
+    public static class Operation {
+        @Param({ "SUM", "AVERAGE", "STD_DEV", "MEDIAN", "P99" })
+        public StatOperation operation;
+
+        @Param({ "PRICE", "TOTAL_VALUE" })
+        public StatField field;
+    }
+
+    private final MathService mathService = new MathService();
+
+    @Benchmark
+    public double calculate(Dataset dataset, Operation op) {
+        return mathService.calculate(dataset.columns, op.field, op.operation);
+    }
+
+    /** Wariant z listą produktów i etykietami pól (zawiera budowę kolumn). */
+    @Benchmark
+    public double calculateList(Dataset dataset, Operation op) {
+        return mathService.calculate(dataset.data, op.field.getLabel(), op.operation.getLabel());
+    }
+
+    /** Wariant z kolumnami poza stertą (ten sam wynik co {@link #calculate}). */
+    @Benchmark
+    public double calculateOffHeap(Dataset dataset, Operation op) {
+        return mathService.calculate(dataset.offHeap, op.field, op.operation);
+    }
+
+    @Benchmark
+    public List<CategoryStats> categoryStatistics(Dataset dataset) {
+        return mathService.getCategoryStatistics(dataset.data);
+    }
+
+    @Benchmark
+    public List<CategoryStats> categoryStatisticsOffHeap(Dataset dataset) {
+        return mathService.getCategoryStatistics(dataset.offHeap);
+    }
+}
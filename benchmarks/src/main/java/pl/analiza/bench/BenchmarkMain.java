@@ -0,0 +1,73 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.module.ModuleFinder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Punkt wejścia {@code benchmarks.jar} - JMH z ustawieniami domyślnymi dla porównań między wersjami.
+ * <p>
+ * Przyjmuje zwykłe opcje JMH (np. {@code -p rows=1000000}, {@code AggregationBenchmark.calculate}),
+ * a gdy nie zostały podane, dodaje:
+ * <ul>
+ *     <li>profiler GC ({@code -prof gc}) - tempo alokacji ({@code gc.alloc.rate.norm} w B/op),</li>
+ *     <li>wynik w formacie JSON ({@code jmh-result-<wersja>.json}) - do porównania wyników wydań,</li>
+ *     <li>pominięcie {@link DatabaseBenchmark}, jeśli nie wskazano bazy testowej
+ *         (właściwości {@code bench.db.*} są przekazywane do procesów pomiarowych),</li>
+ *     <li>moduł {@code jdk.incubator.vector} w procesach pomiarowych, jeśli maszyna wirtualna go ma
+ *         (wariant SIMD {@link pl.analiza.service.ColumnKernels}).</li>
+ * </ul>
+ * Tryby pomiaru (przepustowość i percentyle czasu z {@code Mode.SampleTime}) określają adnotacje benchmarków.
+ * </p>
+ */
+public final class BenchmarkMain {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        // Opcje informacyjne jak w org.openjdk.jmh.Main (-h, -l, -lp, -lprof, -lrf)
+        if (cli.shouldHelp()) { cli.showHelp(); return; }
+        if (cli.shouldListProfilers()) { cli.listProfilers(); return; }
+        if (cli.shouldListResultFormats()) { cli.listResultFormats(); return; }
+        if (cli.shouldList()) { new Runner(cli).list(); return; }
+        if (cli.shouldListWithParams()) { new Runner(cli).listWithParams(cli); return; }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+
+        if (cli.getProfilers().isEmpty()) options.addProfiler(GCProfiler.class);
+        if (!cli.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!cli.getResult().hasValue()) {
+            String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+            options.result("jmh-result-" + (version != null ? version : "dev") + ".json");
+        }
+
+        List<String> jvmArgs = new ArrayList<>();
+        // Wariant SIMD pętli obliczeniowych (ColumnKernels) wymaga modułu inkubatora w procesach pomiarowych
+        if (ModuleFinder.ofSystem().find(VECTOR_MODULE).isPresent()) jvmArgs.add("--add-modules=" + VECTOR_MODULE);
+
+        String url = System.getProperty(DatabaseBenchmark.URL_PROPERTY);
+        if (url == null) {
+            options.exclude(DatabaseBenchmark.class.getSimpleName());
+        } else {
+            for (String property : new String[] { DatabaseBenchmark.URL_PROPERTY, DatabaseBenchmark.USER_PROPERTY,
+                    DatabaseBenchmark.PASSWORD_PROPERTY }) {
+                String value = System.getProperty(property);
+                if (value != null) jvmArgs.add("-D" + property + "=" + value);
+            }
+        }
+        if (!jvmArgs.isEmpty()) options.jvmArgsPrepend(jvmArgs.toArray(new String[0]));
+
+        new Runner(options.build()).run();
+    }
+}
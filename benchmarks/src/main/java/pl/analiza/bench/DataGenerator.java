@@ -0,0 +1,204 @@
+package pl.analiza.bench;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import pl.analiza.model.DataPoint;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generator syntetycznych zbiorów produktów dla benchmarków.
+ * <p>
+ * Dane są powtarzalne (stałe ziarno) i zbliżone do rzeczywistego katalogu:
+ * <ul>
+ *     <li>liczba kategorii rośnie z pierwiastkiem liczby wierszy (16 dla 1 tys., 500 dla 1 mln,
+ *         ok. 1600 dla 10 mln), a ich popularność ma rozkład Zipfa - kilka dużych kategorii i długi ogon,</li>
+ *     <li>nazwy produktów powtarzają się (ok. 4 wiersze na nazwę), jak warianty tego samego towaru,</li>
+ *     <li>ceny mają rozkład log-normalny (większość tanich, pojedyncze drogie), ilości 0-500,
+ *         a ok. 85% produktów jest dostępnych.</li>
+ * </ul>
+ * Pliki CSV i XLSX mają układ obsługiwany przez {@code CsvService} i {@code ExcelService}
+ * (nagłówek, kolumny: produkt, kategoria, ilość, cena, dostępność).
+ * </p>
+ */
+public final class DataGenerator {
+
+    /** Maksymalna liczba wierszy danych arkusza XLSX (bez nagłówka). */
+    public static final int MAX_XLSX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private static final long SEED = 20240611L;
+
+    /** Wykładnik rozkładu Zipfa popularności kategorii. */
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private static final String[] CATEGORY_STEMS = {
+            "Nabiał", "Pieczywo", "Napoje", "Alkohol", "Słodycze", "Mięso", "Warzywa", "Owoce",
+            "Chemia", "Kosmetyki", "Mrożonki", "Przyprawy", "Konserwy", "Dla dzieci", "Zoologia", "Artykuły biurowe"
+    };
+
+    private static final String[] PRODUCT_STEMS = {
+            "Mleko", "Chleb", "Masło", "Woda", "Sok", "Wino", "Czekolada", "Szynka", "Pomidor", "Jabłko",
+            "Proszek", "Szampon", "Pizza", "Pieprz", "Groszek", "Kaszka", "Karma", "Długopis", "Ser", "Kawa"
+    };
+
+    private DataGenerator() {
+    }
+
+    /** Liczba kategorii dla zbioru o podanej liczbie wierszy. */
+    public static int categoryCount(int rows) {
+        return (int) Math.max(8, Math.min(2000, Math.round(Math.sqrt(rows) / 2)));
+    }
+
+    /**
+     * Generuje listę produktów.
+     *
+     * @param rows Liczba produktów.
+     * @return Produkty (te same dla tej samej liczby wierszy).
+     */
+    public static List<DataPoint> points(int rows) {
+        List<DataPoint> data = new ArrayList<>(rows);
+        Rows generator = new Rows(rows);
+        for (int i = 0; i < rows; i++) {
+            generator.next();
+            data.add(new DataPoint(generator.product, generator.category, generator.quantity, generator.price, generator.available));
+        }
+        return data;
+    }
+
+    /**
+     * Zapisuje zbiór do pliku CSV (separator ';', UTF-8, nagłówek).
+     *
+     * @param file Plik docelowy.
+     * @param rows Liczba produktów.
+     */
+    public static void writeCsv(File file, int rows) throws IOException {
+        Rows generator = new Rows(rows);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("Produkt;Kategoria;Ilość;Cena;Dostępność\n");
+            StringBuilder line = new StringBuilder(64);
+            for (int i = 0; i < rows; i++) {
+                generator.next();
+                line.setLength(0);
+                line.append(generator.product).append(';').append(generator.category).append(';')
+                        .append(generator.quantity).append(';')
+                        // Część cen z przecinkiem dziesiętnym - jak w plikach z polskiego Excela
+                        .append(formatPrice(generator.price, (i & 3) == 0)).append(';')
+                        .append(generator.available).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Zapisuje zbiór do pliku XLSX (zapis strumieniowy, w pamięci tylko okno wierszy).
+     *
+     * @param file Plik docelowy.
+     * @param rows Liczba produktów (co najwyżej {@link #MAX_XLSX_ROWS}).
+     */
+    public static void writeXlsx(File file, int rows) throws IOException {
+        if (rows > MAX_XLSX_ROWS) throw new IllegalArgumentException("Arkusz XLSX mieści najwyżej " + MAX_XLSX_ROWS + " wierszy danych.");
+        Rows generator = new Rows(rows);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+        workbook.setCompressTempFiles(true);
+        try (OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Dane");
+            Row header = sheet.createRow(0);
+            String[] names = { "Produkt", "Kategoria", "Ilość", "Cena", "Dostępność" };
+            for (int c = 0; c < names.length; c++) header.createCell(c).setCellValue(names[c]);
+            for (int i = 0; i < rows; i++) {
+                generator.next();
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(generator.product);
+                row.createCell(1).setCellValue(generator.category);
+                row.createCell(2).setCellValue(generator.quantity);
+                row.createCell(3).setCellValue(generator.price);
+                row.createCell(4).setCellValue(generator.available);
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /** Cena z dwoma miejscami po przecinku (bez {@code String.format} - generator zapisuje miliony wierszy). */
+    private static String formatPrice(double price, boolean comma) {
+        long cents = Math.round(price * 100);
+        long fraction = cents % 100;
+        return (cents / 100) + (comma ? "," : ".") + (fraction < 10 ? "0" : "") + fraction;
+    }
+
+    /**
+     * Generowanie plików z wiersza poleceń: {@code DataGenerator csv|xlsx <wiersze> <plik>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Użycie: DataGenerator csv|xlsx <liczba wierszy> <plik>");
+            System.exit(2);
+        }
+        int rows = Integer.parseInt(args[1].replace("_", ""));
+        File file = new File(args[2]);
+        if (args[0].equalsIgnoreCase("xlsx")) writeXlsx(file, rows);
+        else writeCsv(file, rows);
+    }
+
+    /**
+     * Kolejne wiersze zbioru (wartości pól bieżącego wiersza bez tworzenia obiektów).
+     */
+    private static final class Rows {
+        private final SplittableRandom random = new SplittableRandom(SEED);
+        private final String[] categories;
+        private final double[] cumulative;
+        private final int productNames;
+
+        String product, category;
+        int quantity;
+        double price;
+        boolean available;
+
+        Rows(int rows) {
+            int n = categoryCount(rows);
+            categories = new String[n];
+            cumulative = new double[n];
+            double total = 0;
+            for (int k = 0; k < n; k++) {
+                String stem = CATEGORY_STEMS[k % CATEGORY_STEMS.length];
+                categories[k] = k < CATEGORY_STEMS.length ? stem : stem + " " + (k / CATEGORY_STEMS.length + 1);
+                total += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+                cumulative[k] = total;
+            }
+            for (int k = 0; k < n; k++) cumulative[k] /= total;
+            productNames = Math.max(1, rows / 4);
+        }
+
+        void next() {
+            int k = Arrays.binarySearch(cumulative, random.nextDouble());
+            category = categories[Math.min(categories.length - 1, k >= 0 ? k : -k - 1)];
+            int name = random.nextInt(productNames);
+            product = PRODUCT_STEMS[name % PRODUCT_STEMS.length] + " " + (name / PRODUCT_STEMS.length + 1);
+            quantity = random.nextInt(501);
+            // Rozkład log-normalny z medianą ok. 12 zł, obcięty do 0.49-9999.99
+            double p = Math.exp(2.5 + 1.1 * gaussian());
+            price = Math.round(Math.max(0.49, Math.min(9999.99, p)) * 100) / 100.0;
+            available = random.nextInt(100) < 85;
+        }
+
+        /** Zmienna o rozkładzie normalnym standardowym (metoda Boxa-Mullera). */
+        private double gaussian() {
+            double u = 1.0 - random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+    }
+}
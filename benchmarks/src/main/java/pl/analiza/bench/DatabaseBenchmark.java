@@ -0,0 +1,111 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.ChangeTracker;
+import pl.analiza.service.ConnectionPool;
+import pl.analiza.service.DatabaseService;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zapis i odczyt bazy danych: pełny zapis {@link DatabaseService#saveToDatabase}, zapis różnicowy
+ * {@link DatabaseService#saveChanges} (1% zmienionych produktów) i odczyt {@link DatabaseService#loadFromDatabase}.
+ * <p>
+ * <b>Benchmark czyści tabele bazy</b>, dlatego wymaga jawnego wskazania bazy testowej
+ * ({@code -Dbench.db.url=jdbc:postgresql://.../magazyn_bench}, opcjonalnie {@code bench.db.user}
+ * i {@code bench.db.password}) - bez tego {@link BenchmarkMain} go pomija.
+ * </p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class DatabaseBenchmark {
+
+    /** Właściwości systemowe z danymi połączenia z bazą testową. */
+    static final String URL_PROPERTY = "bench.db.url";
+    static final String USER_PROPERTY = "bench.db.user";
+    static final String PASSWORD_PROPERTY = "bench.db.password";
+
+    /** Odsetek produktów zmienianych przed każdym zapisem różnicowym. */
+    private static final double CHANGED_FRACTION = 0.01;
+
+    @Param({ "1000", "1000000" })
+    public int rows;
+
+    private DatabaseService dbService;
+    private List<DataPoint> data;
+    private final ChangeTracker tracker = new ChangeTracker();
+
+    @Setup(Level.Trial)
+    public void connect() throws SQLException {
+        String url = System.getProperty(URL_PROPERTY);
+        if (url == null) throw new IllegalStateException("Brak bazy testowej - ustaw -D" + URL_PROPERTY + "=...");
+        ConnectionPool pool = new ConnectionPool(url,
+                System.getProperty(USER_PROPERTY, "postgres"), System.getProperty(PASSWORD_PROPERTY, ""),
+                1, 4, 60_000, 10_000);
+        dbService = new DatabaseService(pool);
+        data = DataGenerator.points(rows);
+        dbService.saveToDatabase(data);
+        tracker.markSynchronized();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        dbService.getPool().close();
+    }
+
+    /**
+     * Stan zapisu różnicowego - zmiany przed każdym wywołaniem dotyczą tylko {@link #saveChanges},
+     * pozostałe benchmarki działają na niezmienianych danych.
+     */
+    @State(Scope.Benchmark)
+    public static class Changes {
+        private final SplittableRandom random = new SplittableRandom(1);
+
+        /** Zmiana cen losowych produktów przed zapisem różnicowym (poza pomiarem). */
+        @Setup(Level.Invocation)
+        public void modify(DatabaseBenchmark db) {
+            int changed = Math.max(1, (int) (db.rows * CHANGED_FRACTION));
+            for (int i = 0; i < changed; i++) {
+                DataPoint dp = db.data.get(random.nextInt(db.rows));
+                dp.setPrice(Math.round(dp.getPrice() * 105) / 100.0);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<DataPoint> saveFull() throws SQLException {
+        dbService.saveToDatabase(data);
+        tracker.markSynchronized();
+        return data;
+    }
+
+    @Benchmark
+    public int saveChanges(Changes changes) throws SQLException {
+        return dbService.saveChanges(data, tracker);
+    }
+
+    @Benchmark
+    public List<DataPoint> load() throws SQLException {
+        return dbService.loadFromDatabase();
+    }
+}
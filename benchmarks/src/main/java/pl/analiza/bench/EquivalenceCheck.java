@@ -0,0 +1,256 @@
+package pl.analiza.bench;
+
+import pl.analiza.model.CategoryStats;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.AggregateStore;
+import pl.analiza.service.ColumnKernels;
+import pl.analiza.service.ColumnStore;
+import pl.analiza.service.MathService;
+import pl.analiza.service.OffHeapDataset;
+import pl.analiza.service.SearchIndex;
+import pl.analiza.service.StatField;
+import pl.analiza.service.StatOperation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * Sprawdzenie zgodności szybkich ścieżek obliczeń z implementacjami odniesienia.
+ * <ul>
+ *     <li>{@code aggregates} - {@link AggregateStore} po losowej serii dodań, usunięć i edycji (20 tys. kroków)
+ *         wobec {@link MathService#getCategoryStatistics(List)} liczonego od nowa co 500 kroków,</li>
+ *     <li>{@code offheap} - {@link OffHeapDataset} wobec listy na stercie: wiersze, wszystkie statystyki,
+ *         statystyki kategorii i wyszukiwanie (1 mln wierszy generatora oraz wiersze z NaN, null i -0.0),</li>
+ *     <li>{@code kernels} - wariant SIMD {@link ColumnKernels} wobec skalarnego na 20 tys. losowych bloków
+ *         (NaN, nieskończoności, -0.0, przepełnienie int); bez modułu Vector API sprawdzenie jest pomijane.</li>
+ * </ul>
+ * <p>
+ * Uruchomienie: {@code java -cp benchmarks.jar pl.analiza.bench.EquivalenceCheck [aggregates|offheap|kernels] [wiersze]}
+ * (domyślnie wszystkie). Wariant SIMD wymaga {@code --add-modules jdk.incubator.vector}.
+ * Kod wyjścia 1 oznacza co najmniej jedną niezgodność.
+ * </p>
+ */
+public final class EquivalenceCheck {
+
+    /** Dopuszczalny błąd względny sum przyrostowych wobec sum liczonych od nowa. */
+    private static final double RELATIVE_TOLERANCE = 1e-9;
+
+    private static final long SEED = 20_241;
+
+    private EquivalenceCheck() {
+    }
+
+    public static void main(String[] args) {
+        String only = args.length > 0 ? args[0] : "all";
+        int rows = args.length > 1 ? Integer.parseInt(args[1].replace("_", "")) : 1_000_000;
+
+        int failures = 0;
+        if (only.equals("all") || only.equals("aggregates")) failures += aggregates(20_000);
+        if (only.equals("all") || only.equals("offheap")) failures += offHeap(rows);
+        if (only.equals("all") || only.equals("kernels")) failures += kernels(20_000);
+        System.out.println(failures == 0 ? "Zgodne." : "Niezgodności: " + failures);
+        if (failures > 0) System.exit(1);
+    }
+
+    // --- AggregateStore ---
+
+    private static int aggregates(int steps) {
+        Random random = new Random(SEED);
+        List<DataPoint> data = new ArrayList<>(DataGenerator.points(5_000));
+        AggregateStore store = new AggregateStore();
+        store.added(data);
+        MathService math = new MathService();
+        int failures = 0, checkpoints = 0;
+
+        for (int step = 1; step <= steps; step++) {
+            int op = random.nextInt(4);
+            if (op == 0 || data.isEmpty()) {
+                List<DataPoint> added = new ArrayList<>();
+                for (int i = 1 + random.nextInt(5); i > 0; i--) added.add(randomPoint(random));
+                data.addAll(added);
+                store.added(added);
+            } else if (op == 1) {
+                DataPoint removed = data.remove(random.nextInt(data.size()));
+                store.removed(List.of(removed));
+            } else {
+                edit(data.get(random.nextInt(data.size())), random);
+            }
+
+            if (step % 500 == 0) {
+                checkpoints++;
+                failures += compareCategories(store, math.getCategoryStatistics(data), step);
+            }
+        }
+        System.out.printf("aggregates: %d kroków, %d punktów kontrolnych, %d niezgodności%n", steps, checkpoints, failures);
+        return failures;
+    }
+
+    private static DataPoint randomPoint(Random random) {
+        String category = "Kategoria " + random.nextInt(40);
+        return new DataPoint("Produkt " + random.nextInt(1000), category, random.nextInt(500),
+                Math.round(random.nextDouble() * 100_000) / 100.0, random.nextBoolean());
+    }
+
+    private static void edit(DataPoint dp, Random random) {
+        switch (random.nextInt(4)) {
+            case 0: dp.setCategory("Kategoria " + random.nextInt(40)); break;
+            case 1: dp.setQuantity(random.nextInt(500)); break;
+            case 2: dp.setPrice(Math.round(random.nextDouble() * 100_000) / 100.0); break;
+            default: dp.setAvailable(!dp.isAvailable()); break;
+        }
+    }
+
+    private static int compareCategories(AggregateStore store, List<CategoryStats> expected, int step) {
+        int failures = 0;
+        Map<String, CategoryStats> actual = new HashMap<>();
+        for (CategoryStats s : store.getCategoryStatistics()) actual.put(s.getCategory(), s);
+        if (actual.size() != expected.size()) {
+            System.out.printf("  krok %d: %d kategorii, oczekiwano %d%n", step, actual.size(), expected.size());
+            failures++;
+        }
+        long count = 0;
+        for (CategoryStats e : expected) {
+            count += e.getCount();
+            CategoryStats a = actual.get(e.getCategory());
+            if (a == null || a.getCount() != e.getCount()
+                    || !close(a.getAvgPrice(), e.getAvgPrice()) || !close(a.getTotalValue(), e.getTotalValue())) {
+                System.out.printf("  krok %d, kategoria %s: %s, oczekiwano %s%n", step, e.getCategory(), describe(a), describe(e));
+                failures++;
+            }
+        }
+        if (store.getCount() != count) {
+            System.out.printf("  krok %d: liczba produktów %d, oczekiwano %d%n", step, store.getCount(), count);
+            failures++;
+        }
+        return failures;
+    }
+
+    private static boolean close(double actual, double expected) {
+        return Math.abs(actual - expected) <= RELATIVE_TOLERANCE * Math.max(1, Math.abs(expected));
+    }
+
+    private static String describe(CategoryStats s) {
+        return s == null ? "brak" : s.getCount() + " / " + s.getAvgPrice() + " / " + s.getTotalValue();
+    }
+
+    // --- OffHeapDataset ---
+
+    private static int offHeap(int rows) {
+        List<DataPoint> data = DataGenerator.points(rows);
+        data.add(new DataPoint(null, null, 5, Double.NaN, true));
+        data.add(new DataPoint("Zażółć", "Gęślą", -3, -0.0, false));
+        data.add(new DataPoint("", "", Integer.MAX_VALUE, Double.POSITIVE_INFINITY, true));
+
+        int failures = 0;
+        MathService math = new MathService();
+        try (OffHeapDataset offHeap = new OffHeapDataset()) {
+            offHeap.addAll(data);
+
+            for (int i = 0; i < data.size(); i++) {
+                DataPoint a = offHeap.get(i), e = data.get(i);
+                if (!Objects.equals(a.getProduct(), e.getProduct()) || !Objects.equals(a.getCategory(), e.getCategory())
+                        || a.getQuantity() != e.getQuantity() || Double.compare(a.getPrice(), e.getPrice()) != 0
+                        || a.isAvailable() != e.isAvailable()) {
+                    if (failures++ < 5) System.out.printf("  wiersz %d: %s, oczekiwano %s%n", i, a, e);
+                }
+            }
+
+            ColumnStore columns = new ColumnStore(data);
+            for (StatField field : StatField.values()) {
+                for (StatOperation op : StatOperation.values()) {
+                    double a = math.calculate(offHeap, field, op), e = math.calculate(columns, field, op);
+                    if (Double.compare(a, e) != 0) {
+                        System.out.printf("  %s %s: %s, oczekiwano %s%n", field, op, a, e);
+                        failures++;
+                    }
+                }
+            }
+
+            Map<String, String> expected = new HashMap<>(), actual = new HashMap<>();
+            for (CategoryStats s : math.getCategoryStatistics(data)) expected.put(s.getCategory(), describe(s));
+            for (CategoryStats s : math.getCategoryStatistics(offHeap)) actual.put(s.getCategory(), describe(s));
+            if (!expected.equals(actual)) {
+                System.out.println("  statystyki kategorii różnią się");
+                failures++;
+            }
+
+            SearchIndex index = new SearchIndex();
+            index.rebuild(data);
+            for (String query : new String[] { "", "pro", "KATEG", "xyz", "ż", "gęś" }) {
+                if (!Arrays.equals(offHeap.search(query), index.search(query))) {
+                    System.out.printf("  wyszukiwanie \"%s\" różni się%n", query);
+                    failures++;
+                }
+            }
+        }
+        System.out.printf("offheap: %,d wierszy, %d niezgodności%n", data.size(), failures);
+        return failures;
+    }
+
+    // --- ColumnKernels ---
+
+    private static int kernels(int cases) {
+        ColumnKernels scalar = ColumnKernels.scalar(), vector = ColumnKernels.vector();
+        if (vector == null) {
+            System.out.println("kernels: pominięto - wariant SIMD niedostępny (wymaga JDK 17+ i jdk.incubator.vector)");
+            return 0;
+        }
+        double[] specials = { Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e300, -1e-300 };
+        Random random = new Random(SEED);
+        int failures = 0, failedCases = 0;
+
+        for (int c = 0; c < cases; c++) {
+            // Połowa przypadków to krótkie bloki (końcówki pętli), połowa - długie (wiele rejestrów)
+            int len = 1 + random.nextInt(c < cases / 2 ? 100 : 3000), from = random.nextInt(40);
+            double[] d = new double[from + len];
+            int[] q = new int[from + len];
+            byte[] flags = new byte[from + len];
+            int mode = random.nextInt(4);
+            for (int i = 0; i < d.length; i++) {
+                d[i] = mode == 0 ? random.nextGaussian() * 1e6
+                        : mode == 1 ? (random.nextInt(50) == 0 ? specials[random.nextInt(specials.length)] : random.nextDouble() * 100)
+                        : mode == 2 ? (random.nextBoolean() ? -0.0 : 0.0)
+                        : Math.round(random.nextDouble() * 1000) / 100.0;
+                q[i] = random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(1000) - 500;
+                flags[i] = (byte) (random.nextInt(3) == 0 ? 0 : random.nextInt(256));
+            }
+
+            int before = failures;
+            double mean = scalar.sum(d, from, len) / len;
+            double quantityMean = scalar.sum(q, from, len) / len;
+            failures += differs(scalar.sum(d, from, len), vector.sum(d, from, len));
+            failures += differs(scalar.sum(q, from, len), vector.sum(q, from, len));
+            failures += differs(scalar.min(d, from, len), vector.min(d, from, len));
+            failures += differs(scalar.max(d, from, len), vector.max(d, from, len));
+            failures += scalar.min(q, from, len) != vector.min(q, from, len) ? 1 : 0;
+            failures += scalar.max(q, from, len) != vector.max(q, from, len) ? 1 : 0;
+            failures += differs(scalar.sumSquaredDeviations(d, from, len, mean), vector.sumSquaredDeviations(d, from, len, mean));
+            failures += differs(scalar.sumSquaredDeviations(q, from, len, quantityMean),
+                    vector.sumSquaredDeviations(q, from, len, quantityMean));
+
+            double[] expected = new double[d.length], actual = new double[d.length];
+            scalar.multiply(q, d, expected, from, len);
+            vector.multiply(q, d, actual, from, len);
+            for (int i = 0; i < d.length; i++) failures += differs(expected[i], actual[i]);
+
+            long[] expectedWords = new long[(flags.length + 63) / 64 + 1], actualWords = new long[expectedWords.length];
+            scalar.nonZeroMask(flags, flags.length, expectedWords);
+            vector.nonZeroMask(flags, flags.length, actualWords);
+            if (!Arrays.equals(expectedWords, actualWords)) failures++;
+
+            if (failures > before && failedCases++ < 5) System.out.printf("  przypadek %d (od %d, długość %d): niezgodny%n", c, from, len);
+        }
+        System.out.printf("kernels: %d przypadków (%s), %d niezgodności%n", cases, vector.getName(), failures);
+        return failures;
+    }
+
+    /** Porównanie bit w bit (NaN równe NaN, -0.0 różne od 0.0). */
+    private static int differs(double expected, double actual) {
+        return Double.compare(expected, actual) == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,87 @@
+package pl.analiza.bench;
+
+import pl.analiza.model.CategoryDictionary;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.CsvService;
+import pl.analiza.service.OffHeapDataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pomiar pamięci sterty zajmowanej przez wczytany zbiór produktów (bajty na wiersz).
+ * <p>
+ * Generuje powtarzalny plik CSV ({@link DataGenerator}), wczytuje go tak jak aplikacja
+ * ({@link CsvService#load(File, int)}) i porównuje zajętość sterty po pełnym odśmiecaniu
+ * przed i po imporcie. Wynik obejmuje obiekty {@link DataPoint}, napisy nazw i kategorii
+ * oraz tablicę listy - czyli to, co zostaje w pamięci po załadowaniu danych do tabeli.
+ * </p>
+ * <p>
+ * Uruchomienie: {@code java -Xmx4g -XX:+UseSerialGC -cp benchmarks.jar pl.analiza.bench.HeapFootprint [wiersze] [offheap]}
+ * (domyślnie 1 mln wierszy). Z argumentem {@code offheap} zbiór trafia do {@link OffHeapDataset}
+ * i wypisywana jest także pamięć poza stertą. Kolektor szeregowy daje najbardziej powtarzalny odczyt zajętości.
+ * </p>
+ */
+public final class HeapFootprint {
+
+    private static final int GC_ROUNDS = 5;
+
+    private HeapFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : 1_000_000;
+        boolean offHeap = args.length > 1 && args[1].equalsIgnoreCase("offheap");
+
+        File file = File.createTempFile("footprint-" + rows + "-", ".csv");
+        try {
+            DataGenerator.writeCsv(file, rows);
+            CsvService csv = new CsvService();
+
+            if (offHeap) {
+                long before = usedHeap();
+                try (OffHeapDataset data = OffHeapDataset.load(csv.source(file, CsvService.DEFAULT_PARALLELISM), null)) {
+                    long after = usedHeap();
+                    System.out.printf("Wiersze:             %,d%n", data.size());
+                    System.out.printf("Kategorie (słownik): %,d%n", CategoryDictionary.size() - 1);
+                    System.out.printf("Nazwy w arenie:      %,d%n", data.getNameCount());
+                    System.out.printf("Poza stertą:         %,d B%n", data.getOffHeapBytes());
+                    print(after - before, data.size());
+                }
+                return;
+            }
+
+            long before = usedHeap();
+            List<DataPoint> data = csv.load(file, CsvService.DEFAULT_PARALLELISM);
+            long after = usedHeap();
+
+            Set<String> names = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (DataPoint dp : data) names.add(dp.getProduct());
+
+            System.out.printf("Wiersze:             %,d%n", data.size());
+            System.out.printf("Kategorie (słownik): %,d%n", CategoryDictionary.size() - 1);
+            System.out.printf("Egzemplarze nazw:    %,d%n", names.size());
+            print(after - before, data.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void print(long heapBytes, int rows) {
+        System.out.printf("Sterta po imporcie:  %,d B%n", heapBytes);
+        System.out.printf("Bajty na wiersz:     %.1f%n", (double) heapBytes / rows);
+    }
+
+    /** Zajętość sterty po kilku pełnych odśmiecaniach. */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < GC_ROUNDS; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
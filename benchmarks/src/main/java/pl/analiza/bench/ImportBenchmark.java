@@ -0,0 +1,95 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.CsvService;
+import pl.analiza.service.ExcelService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import plików: {@link CsvService#load} (równoległy i jednowątkowy) oraz {@link ExcelService#load}.
+ * <p>
+ * Pliki generowane są raz na próbę do katalogu tymczasowego. Arkusz XLSX ma limit ok. 1 mln wierszy,
+ * dlatego import Excela mierzony jest tylko dla 1 tys. i 1 mln wierszy.
+ * </p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Thread)
+public class ImportBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CsvFile {
+        @Param({ "1000", "1000000", "10000000" })
+        public int rows;
+
+        File file;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            file = File.createTempFile("bench-" + rows + "-", ".csv");
+            DataGenerator.writeCsv(file, rows);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            file.delete();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class XlsxFile {
+        @Param({ "1000", "1000000" })
+        public int rows;
+
+        File file;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            file = File.createTempFile("bench-" + rows + "-", ".xlsx");
+            DataGenerator.writeXlsx(file, rows);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            file.delete();
+        }
+    }
+
+    private final CsvService csvService = new CsvService();
+    private final ExcelService excelService = new ExcelService();
+
+    @Benchmark
+    public List<DataPoint> csvLoad(CsvFile csv) throws IOException {
+        return csvService.load(csv.file);
+    }
+
+    @Benchmark
+    public List<DataPoint> csvLoadSingleThread(CsvFile csv) throws IOException {
+        return csvService.load(csv.file, 1);
+    }
+
+    @Benchmark
+    public List<DataPoint> excelLoad(XlsxFile xlsx) throws IOException {
+        return excelService.load(xlsx.file);
+    }
+}
@@ -0,0 +1,125 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.ColumnKernels;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pętle obliczeniowe {@link ColumnKernels} osobno dla każdej operacji: implementacja skalarna
+ * i wariant SIMD (Vector API) na tych samych kolumnach.
+ * <p>
+ * Domyślny rozmiar 1024 to blok {@code MathService} (dane w pamięci podręcznej L1), 1 mln wierszy
+ * pokazuje pętlę ograniczoną przepustowością pamięci. Wariant {@code simd} wymaga JDK 17+ z modułem
+ * {@code jdk.incubator.vector} ({@link BenchmarkMain} dodaje go do procesów pomiarowych).
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KernelBenchmark {
+
+    @Param({ "scalar", "simd" })
+    public String kernel;
+
+    @Param({ "1024", "1000000" })
+    public int rows;
+
+    private ColumnKernels kernels;
+    private int[] quantities;
+    private double[] prices;
+    private double[] totals;
+    private byte[] flags;
+    private long[] words;
+    private double priceMean;
+    private double quantityMean;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        kernels = kernel.equals("simd") ? ColumnKernels.vector() : ColumnKernels.scalar();
+        if (kernels == null) throw new IllegalStateException("Wariant SIMD niedostępny (wymaga JDK 17+ i jdk.incubator.vector).");
+
+        List<DataPoint> data = DataGenerator.points(rows);
+        quantities = new int[rows];
+        prices = new double[rows];
+        totals = new double[rows];
+        flags = new byte[rows];
+        words = new long[(rows + 63) / 64];
+        for (int i = 0; i < rows; i++) {
+            DataPoint dp = data.get(i);
+            quantities[i] = dp.getQuantity();
+            prices[i] = dp.getPrice();
+            flags[i] = (byte) (dp.isAvailable() ? 1 : 0);
+        }
+        priceMean = kernels.sum(prices, 0, rows) / rows;
+        quantityMean = kernels.sum(quantities, 0, rows) / rows;
+    }
+
+    @Benchmark
+    public double sumPrice() {
+        return kernels.sum(prices, 0, rows);
+    }
+
+    @Benchmark
+    public double sumQuantity() {
+        return kernels.sum(quantities, 0, rows);
+    }
+
+    @Benchmark
+    public double minPrice() {
+        return kernels.min(prices, 0, rows);
+    }
+
+    @Benchmark
+    public double maxPrice() {
+        return kernels.max(prices, 0, rows);
+    }
+
+    @Benchmark
+    public int minQuantity() {
+        return kernels.min(quantities, 0, rows);
+    }
+
+    @Benchmark
+    public int maxQuantity() {
+        return kernels.max(quantities, 0, rows);
+    }
+
+    @Benchmark
+    public double sumSquaresPrice() {
+        return kernels.sumSquaredDeviations(prices, 0, rows, priceMean);
+    }
+
+    @Benchmark
+    public double sumSquaresQuantity() {
+        return kernels.sumSquaredDeviations(quantities, 0, rows, quantityMean);
+    }
+
+    @Benchmark
+    public double[] totalValue() {
+        kernels.multiply(quantities, prices, totals, 0, rows);
+        return totals;
+    }
+
+    @Benchmark
+    public long[] availabilityMask() {
+        kernels.nonZeroMask(flags, rows, words);
+        return words;
+    }
+}
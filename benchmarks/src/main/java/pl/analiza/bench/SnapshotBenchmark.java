@@ -0,0 +1,66 @@
+package pl.analiza.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.analiza.model.DataPoint;
+import pl.analiza.service.SnapshotService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trwały zapis bez bazy: zapis i odczyt binarnej migawki {@link SnapshotService}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx8g" })
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    @Param({ "1000", "1000000", "10000000" })
+    public int rows;
+
+    private final SnapshotService snapshotService = new SnapshotService();
+    private List<DataPoint> data;
+    private File saved, scratch;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        data = DataGenerator.points(rows);
+        saved = File.createTempFile("bench-" + rows + "-", ".snap");
+        scratch = File.createTempFile("bench-" + rows + "-", ".snap");
+        snapshotService.save(data, saved);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        saved.delete();
+        scratch.delete();
+    }
+
+    @Benchmark
+    public File save() throws IOException {
+        snapshotService.save(data, scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public List<DataPoint> load() throws IOException {
+        return snapshotService.load(saved);
+    }
+}